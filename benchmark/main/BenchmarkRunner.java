@@ -0,0 +1,367 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal average-time benchmark harness: warmup iterations followed by measurement iterations,
+ * each running the workload for at least the configured time. Results are written as JSON
+ * in the layout of JMH result files, so the usual JMH tooling can compare runs between releases.
+ * As in JMH, the result a workload returns is consumed by the harness, so the work cannot be removed as dead code,
+ * and the score error is the half-width of the 99.9% confidence interval from Student's t distribution.
+ * <p>
+ * Configured by system properties: benchmark.warmup and benchmark.iterations (iteration counts),
+ * benchmark.time (milliseconds per iteration) and benchmark.filter (regular expression matched
+ * against benchmark names).
+ */
+public class BenchmarkRunner
+{
+	public interface Workload
+	{
+		/**
+		 * Performs the operations and returns their result, or any object their output is reachable from.
+		 */
+		public Object run() throws Exception;
+	}
+	
+	/**
+	 * Receives the result of every invocation.
+	 */
+	protected static volatile Object sink;
+	
+	protected final int warmupIterations = Integer.getInteger("benchmark.warmup", 3);
+	protected final int measurementIterations = Integer.getInteger("benchmark.iterations", 5);
+	protected final long iterationNanos = Long.getLong("benchmark.time", 500) * 1000000L;
+	protected final Pattern filter = Pattern.compile(System.getProperty("benchmark.filter", ".*"));
+	
+	protected final List<Result> results = new ArrayList<Result>();
+	
+	public boolean isEnabled(String name)
+	{
+		return filter.matcher(name).find();
+	}
+	
+	/**
+	 * Measures the average time of one operation in milliseconds, where one call of the workload
+	 * performs the given number of operations.
+	 */
+	public void run(String name, Map<String, String> params, int operationsPerInvocation, Workload workload) throws Exception
+	{
+		if(!isEnabled(name))
+		{
+			return;
+		}
+		
+		for(int i = 0; i < warmupIterations; i++)
+		{
+			runIteration(workload, operationsPerInvocation);
+		}
+		
+		double[] scores = new double[measurementIterations];
+		
+		for(int i = 0; i < scores.length; i++)
+		{
+			scores[i] = runIteration(workload, operationsPerInvocation);
+		}
+		
+		Result result = new Result(name, params, scores);
+		results.add(result);
+		
+		System.out.println(String.format(Locale.ROOT, "%-20s %-56s %12.4f +- %10.4f ms/op", name, params, result.score, result.error));
+	}
+	
+	protected double runIteration(Workload workload, int operationsPerInvocation) throws Exception
+	{
+		long invocations = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		
+		do
+		{
+			sink = workload.run();
+			invocations++;
+			
+			elapsed = System.nanoTime() - start;
+		}
+		while(elapsed < iterationNanos);
+		
+		return elapsed / 1e6 / (invocations * operationsPerInvocation);
+	}
+	
+	public static Map<String, String> params(String... keysAndValues)
+	{
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		
+		for(int i = 0; i + 1 < keysAndValues.length; i += 2)
+		{
+			params.put(keysAndValues[i], keysAndValues[i + 1]);
+		}
+		
+		return params;
+	}
+	
+	public void writeJson(String fileName) throws IOException
+	{
+		PrintWriter out = new PrintWriter(new FileWriter(fileName));
+		
+		try
+		{
+			List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+			
+			out.println("[");
+			
+			for(int i = 0; i < results.size(); i++)
+			{
+				Result result = results.get(i);
+				
+				out.println("    {");
+				out.println("        \"jmhVersion\" : \"compatible\",");
+				out.println("        \"benchmark\" : " + quote(result.name) + ",");
+				out.println("        \"mode\" : \"avgt\",");
+				out.println("        \"threads\" : 1,");
+				out.println("        \"forks\" : 1,");
+				out.println("        \"jvm\" : " + quote(System.getProperty("java.home")) + ",");
+				out.println("        \"jdkVersion\" : " + quote(System.getProperty("java.version")) + ",");
+				out.println("        \"vmName\" : " + quote(System.getProperty("java.vm.name")) + ",");
+				out.print("        \"jvmArgs\" : [ ");
+				
+				for(int j = 0; j < jvmArgs.size(); j++)
+				{
+					out.print((j > 0 ? ", " : "") + quote(jvmArgs.get(j)));
+				}
+				
+				out.println(" ],");
+				out.println("        \"warmupIterations\" : " + warmupIterations + ",");
+				out.println("        \"warmupTime\" : \"" + iterationNanos / 1000000 + " ms\",");
+				out.println("        \"measurementIterations\" : " + measurementIterations + ",");
+				out.println("        \"measurementTime\" : \"" + iterationNanos / 1000000 + " ms\",");
+				out.println("        \"params\" : {");
+				
+				int j = 0;
+				
+				for(Map.Entry<String, String> param : result.params.entrySet())
+				{
+					out.println("            " + quote(param.getKey()) + " : " + quote(param.getValue()) + (++j < result.params.size() ? "," : ""));
+				}
+				
+				out.println("        },");
+				out.println("        \"primaryMetric\" : {");
+				out.println("            \"score\" : " + number(result.score) + ",");
+				out.println("            \"scoreError\" : " + number(result.error) + ",");
+				out.println("            \"scoreConfidence\" : [ " + number(result.score - result.error) + ", " + number(result.score + result.error) + " ],");
+				out.println("            \"scoreUnit\" : \"ms/op\",");
+				out.print("            \"rawData\" : [ [ ");
+				
+				for(j = 0; j < result.scores.length; j++)
+				{
+					out.print((j > 0 ? ", " : "") + number(result.scores[j]));
+				}
+				
+				out.println(" ] ]");
+				out.println("        },");
+				out.println("        \"secondaryMetrics\" : {}");
+				out.println("    }" + (i + 1 < results.size() ? "," : ""));
+			}
+			
+			out.println("]");
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	protected static String number(double value)
+	{
+		return Double.isNaN(value) || Double.isInfinite(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f", value);
+	}
+	
+	protected static String quote(String s)
+	{
+		StringBuilder sb = new StringBuilder("\"");
+		
+		for(int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			
+			if(c == '"' || c == '\\')
+			{
+				sb.append('\\').append(c);
+			}
+			else if(c < 0x20)
+			{
+				sb.append(String.format("\\u%04x", (int)c));
+			}
+			else
+			{
+				sb.append(c);
+			}
+		}
+		
+		return sb.append('"').toString();
+	}
+	
+	protected static class Result
+	{
+		protected final String name;
+		protected final Map<String, String> params;
+		protected final double[] scores;
+		
+		protected final double score;
+		protected final double error;
+		
+		/**
+		 * The error is the half-width of the 99.9% confidence interval of the mean, from Student's t distribution
+		 * with one degree of freedom less than the number of iterations.
+		 */
+		public Result(String name, Map<String, String> params, double[] scores)
+		{
+			this.name = name;
+			this.params = params;
+			this.scores = scores;
+			
+			double sum = 0;
+			
+			for(double s : scores)
+			{
+				sum += s;
+			}
+			
+			score = sum / scores.length;
+			
+			double variance = 0;
+			
+			for(double s : scores)
+			{
+				variance += (s - score) * (s - score);
+			}
+			
+			error = scores.length > 1 ? getStudentT(0.999, scores.length - 1) * Math.sqrt(variance / (scores.length - 1) / scores.length) : Double.NaN;
+		}
+		
+		/**
+		 * Returns t such that the two-sided interval [-t, t] holds the given share of Student's t distribution,
+		 * found by bisection on the regularized incomplete beta function, as P(|T| &gt; t) = I(df / (df + t^2); df / 2, 1 / 2).
+		 */
+		public static double getStudentT(double confidence, int degreesOfFreedom)
+		{
+			double low = 0;
+			double high = 1;
+			
+			for(int i = 0; i < 100; i++)
+			{
+				double x = (low + high) / 2;
+				
+				if(incompleteBeta(degreesOfFreedom / 2.0, 0.5, x) < 1 - confidence)
+				{
+					low = x;
+				}
+				else
+				{
+					high = x;
+				}
+			}
+			
+			double x = (low + high) / 2;
+			return Math.sqrt(degreesOfFreedom * (1 - x) / x);
+		}
+		
+		/**
+		 * Regularized incomplete beta function I(x; a, b), evaluated by its continued fraction.
+		 */
+		protected static double incompleteBeta(double a, double b, double x)
+		{
+			if(x <= 0 || x >= 1)
+			{
+				return x <= 0 ? 0 : 1;
+			}
+			
+			double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+			
+			if(x < (a + 1) / (a + b + 2))
+			{
+				return front * betaFraction(a, b, x) / a;
+			}
+			else
+			{
+				return 1 - front * betaFraction(b, a, 1 - x) / b;
+			}
+		}
+		
+		/**
+		 * Continued fraction of the incomplete beta function, evaluated with the modified Lentz method.
+		 */
+		protected static double betaFraction(double a, double b, double x)
+		{
+			double tiny = 1e-300;
+			double c = 1;
+			double d = 1 - (a + b) * x / (a + 1);
+			
+			d = 1 / (Math.abs(d) < tiny ? tiny : d);
+			double h = d;
+			
+			for(int m = 1; m <= 300; m++)
+			{
+				for(int step = 0; step < 2; step++)
+				{
+					double coefficient = step == 0 ? m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m)) : -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+					
+					d = 1 + coefficient * d;
+					d = 1 / (Math.abs(d) < tiny ? tiny : d);
+					c = 1 + coefficient / c;
+					c = Math.abs(c) < tiny ? tiny : c;
+					
+					h *= d * c;
+				}
+				
+				if(Math.abs(d * c - 1) < 1e-15)
+				{
+					break;
+				}
+			}
+			
+			return h;
+		}
+		
+		/**
+		 * Natural logarithm of the gamma function, by the Lanczos approximation.
+		 */
+		protected static double logGamma(double x)
+		{
+			double[] coefficients = { 76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5 };
+			
+			double series = 1.000000000190015;
+			
+			for(int i = 0; i < coefficients.length; i++)
+			{
+				series += coefficients[i] / (x + 1 + i);
+			}
+			
+			return (x + 0.5) * Math.log(x + 5.5) - (x + 5.5) + Math.log(2.5066282746310005 * series / x);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Composes frames with dirty regions and moving sprites as the window does it: each frame updates only
+ * the transition to its segment image, the changed info line characters and the sprites.
+ */
+public class FrameComposer
+{
+	protected static final long PERIOD = Math.round(1e9 / 60);
+	
+	protected final int width;
+	protected final int height;
+	
+	protected final UEITPainter painter;
+	protected final RasterCanvas[] segments;
+	protected final DirtyRegion[] transitions;
+	protected final GlyphAtlas atlas;
+	protected final SpriteLayer sprites;
+	
+	protected final DirtyRegion region;
+	protected final char[] infoline;
+	protected final char[] previous;
+	
+	protected int frameNumber = 999;
+	protected long frameIndex;
+	
+	public FrameComposer(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		
+		painter = new RasterPainter();
+		segments = RasterCanvas.wrap(painter.renderSegments(width, height));
+		transitions = DirtyRegion.diff(segments);
+		atlas = painter.getGlyphAtlas(width, height);
+		sprites = SpriteLayer.create(UEIT.DEFAULT_SPRITES, UEIT.DEFAULT_SPRITE_SPEED);
+		
+		region = new DirtyRegion(width, height);
+		infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+		previous = new char[GlyphAtlas.INFO_LINE_LENGTH];
+	}
+	
+	/**
+	 * Composes the next frame into a canvas that holds the previous one.
+	 */
+	public void compose(RasterCanvas frame)
+	{
+		compose(frame, null);
+	}
+	
+	/**
+	 * Composes the next frame into the back buffer of the exchange, which gets the region to redraw
+	 * from the changed region of the frame.
+	 */
+	public void compose(RasterCanvas frame, FrameExchange frames)
+	{
+		int segment = frameNumber % segments.length;
+		frameNumber = (frameNumber + 1) % 1000;
+		
+		System.arraycopy(infoline, 0, previous, 0, infoline.length);
+		UEITPainter.formatInfoLine(infoline, 60, frameNumber);
+		
+		if(frameIndex == 0)
+		{
+			region.setFull(width, height);
+		}
+		else
+		{
+			region.set(transitions[segment]);
+			atlas.addInfoLineBounds(previous, infoline, region);
+		}
+		
+		sprites.update(frameIndex * PERIOD, width, height, region);
+		painter.paintUEIT(frame, segments[frameNumber % segments.length], infoline, frames != null ? frames.nextFrame(region) : region);
+		sprites.paint(frame);
+		
+		frameIndex++;
+	}
+	
+	/**
+	 * Composes the next frame into the back buffer of the exchange, publishes it and wakes the presenter.
+	 */
+	public void produce(FrameExchange frames, Thread presenter)
+	{
+		long time = System.nanoTime();
+		
+		compose(frames.getBack(width, height).getCanvas(), frames);
+		
+		frames.publish(time, System.nanoTime() - time);
+		LockSupport.unpark(presenter);
+	}
+	
+	/**
+	 * Paints the last composed frame in full, with the sprites of the given layer, which is updated to the same time.
+	 */
+	public void paintFull(RasterCanvas frame, SpriteLayer reference)
+	{
+		DirtyRegion full = new DirtyRegion(width, height);
+		full.setFull(width, height);
+		
+		reference.update((frameIndex - 1) * PERIOD, width, height, full);
+		painter.paintUEIT(frame, segments[frameNumber % segments.length], infoline);
+		reference.paint(frame);
+	}
+	
+	/**
+	 * Starts a thread that presents the frames of the exchange, copying the changed region of every frame
+	 * it takes into a retained copy of the screen. It parks until unparked after a frame is published.
+	 */
+	public static Thread present(final FrameExchange frames, final int width, final int height)
+	{
+		Thread presenter = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				int[] screen = new int[width * height];
+				
+				while(!Thread.currentThread().isInterrupted())
+				{
+					FrameExchange.Slot slot = frames.take();
+					
+					if(slot == null)
+					{
+						LockSupport.park(this);
+						continue;
+					}
+					
+					slot.getChangedRegion().copy(slot.getCanvas().getData(), screen);
+				}
+			}
+		}, "exchange present");
+		
+		presenter.start();
+		return presenter;
+	}
+	
+	/**
+	 * Region changed by the last composed frame.
+	 */
+	public DirtyRegion getRegion()
+	{
+		return region;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Runs every frame pacer strategy for a few seconds at common refresh rates and reports the measured jitter.
+ */
+public class FramePacerBenchmark
+{
+	protected static final String[] STRATEGIES = { "sleep", "park", "vsync" };
+	protected static final double[] FRAME_RATES = { 60, 75, 100 };
+	
+	public static void main(String[] args) throws InterruptedException
+	{
+		double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+		
+		for(double frameRate : FRAME_RATES)
+		{
+			for(String strategy : STRATEGIES)
+			{
+				FramePacer pacer = FramePacer.create(strategy, frameRate, null);
+				long frames = Math.round(seconds * frameRate);
+				
+				pacer.start();
+				
+				for(long i = 0; i < frames; i++)
+				{
+					pacer.awaitNextFrame();
+				}
+				
+				System.out.println(String.format("%3.0f Hz  %s", frameRate, pacer.getStatistics()));
+			}
+		}
+	}
+}
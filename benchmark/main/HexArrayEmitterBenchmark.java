@@ -0,0 +1,194 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Measures the throughput of the C array emitter against the former PrintWriter based implementation,
+ * both into memory (CPU bound) and into a temporary file, and checks that both produce the same bytes.
+ * 
+ * Arguments: [width] [height] [frame count]
+ */
+public class HexArrayEmitterBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		int width = args.length > 0 ? Integer.parseInt(args[0]) : 1920;
+		int height = args.length > 1 ? Integer.parseInt(args[1]) : 1080;
+		int frameCount = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+		
+		BufferedImage[] segments = new UEITPainter().renderSegments(width, height);
+		int[][] frames = new int[segments.length][];
+		
+		for(int i = 0; i < segments.length; i++)
+		{
+			frames[i] = ((DataBufferInt)segments[i].getRaster().getDataBuffer()).getData();
+		}
+		
+		System.out.println("Emitting " + frameCount + " frames of " + width + "x" + height);
+		
+		for(int pass = 0; pass < 3; pass++)
+		{
+			boolean warmup = pass == 0;
+			
+			DigestChannel legacy = new DigestChannel(warmup);
+			DigestChannel emitter = new DigestChannel(warmup);
+			
+			report(warmup, "legacy, memory", legacy, emitLegacy(legacy, frames, frameCount));
+			report(warmup, "emitter, memory", emitter, emitHex(emitter, frames, frameCount));
+			
+			if(warmup && !Arrays.equals(legacy.digest.digest(), emitter.digest.digest()))
+			{
+				throw new IllegalStateException("Emitter output differs from the legacy output");
+			}
+		}
+		
+		File file = File.createTempFile("ueit", ".c");
+		
+		try
+		{
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			
+			try
+			{
+				long time = emitHex(channel, frames, frameCount);
+				report(false, "emitter, file", channel, time);
+			}
+			finally
+			{
+				channel.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+	
+	protected static long emitLegacy(WritableByteChannel channel, int[][] frames, int frameCount) throws IOException
+	{
+		long time = System.nanoTime();
+		
+		PrintWriter psc = new PrintWriter(new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), "UTF-8")));
+		
+		for(int frameNumber = 0; frameNumber < frameCount; frameNumber++)
+		{
+			int[] rgb = frames[frameNumber % frames.length];
+			
+			psc.append("\t{");
+			
+			for(int i = 0; i < rgb.length; i++)
+			{
+				if(i % 8 == 0)
+				{
+					psc.append("\r\n\t");
+				}
+				
+				psc.append("\t0x").append(Integer.toHexString(rgb[i] | 0xFF000000).toUpperCase()).append(",");
+			}
+			
+			psc.append("\r\n");
+			psc.append("\t},\r\n");
+		}
+		
+		psc.flush();
+		
+		return System.nanoTime() - time;
+	}
+	
+	protected static long emitHex(WritableByteChannel channel, int[][] frames, int frameCount) throws IOException
+	{
+		long time = System.nanoTime();
+		
+		HexArrayEmitter emitter = new HexArrayEmitter(channel);
+		
+		for(int frameNumber = 0; frameNumber < frameCount; frameNumber++)
+		{
+			emitter.appendFrame(frames[frameNumber % frames.length]);
+		}
+		
+		emitter.flush();
+		
+		return System.nanoTime() - time;
+	}
+	
+	protected static void report(boolean warmup, String name, WritableByteChannel channel, long time) throws IOException
+	{
+		long size = channel instanceof FileChannel ? ((FileChannel)channel).size() : ((DigestChannel)channel).size;
+		
+		if(!warmup)
+		{
+			System.out.println(String.format("%-20s %10.1f MB/s", name, size / 1e6 / (time / 1e9)));
+		}
+	}
+	
+	/**
+	 * Discards everything written, optionally computing a digest of it.
+	 */
+	protected static class DigestChannel implements WritableByteChannel
+	{
+		protected final MessageDigest digest;
+		protected long size;
+		
+		public DigestChannel(boolean digested) throws NoSuchAlgorithmException
+		{
+			digest = digested ? MessageDigest.getInstance("MD5") : null;
+		}
+		
+		public int write(ByteBuffer src)
+		{
+			int length = src.remaining();
+			
+			if(digest != null)
+			{
+				digest.update(src);
+			}
+			else
+			{
+				src.position(src.limit());
+			}
+			
+			size += length;
+			
+			return length;
+		}
+		
+		public boolean isOpen()
+		{
+			return true;
+		}
+		
+		public void close()
+		{
+		}
+	}
+}
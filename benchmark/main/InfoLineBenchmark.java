@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Compares the per-frame overlay through the glyph atlas with drawing the info line through Graphics2D:
+ * first checks that frames are pixel-exact for all digits, then measures frames per second of both.
+ */
+public class InfoLineBenchmark
+{
+	protected static final int[][] RESOLUTIONS =
+	{
+		{ 640, 480 },
+		{ 1280, 720 },
+		{ 1920, 1080 },
+		{ 3840, 2160 },
+		{ 1024, 768 }
+	};
+	
+	public static void main(String[] args)
+	{
+		UEITPainter painter = new UEITPainter();
+		
+		for(int[] resolution : RESOLUTIONS)
+		{
+			int width = resolution[0];
+			int height = resolution[1];
+			
+			BufferedImage[] images = painter.renderSegments(width, height);
+			RasterCanvas[] segments = RasterCanvas.wrap(images);
+			
+			BufferedImage expected = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			BufferedImage blitted = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			RasterCanvas actual = new RasterCanvas(new int[width * height], width, height);
+			
+			char[] infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+			
+			for(int frameNumber = 0; frameNumber < 1000; frameNumber += 37)
+			{
+				int fps = frameNumber % 100;
+				
+				Graphics2D g = (Graphics2D)expected.getGraphics();
+				painter.paintUEIT(g, width, height, -1, images[frameNumber % images.length], UEITPainter.formatInfoLine(fps, frameNumber));
+				g.dispose();
+				
+				UEITPainter.formatInfoLine(infoline, fps, frameNumber);
+				painter.paintUEIT(actual, segments[frameNumber % segments.length], infoline);
+				
+				g = (Graphics2D)blitted.getGraphics();
+				g.drawImage(images[frameNumber % images.length], 0, 0, null);
+				painter.getGlyphAtlas(width, height).drawInfoLine(g, infoline);
+				g.dispose();
+				
+				if(!Arrays.equals(new RasterCanvas(expected).getData(), actual.getData()) ||
+				   !equalsRGB(new RasterCanvas(expected).getData(), new RasterCanvas(blitted).getData()))
+				{
+					throw new IllegalStateException("Glyph atlas differs from drawString at " + width + "x" + height + ", frame " + frameNumber);
+				}
+			}
+			
+			int iterations = Math.max(20, 200000000 / (width * height));
+			
+			long time = System.nanoTime();
+			
+			for(int i = 0; i < iterations; i++)
+			{
+				Graphics2D g = (Graphics2D)expected.getGraphics();
+				painter.paintUEIT(g, width, height, -1, images[i % images.length], UEITPainter.formatInfoLine(60, i % 1000));
+				g.dispose();
+			}
+			
+			double reference = iterations / ((System.nanoTime() - time) / 1e9);
+			
+			time = System.nanoTime();
+			
+			for(int i = 0; i < iterations; i++)
+			{
+				UEITPainter.formatInfoLine(infoline, 60, i % 1000);
+				painter.paintUEIT(actual, segments[i % segments.length], infoline);
+			}
+			
+			double atlas = iterations / ((System.nanoTime() - time) / 1e9);
+			
+			System.out.println(String.format("%5dx%-5d  drawString %8.1f fps  glyph atlas %8.1f fps", width, height, reference, atlas));
+		}
+	}
+	
+	/**
+	 * Compares pixels ignoring the unused upper byte, which blits into TYPE_INT_RGB images leave cleared.
+	 */
+	protected static boolean equalsRGB(int[] a, int[] b)
+	{
+		for(int i = 0; i < a.length; i++)
+		{
+			if(((a[i] ^ b[i]) & 0xFFFFFF) != 0)
+			{
+				return false;
+			}
+		}
+		
+		return a.length == b.length;
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Straightforward reference implementation of the raw pixel formats, one sample at a time from the textbook formulas
+ * in exact integer arithmetic, against which the conversion kernels are checked.
+ */
+public class PixelFormatReference
+{
+	public static byte[] convert(RawPixelFormat format, YCbCrMatrix matrix, int[] argb, int width, int height)
+	{
+		byte[] dst = new byte[format.getFrameSize(width, height)];
+		int chromaWidth = (width + 1) / 2;
+		int index = 0;
+		
+		switch(format)
+		{
+			case RGB24:
+			case BGRA:
+			case RGB565LE:
+			case X2RGB10LE:
+				for(int i = 0; i < width * height; i++)
+				{
+					int r = red(argb[i]), g = green(argb[i]), b = blue(argb[i]);
+					
+					if(format == RawPixelFormat.RGB24)
+					{
+						index = put(dst, index, r, 1);
+						index = put(dst, index, g, 1);
+						index = put(dst, index, b, 1);
+					}
+					else if(format == RawPixelFormat.BGRA)
+					{
+						index = put(dst, index, 0xFF000000 | r << 16 | g << 8 | b, 4);
+					}
+					else if(format == RawPixelFormat.RGB565LE)
+					{
+						index = put(dst, index, (r >> 3) << 11 | (g >> 2) << 5 | (b >> 3), 2);
+					}
+					else
+					{
+						index = put(dst, index, 3 << 30 | expand10(r) << 20 | expand10(g) << 10 | expand10(b), 4);
+					}
+				}
+				
+				break;
+				
+			case YUYV422:
+			case UYVY422:
+			case Y210LE:
+				int bits = format == RawPixelFormat.Y210LE ? 10 : 8;
+				int size = bits == 8 ? 1 : 2;
+				
+				for(int y = 0; y < height; y++)
+				{
+					for(int x = 0; x < chromaWidth; x++)
+					{
+						int p0 = getPixel(argb, width, height, x * 2, y);
+						int p1 = getPixel(argb, width, height, x * 2 + 1, y);
+						
+						int r = red(p0) + red(p1), g = green(p0) + green(p1), b = blue(p0) + blue(p1);
+						
+						int y0 = luma(matrix, red(p0), green(p0), blue(p0), bits);
+						int y1 = luma(matrix, red(p1), green(p1), blue(p1), bits);
+						int cb = cb(matrix, r, g, b, 2, bits);
+						int cr = cr(matrix, r, g, b, 2, bits);
+						
+						int[] samples = format == RawPixelFormat.UYVY422 ? new int[] { cb, y0, cr, y1 } : new int[] { y0, cb, y1, cr };
+						
+						for(int sample : samples)
+						{
+							index = put(dst, index, bits == 8 ? sample : sample << 6, size);
+						}
+					}
+				}
+				
+				break;
+				
+			case NV12:
+			case P010LE:
+				bits = format == RawPixelFormat.P010LE ? 10 : 8;
+				size = bits == 8 ? 1 : 2;
+				
+				for(int i = 0; i < width * height; i++)
+				{
+					int sample = luma(matrix, red(argb[i]), green(argb[i]), blue(argb[i]), bits);
+					index = put(dst, index, bits == 8 ? sample : sample << 6, size);
+				}
+				
+				for(int y = 0; y < (height + 1) / 2; y++)
+				{
+					for(int x = 0; x < chromaWidth; x++)
+					{
+						int r = 0, g = 0, b = 0;
+						
+						for(int k = 0; k < 4; k++)
+						{
+							int pixel = getPixel(argb, width, height, x * 2 + (k & 1), y * 2 + (k >> 1));
+							
+							r += red(pixel);
+							g += green(pixel);
+							b += blue(pixel);
+						}
+						
+						int cb = cb(matrix, r, g, b, 4, bits);
+						int cr = cr(matrix, r, g, b, 4, bits);
+						
+						index = put(dst, index, bits == 8 ? cb : cb << 6, size);
+						index = put(dst, index, bits == 8 ? cr : cr << 6, size);
+					}
+				}
+				
+				break;
+		}
+		
+		if(index != dst.length)
+		{
+			throw new IllegalStateException(format.getName() + ": " + index + " bytes written into a frame of " + dst.length);
+		}
+		
+		return dst;
+	}
+	
+	/**
+	 * Y = 16 + 219 * (Kr * R + Kg * G + Kb * B) / 255, rounded, scaled to the bit depth.
+	 */
+	public static int luma(YCbCrMatrix matrix, int r, int g, int b, int bits)
+	{
+		long den = YCbCrMatrix.SCALE * 255L;
+		long num = (16L << (bits - 8)) * den + (219L << (bits - 8)) * (matrix.getKr() * r + matrix.getKg() * g + matrix.getKb() * b);
+		
+		return (int)((num + den / 2) / den);
+	}
+	
+	/**
+	 * Cb = 128 + 112 * (B - Y') / (1 - Kb) / 255 of the average of count pixels, rounded, scaled to the bit depth.
+	 */
+	public static int cb(YCbCrMatrix matrix, int r, int g, int b, int count, int bits)
+	{
+		long den = (long)count * (YCbCrMatrix.SCALE - matrix.getKb()) * 255;
+		long num = (128L << (bits - 8)) * den + (112L << (bits - 8)) * ((long)(YCbCrMatrix.SCALE - matrix.getKb()) * b - matrix.getKr() * r - matrix.getKg() * g);
+		
+		return (int)((num + den / 2) / den);
+	}
+	
+	/**
+	 * Cr = 128 + 112 * (R - Y') / (1 - Kr) / 255 of the average of count pixels, rounded, scaled to the bit depth.
+	 */
+	public static int cr(YCbCrMatrix matrix, int r, int g, int b, int count, int bits)
+	{
+		long den = (long)count * (YCbCrMatrix.SCALE - matrix.getKr()) * 255;
+		long num = (128L << (bits - 8)) * den + (112L << (bits - 8)) * ((long)(YCbCrMatrix.SCALE - matrix.getKr()) * r - matrix.getKg() * g - matrix.getKb() * b);
+		
+		return (int)((num + den / 2) / den);
+	}
+	
+	/**
+	 * Expands an 8-bit value to 10 bits, rounded.
+	 */
+	protected static int expand10(int value)
+	{
+		return (value * 1023 + 127) / 255;
+	}
+	
+	/**
+	 * Returns the pixel at the given position, repeating the last column and row.
+	 */
+	protected static int getPixel(int[] argb, int width, int height, int x, int y)
+	{
+		return argb[Math.min(y, height - 1) * width + Math.min(x, width - 1)];
+	}
+	
+	protected static int red(int pixel)
+	{
+		return (pixel >> 16) & 0xFF;
+	}
+	
+	protected static int green(int pixel)
+	{
+		return (pixel >> 8) & 0xFF;
+	}
+	
+	protected static int blue(int pixel)
+	{
+		return pixel & 0xFF;
+	}
+	
+	/**
+	 * Stores the value as size little-endian bytes.
+	 */
+	protected static int put(byte[] dst, int index, int value, int size)
+	{
+		for(int i = 0; i < size; i++)
+		{
+			dst[index++] = (byte)(value >> (i * 8));
+		}
+		
+		return index;
+	}
+}
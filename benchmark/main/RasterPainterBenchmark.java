@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Compares the direct raster backend with the Graphics2D one: first checks that every segment image
+ * is pixel-exact, then measures pre-rendering of the 8 segment images. Both paint the layout,
+ * which UEITChecks checks against the baseline rendering.
+ */
+public class RasterPainterBenchmark
+{
+	protected static final int[][] RESOLUTIONS =
+	{
+		{ 1280, 720 },
+		{ 1920, 1080 },
+		{ 3840, 2160 },
+		{ 7680, 4320 },
+		{ 1024, 768 },
+		{ 1600, 1200 }
+	};
+	
+	public static void main(String[] args)
+	{
+		UEITPainter reference = new UEITPainter();
+		RasterPainter painter = new RasterPainter();
+		
+		for(int[] resolution : RESOLUTIONS)
+		{
+			int width = resolution[0];
+			int height = resolution[1];
+			
+			BufferedImage[] segments = painter.renderSegments(width, height);
+			
+			for(int i = -1; i < segments.length; i++)
+			{
+				int[] expected = new RasterCanvas(reference.renderSegment(width, height, i)).getData();
+				
+				if(!Arrays.equals(expected, new RasterCanvas(painter.renderSegment(width, height, i)).getData()) ||
+				   (i >= 0 && !Arrays.equals(expected, new RasterCanvas(segments[i]).getData())))
+				{
+					throw new IllegalStateException("Raster backend differs from Graphics2D at " + width + "x" + height + ", segment " + i);
+				}
+			}
+			
+			System.out.println(String.format("%5dx%-5d  graphics2d %8.1f ms  raster %8.1f ms", width, height, measure(reference, width, height), measure(painter, width, height)));
+		}
+	}
+	
+	protected static double measure(UEITPainter painter, int width, int height)
+	{
+		int iterations = Math.max(3, 100000000 / (width * height));
+		
+		for(int i = 0; i < iterations; i++)
+		{
+			painter.renderSegments(width, height);
+		}
+		
+		long time = System.nanoTime();
+		
+		for(int i = 0; i < iterations; i++)
+		{
+			painter.renderSegments(width, height);
+		}
+		
+		return (System.nanoTime() - time) / 1e6 / iterations;
+	}
+}
@@ -0,0 +1,659 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark suite tracking the cost of each stage of frame generation: static pre-rendering per resolution
+ * and aspect branch, building the layout, rendering in strips, the per-frame info-line overlay, moving sprites, passing frames between threads, extracting pixels from a BufferedImage, the scalar and vector
+ * row kernels, every raw pixel format and every output encoder.
+ * Results are printed and written as JSON to the file given by the benchmark.output system property.
+ * The correctness checks of these stages are in {@link UEITChecks}.
+ */
+public class UEITBenchmarks
+{
+	/**
+	 * 16:9 resolutions and 4:3 ones of the same height, which take the 24-column branch of the layout.
+	 */
+	protected static final int[][] RESOLUTIONS =
+	{
+		{ 1280, 720 },
+		{ 960, 720 },
+		{ 1920, 1080 },
+		{ 1440, 1080 },
+		{ 3840, 2160 },
+		{ 2880, 2160 },
+		{ 7680, 4320 },
+		{ 5760, 4320 }
+	};
+	
+	protected static final int[][] ENCODER_RESOLUTIONS =
+	{
+		{ 1280, 720 },
+		{ 1920, 1080 }
+	};
+	
+	protected static final int[][] KERNEL_RESOLUTIONS =
+	{
+		{ 1920, 1080 },
+		{ 7680, 4320 }
+	};
+	
+	/**
+	 * Conversion kernels, as named by {@link #runKernel}.
+	 */
+	protected static final String[] KERNELS = { "rgb24", "bgra", "rgb565le", "x2rgb10le", "luma8", "luma10" };
+	
+	protected static final int ENCODER_FRAMES = 8;
+	
+	public static void main(String[] args) throws Exception
+	{
+		BenchmarkRunner runner = new BenchmarkRunner();
+		
+		for(int[] resolution : RESOLUTIONS)
+		{
+			staticRender(runner, resolution[0], resolution[1]);
+		}
+		
+		for(int[] resolution : RESOLUTIONS)
+		{
+			layout(runner, resolution[0], resolution[1]);
+		}
+		
+		for(int[] resolution : RESOLUTIONS)
+		{
+			tiledRender(runner, resolution[0], resolution[1], 256);
+		}
+		
+		for(int[] resolution : RESOLUTIONS)
+		{
+			overlay(runner, resolution[0], resolution[1]);
+		}
+		
+		for(int[] resolution : RESOLUTIONS)
+		{
+			sprites(runner, resolution[0], resolution[1]);
+		}
+		
+		for(int[] resolution : KERNEL_RESOLUTIONS)
+		{
+			exchange(runner, resolution[0], resolution[1]);
+		}
+		
+		for(int[] resolution : RESOLUTIONS)
+		{
+			rasterExtraction(runner, resolution[0], resolution[1]);
+		}
+		
+		for(int[] resolution : KERNEL_RESOLUTIONS)
+		{
+			kernels(runner, resolution[0], resolution[1]);
+		}
+		
+		for(int[] resolution : ENCODER_RESOLUTIONS)
+		{
+			for(RawPixelFormat format : RawPixelFormat.values())
+			{
+				convert(runner, format, resolution[0], resolution[1]);
+			}
+		}
+		
+		File directory = Files.createTempDirectory("ueit-benchmark").toFile();
+		
+		try
+		{
+			for(int[] resolution : ENCODER_RESOLUTIONS)
+			{
+				for(OutputFormat format : OutputFormat.values())
+				{
+					encode(runner, directory, format, resolution[0], resolution[1]);
+				}
+			}
+			
+			for(int[] resolution : ENCODER_RESOLUTIONS)
+			{
+				for(OutputFormat format : new OutputFormat[] { OutputFormat.C, OutputFormat.LZ4 })
+				{
+					pipeline(runner, directory, format, resolution[0], resolution[1], 0);
+					pipeline(runner, directory, format, resolution[0], resolution[1], Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
+				}
+			}
+		}
+		finally
+		{
+			for(File file : directory.listFiles())
+			{
+				file.delete();
+			}
+			
+			directory.delete();
+		}
+		
+		runner.writeJson(System.getProperty("benchmark.output", "benchmark-results.json"));
+	}
+	
+	protected static String getAspect(int width, int height)
+	{
+		return UEITPainter.getNumCols(width, height) == 32 ? "16:9" : "4:3";
+	}
+	
+	/**
+	 * Pre-rendering of the 8 segment images by the raster and the Graphics2D backends.
+	 */
+	protected static void staticRender(BenchmarkRunner runner, final int width, final int height) throws Exception
+	{
+		final UEITPainter[] painters = { new RasterPainter(), new UEITPainter() };
+		final String[] names = { "raster", "graphics2d" };
+		
+		for(int i = 0; i < painters.length; i++)
+		{
+			final UEITPainter painter = painters[i];
+			
+			runner.run("staticRender", BenchmarkRunner.params("backend", names[i], "resolution", width + "x" + height, "aspect", getAspect(width, height)), 1, new BenchmarkRunner.Workload()
+			{
+				public Object run()
+				{
+					return painter.renderSegments(width, height);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Building the layout of a resolution from scratch, including the spans of circles and diagonal lines.
+	 */
+	protected static void layout(BenchmarkRunner runner, final int width, final int height) throws Exception
+	{
+		if(!runner.isEnabled("layout"))
+		{
+			return;
+		}
+		
+		UEITLayout layout = UEITLayout.get(width, height);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(layout);
+		out.close();
+		
+		runner.run("layout", BenchmarkRunner.params("resolution", width + "x" + height, "aspect", getAspect(width, height), "primitives", String.valueOf(layout.getPrimitiveCount()), "serialized", (bytes.size() + 1023) / 1024 + " KiB"), 1, new BenchmarkRunner.Workload()
+		{
+			public Object run()
+			{
+				return new UEITLayout(width, height);
+			}
+		});
+	}
+	
+	/**
+	 * One segment image rendered as strips of the given height into a single strip buffer.
+	 */
+	protected static void tiledRender(BenchmarkRunner runner, final int width, final int height, final int rows) throws Exception
+	{
+		if(!runner.isEnabled("tiledRender"))
+		{
+			return;
+		}
+		
+		final TilePainter painter = new TilePainter();
+		final BufferedImage strip = new BufferedImage(width, rows, BufferedImage.TYPE_INT_RGB);
+		
+		runner.run("tiledRender", BenchmarkRunner.params("rows", String.valueOf(rows), "resolution", width + "x" + height, "aspect", getAspect(width, height)), 1, new BenchmarkRunner.Workload()
+		{
+			public Object run()
+			{
+				for(int y = 0; y < height; y += rows)
+				{
+					painter.renderTile(strip, 0, y, width, height, 0);
+				}
+				
+				return strip;
+			}
+		});
+	}
+	
+	/**
+	 * Per-frame composition: copying the pre-rendered segment and drawing the info line into a heap raster,
+	 * updating only the dirty region of the previous frame, painting into an off-heap frame buffer,
+	 * and the info line alone through the glyph atlas.
+	 */
+	protected static void overlay(BenchmarkRunner runner, final int width, final int height) throws Exception
+	{
+		if(!runner.isEnabled("overlay"))
+		{
+			return;
+		}
+		
+		final UEITPainter painter = new RasterPainter();
+		final RasterCanvas[] segments = RasterCanvas.wrap(painter.renderSegments(width, height));
+		final RasterCanvas frame = new RasterCanvas(new int[width * height], width, height);
+		final char[] infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+		final GlyphAtlas atlas = painter.getGlyphAtlas(width, height);
+		
+		String resolution = width + "x" + height;
+		String aspect = getAspect(width, height);
+		
+		runner.run("overlay.frame", BenchmarkRunner.params("resolution", resolution, "aspect", aspect), 1, new BenchmarkRunner.Workload()
+		{
+			int frameNumber;
+			
+			public Object run()
+			{
+				frameNumber = (frameNumber + 1) % 1000;
+				
+				UEITPainter.formatInfoLine(infoline, 60, frameNumber);
+				painter.paintUEIT(frame, segments[frameNumber % segments.length], infoline);
+				
+				return frame;
+			}
+		});
+		
+		final DirtyRegion[] transitions = DirtyRegion.diff(segments);
+		final DirtyRegion region = new DirtyRegion(width, height);
+		final RasterCanvas dirtyFrame = new RasterCanvas(new int[width * height], width, height);
+		final char[] previous = new char[GlyphAtlas.INFO_LINE_LENGTH];
+		long area = 0;
+		
+		// Area of consecutive frames across the wrap of the frame counter and changes of the FPS value
+		
+		UEITPainter.formatInfoLine(infoline, 58, 950);
+		painter.paintUEIT(dirtyFrame, segments[950 % segments.length], infoline);
+		
+		for(int i = 1; i < 100; i++)
+		{
+			int frameNumber = (950 + i) % 1000;
+			
+			System.arraycopy(infoline, 0, previous, 0, infoline.length);
+			UEITPainter.formatInfoLine(infoline, 58 + i / 40, frameNumber);
+			
+			region.set(transitions[(frameNumber + segments.length - 1) % segments.length]);
+			atlas.addInfoLineBounds(previous, infoline, region);
+			area += region.getArea();
+		}
+		
+		runner.run("overlay.dirtyRegion", BenchmarkRunner.params("resolution", resolution, "aspect", aspect, "area", String.format("%.1f%%", area * 100.0 / 99 / width / height)), 1, new BenchmarkRunner.Workload()
+		{
+			int frameNumber = 999;
+			
+			public Object run()
+			{
+				int segment = frameNumber % segments.length;
+				frameNumber = (frameNumber + 1) % 1000;
+				
+				System.arraycopy(infoline, 0, previous, 0, infoline.length);
+				UEITPainter.formatInfoLine(infoline, 60, frameNumber);
+				
+				region.set(transitions[segment]);
+				atlas.addInfoLineBounds(previous, infoline, region);
+				painter.paintUEIT(dirtyFrame, segments[frameNumber % segments.length], infoline, region);
+				
+				return dirtyFrame;
+			}
+		});
+		
+		final FrameBuffer buffer = FrameBufferPool.getShared().lease(width, height);
+		
+		runner.run("overlay.frameBuffer", BenchmarkRunner.params("resolution", resolution, "aspect", aspect), 1, new BenchmarkRunner.Workload()
+		{
+			int frameNumber;
+			
+			public Object run()
+			{
+				frameNumber = (frameNumber + 1) % 1000;
+				
+				UEITPainter.formatInfoLine(infoline, 60, frameNumber);
+				painter.paintUEIT(buffer, segments[frameNumber % segments.length], infoline);
+				
+				return buffer;
+			}
+		});
+		
+		buffer.release();
+		
+		runner.run("overlay.infoLine", BenchmarkRunner.params("resolution", resolution, "aspect", aspect), 1, new BenchmarkRunner.Workload()
+		{
+			int frameNumber;
+			
+			public Object run()
+			{
+				frameNumber = (frameNumber + 1) % 1000;
+				
+				UEITPainter.formatInfoLine(infoline, 60, frameNumber);
+				atlas.drawInfoLine(frame, infoline);
+				
+				return frame;
+			}
+		});
+	}
+	
+	/**
+	 * Per-frame composition with moving sprites as the window does it with dirty regions.
+	 */
+	protected static void sprites(BenchmarkRunner runner, final int width, final int height) throws Exception
+	{
+		if(!runner.isEnabled("sprites"))
+		{
+			return;
+		}
+		
+		final FrameComposer composer = new FrameComposer(width, height);
+		final RasterCanvas frame = new RasterCanvas(new int[width * height], width, height);
+		long area = 0;
+		
+		for(int i = 0; i < 300; i++)
+		{
+			composer.compose(frame);
+			area += i > 0 ? composer.getRegion().getArea() : 0;
+		}
+		
+		runner.run("sprites", BenchmarkRunner.params("resolution", width + "x" + height, "aspect", getAspect(width, height), "area", String.format("%.1f%%", area * 100.0 / 299 / width / height)), 1, new BenchmarkRunner.Workload()
+		{
+			public Object run()
+			{
+				composer.compose(frame);
+				return frame;
+			}
+		});
+	}
+	
+	/**
+	 * Frames rendered with dirty regions and sprites as the window does it, handed to a presenting thread through
+	 * the triple buffer, which copies the changed region of every frame it takes into a retained copy of the screen.
+	 */
+	protected static void exchange(BenchmarkRunner runner, final int width, final int height) throws Exception
+	{
+		if(!runner.isEnabled("exchange"))
+		{
+			return;
+		}
+		
+		final FrameComposer composer = new FrameComposer(width, height);
+		final FrameExchange frames = new FrameExchange();
+		final Thread presenter = FrameComposer.present(frames, width, height);
+		
+		try
+		{
+			runner.run("exchange", BenchmarkRunner.params("resolution", width + "x" + height, "aspect", getAspect(width, height)), 1, new BenchmarkRunner.Workload()
+			{
+				public Object run()
+				{
+					composer.produce(frames, presenter);
+					return frames;
+				}
+			});
+		}
+		finally
+		{
+			presenter.interrupt();
+			presenter.join();
+		}
+	}
+	
+	/**
+	 * Reading the pixels of a frame: BufferedImage.getRGB as the original generator did,
+	 * against copying them straight out of the image's data buffer.
+	 */
+	protected static void rasterExtraction(BenchmarkRunner runner, int width, int height) throws Exception
+	{
+		if(!runner.isEnabled("rasterExtraction"))
+		{
+			return;
+		}
+		
+		final BufferedImage image = new RasterPainter().renderSegment(width, height, -1);
+		final int[] data = new RasterCanvas(image).getData();
+		final int[] pixels = new int[width * height];
+		
+		final int w = width;
+		final int h = height;
+		
+		String resolution = width + "x" + height;
+		String aspect = getAspect(width, height);
+		
+		runner.run("rasterExtraction", BenchmarkRunner.params("method", "getRGB", "resolution", resolution, "aspect", aspect), 1, new BenchmarkRunner.Workload()
+		{
+			public Object run()
+			{
+				return image.getRGB(0, 0, w, h, pixels, 0, w);
+			}
+		});
+		
+		runner.run("rasterExtraction", BenchmarkRunner.params("method", "dataBuffer", "resolution", resolution, "aspect", aspect), 1, new BenchmarkRunner.Workload()
+		{
+			public Object run()
+			{
+				System.arraycopy(data, 0, pixels, 0, pixels.length);
+				return pixels;
+			}
+		});
+	}
+	
+	/**
+	 * Writing a set of frames through an output format, including opening and closing the files; the score is per frame.
+	 */
+	protected static void encode(BenchmarkRunner runner, File directory, final OutputFormat format, final int width, final int height) throws Exception
+	{
+		if(!runner.isEnabled("encode"))
+		{
+			return;
+		}
+		
+		final UEITPainter painter = new RasterPainter();
+		final RasterCanvas[] segments = RasterCanvas.wrap(painter.renderSegments(width, height));
+		final int[][] frames = new int[ENCODER_FRAMES][];
+		final char[] infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+		
+		for(int i = 0; i < frames.length; i++)
+		{
+			RasterCanvas frame = new RasterCanvas(new int[width * height], width, height);
+			
+			UEITPainter.formatInfoLine(infoline, 60, i);
+			painter.paintUEIT(frame, segments[i % segments.length], infoline);
+			
+			frames[i] = frame.getData();
+		}
+		
+		final String filename = new File(directory, "ueit_" + format.name().toLowerCase()).getPath();
+		
+		runner.run("encode", BenchmarkRunner.params("format", format.name(), "resolution", width + "x" + height), frames.length, new BenchmarkRunner.Workload()
+		{
+			public Object run() throws IOException
+			{
+				FrameSetWriter writer = format.createWriter(filename, width, height, 60, frames.length);
+				
+				try
+				{
+					for(int[] frame : frames)
+					{
+						writer.writeFrame(frame);
+					}
+				}
+				finally
+				{
+					writer.close();
+				}
+				
+				return writer;
+			}
+		});
+	}
+	
+	/**
+	 * Generating a frame set through the render, encode and write pipeline, with or without encoder workers; the score is per frame.
+	 */
+	protected static void pipeline(BenchmarkRunner runner, File directory, OutputFormat format, final int width, final int height, int encoders) throws Exception
+	{
+		if(!runner.isEnabled("pipeline"))
+		{
+			return;
+		}
+		
+		final FrameSetGenerator generator = new FrameSetGenerator(60);
+		
+		generator.setOutputFormat(format);
+		generator.setOutputDirectory(directory);
+		generator.setEncoderThreadCount(encoders);
+		generator.setVerbose(false);
+		generator.setSegmentCache(new SegmentCache(SegmentCache.getDefaultMaxPixels(), null));
+		
+		runner.run("pipeline", BenchmarkRunner.params("format", format.name(), "encoders", String.valueOf(encoders), "resolution", width + "x" + height), ENCODER_FRAMES, new BenchmarkRunner.Workload()
+		{
+			public Object run() throws IOException
+			{
+				generator.generate(width, height, ENCODER_FRAMES);
+				return generator;
+			}
+		});
+	}
+	
+	/**
+	 * Runs a conversion kernel on count pixels, or the ramp kernel on ramp, once for every row of that length.
+	 */
+	protected static void runKernel(RowKernels kernels, String kernel, int[] argb, int offset, int count, int dstOffset, int[] ramp, byte[] dst)
+	{
+		if(kernel.equals("ramp"))
+		{
+			for(int row = 0; row < count / ramp.length; row++)
+			{
+				kernels.ramp(ramp, ramp.length, 0xFF00FF, 0x00FF00);
+			}
+		}
+		else if(kernel.equals("rgb24"))
+		{
+			kernels.toRGB24(argb, offset, count, dst, dstOffset);
+		}
+		else if(kernel.equals("bgra"))
+		{
+			kernels.toBGRA(argb, offset, count, dst, dstOffset);
+		}
+		else if(kernel.equals("rgb565le"))
+		{
+			kernels.toRGB565LE(argb, offset, count, dst, dstOffset);
+		}
+		else if(kernel.equals("x2rgb10le"))
+		{
+			kernels.toX2RGB10LE(argb, offset, count, dst, dstOffset);
+		}
+		else
+		{
+			kernels.toLuma(argb, offset, count, YCbCrMatrix.BT709, kernel.equals("luma8") ? 8 : 10, dst, dstOffset);
+		}
+	}
+	
+	/**
+	 * The row kernels over a whole frame, scalar and, when the JVM provides them, on vectors.
+	 * The ramp kernel fills one row per row of the frame.
+	 */
+	protected static void kernels(BenchmarkRunner runner, final int width, final int height) throws Exception
+	{
+		if(!runner.isEnabled("kernels"))
+		{
+			return;
+		}
+		
+		RowKernels selected = RowKernels.get();
+		
+		final int[] argb = renderFrame(width, height);
+		final int[] ramp = new int[width];
+		final byte[] dst = new byte[width * height * 4];
+		
+		List<String> kernels = new ArrayList<String>(Arrays.asList(KERNELS));
+		kernels.add(0, "ramp");
+		
+		RowKernels[] implementations = selected != RowKernels.getScalar() ? new RowKernels[] { RowKernels.getScalar(), selected } : new RowKernels[] { selected };
+		
+		// Until C2 has compiled them, vector kernels run on boxed vectors 10 to 200 times slower than the scalar loops,
+		// and a few calls per warmup iteration can leave them uncompiled into the first resolution measured
+		
+		for(String kernel : kernels)
+		{
+			for(RowKernels implementation : implementations)
+			{
+				for(int i = 0; i < 20000; i++)
+				{
+					runKernel(implementation, kernel, argb, 0, width, 0, ramp, dst);
+				}
+			}
+		}
+		
+		for(final String kernel : kernels)
+		{
+			for(final RowKernels implementation : implementations)
+			{
+				runner.run("kernels", BenchmarkRunner.params("kernel", kernel, "implementation", implementation.getName(), "resolution", width + "x" + height), 1, new BenchmarkRunner.Workload()
+				{
+					public Object run()
+					{
+						runKernel(implementation, kernel, argb, 0, width * height, 0, ramp, dst);
+						return dst;
+					}
+				});
+			}
+		}
+	}
+	
+	/**
+	 * The UEIT frame the kernels and pixel formats are measured on: segment 3 with the info line of frame 123.
+	 */
+	protected static int[] renderFrame(int width, int height)
+	{
+		UEITPainter painter = new RasterPainter();
+		RasterCanvas frame = new RasterCanvas(new int[width * height], width, height);
+		
+		painter.paintUEIT(frame, RasterCanvas.wrap(painter.renderSegments(width, height))[3], UEITPainter.formatInfoLine(new char[GlyphAtlas.INFO_LINE_LENGTH], 60, 123));
+		
+		return frame.getData();
+	}
+	
+	/**
+	 * Converting a frame into a raw pixel format, in parallel bands and on one thread.
+	 */
+	protected static void convert(BenchmarkRunner runner, RawPixelFormat format, final int width, final int height) throws Exception
+	{
+		if(!runner.isEnabled("convert"))
+		{
+			return;
+		}
+		
+		final int[] argb = renderFrame(width, height);
+		final byte[] dst = new byte[format.getFrameSize(width, height)];
+		
+		for(boolean parallel : new boolean[] { true, false })
+		{
+			final FrameConverter converter = new FrameConverter(format, YCbCrMatrix.BT709, parallel ? ForkJoinPool.commonPool() : null);
+			
+			runner.run("convert", BenchmarkRunner.params("format", format.getName(), "parallel", String.valueOf(parallel), "resolution", width + "x" + height), 1, new BenchmarkRunner.Workload()
+			{
+				public Object run()
+				{
+					converter.convert(argb, width, height, dst);
+					return dst;
+				}
+			});
+		}
+	}
+}
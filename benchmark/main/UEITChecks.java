@@ -0,0 +1,645 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Correctness checks of the stages timed by {@link UEITBenchmarks}, without any timing: the layout against
+ * the baseline rendering and through serialization, strips, dirty region updates, sprites, the frame exchange,
+ * the vector row kernels and every raw pixel format. A failed check throws; check.filter (regular expression
+ * matched against the check names) selects a subset.
+ */
+public class UEITChecks
+{
+	/**
+	 * Width, height and the CRC32 of segments -1 to 7 (see checksum()) as the Graphics2D renderer
+	 * of the baseline drew them with its own per-paint geometry.
+	 */
+	protected static final long[][] GOLDEN =
+	{
+		{ 1280, 720, 0x4536AB9AL },
+		{ 1920, 1080, 0xB1A132BEL },
+		{ 3840, 2160, 0xEE17BDD3L },
+		{ 7680, 4320, 0xAFA47A00L },
+		{ 1024, 768, 0x9F43888AL },
+		{ 1600, 1200, 0x8AE58FCAL },
+		{ 640, 480, 0xE5694B38L },
+		{ 720, 576, 0xB29D8E54L },
+		{ 1366, 768, 0xD2A32F86L },
+		{ 2560, 1440, 0x19F254F4L },
+		{ 3440, 1440, 0x2B149977L }
+	};
+	
+	protected static final Pattern FILTER = Pattern.compile(System.getProperty("check.filter", ".*"));
+	
+	/**
+	 * Fetched once, since getting it allocates.
+	 */
+	protected static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	
+	public static void main(String[] args) throws Exception
+	{
+		if(isEnabled("layout"))
+		{
+			for(long[] golden : GOLDEN)
+			{
+				checkLayout((int)golden[0], (int)golden[1], golden[2]);
+			}
+		}
+		
+		for(int[] resolution : UEITBenchmarks.RESOLUTIONS)
+		{
+			if(isEnabled("tiledRender"))
+			{
+				checkTiles(resolution[0], resolution[1], 256);
+			}
+			
+			if(isEnabled("overlay"))
+			{
+				checkOverlay(resolution[0], resolution[1]);
+			}
+			
+			if(isEnabled("sprites"))
+			{
+				checkSprites(resolution[0], resolution[1]);
+			}
+		}
+		
+		if(isEnabled("exchange"))
+		{
+			checkExchange(64, 48, 20000);
+			
+			for(int[] resolution : UEITBenchmarks.KERNEL_RESOLUTIONS)
+			{
+				checkExchangeAllocation(resolution[0], resolution[1]);
+			}
+		}
+		
+		if(isEnabled("kernels") && RowKernels.get() != RowKernels.getScalar())
+		{
+			checkKernels(RowKernels.get());
+		}
+		
+		if(isEnabled("convert"))
+		{
+			int width = UEITBenchmarks.ENCODER_RESOLUTIONS[0][0];
+			int height = UEITBenchmarks.ENCODER_RESOLUTIONS[0][1];
+			
+			int[] frame = UEITBenchmarks.renderFrame(width, height);
+			
+			for(RawPixelFormat format : RawPixelFormat.values())
+			{
+				checkPixelFormats(format, frame, width, height);
+			}
+		}
+	}
+	
+	protected static boolean isEnabled(String name)
+	{
+		return FILTER.matcher(name).find();
+	}
+	
+	protected static void passed(String name, String details)
+	{
+		System.out.println(String.format("%-12s %s", name, details));
+	}
+	
+	/**
+	 * CRC32 over the pixels of segments -1 to 7, each pixel as a big-endian int.
+	 */
+	protected static long checksum(UEITPainter painter, int width, int height)
+	{
+		CRC32 crc = new CRC32();
+		byte[] bytes = new byte[width * 4];
+		
+		for(int i = -1; i < 8; i++)
+		{
+			int[] data = new RasterCanvas(painter.renderSegment(width, height, i)).getData();
+			
+			for(int y = 0; y < height; y++)
+			{
+				for(int x = 0; x < width; x++)
+				{
+					int pixel = data[y * width + x];
+					
+					bytes[x * 4] = (byte)(pixel >>> 24);
+					bytes[x * 4 + 1] = (byte)(pixel >>> 16);
+					bytes[x * 4 + 2] = (byte)(pixel >>> 8);
+					bytes[x * 4 + 3] = (byte)pixel;
+				}
+				
+				crc.update(bytes, 0, bytes.length);
+			}
+		}
+		
+		return crc.getValue();
+	}
+	
+	/**
+	 * Checks that both backends, which paint the layout, give the checksum of the baseline rendering,
+	 * and that a layout read back from its serialized form paints the same pixels.
+	 */
+	protected static void checkLayout(int width, int height, long golden) throws Exception
+	{
+		if(checksum(new UEITPainter(), width, height) != golden || checksum(new RasterPainter(), width, height) != golden)
+		{
+			throw new IllegalStateException("Layout differs from the baseline rendering at " + width + "x" + height);
+		}
+		
+		UEITLayout layout = UEITLayout.get(width, height);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(layout);
+		out.close();
+		
+		UEITLayout copy = (UEITLayout)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		RasterPainter painter = new RasterPainter();
+		
+		for(int segment = 0; segment < 8; segment++)
+		{
+			RasterCanvas expected = new RasterCanvas(new int[width * height], width, height);
+			RasterCanvas actual = new RasterCanvas(new int[width * height], width, height);
+			
+			painter.paintUEIT(expected, layout, segment);
+			painter.paintUEIT(actual, copy, segment);
+			
+			if(!Arrays.equals(expected.getData(), actual.getData()))
+			{
+				throw new IllegalStateException("Deserialized layout paints differently at " + width + "x" + height);
+			}
+		}
+		
+		passed("layout", width + "x" + height);
+	}
+	
+	/**
+	 * Checks that one segment image rendered as strips of the given height is pixel-exact with the whole image.
+	 */
+	protected static void checkTiles(int width, int height, int rows)
+	{
+		TilePainter painter = new TilePainter();
+		BufferedImage strip = new BufferedImage(width, rows, BufferedImage.TYPE_INT_RGB);
+		
+		int[] expected = new RasterCanvas(new RasterPainter().renderSegment(width, height, 0)).getData();
+		
+		for(int y = 0; y < height; y += rows)
+		{
+			int[] actual = painter.renderTile(strip, 0, y, width, height, 0).getData();
+			int count = Math.min(rows, height - y) * width;
+			
+			if(!Arrays.equals(Arrays.copyOfRange(expected, y * width, y * width + count), Arrays.copyOf(actual, count)))
+			{
+				throw new IllegalStateException("Tile at row " + y + " differs from the whole image at " + width + "x" + height);
+			}
+		}
+		
+		passed("tiledRender", width + "x" + height);
+	}
+	
+	/**
+	 * Checks that updating only the dirty region of the previous frame gives the full frame, across the wrap
+	 * of the frame counter and changes of the FPS value, and that painting into an off-heap frame buffer
+	 * gives the heap raster.
+	 */
+	protected static void checkOverlay(int width, int height) throws Exception
+	{
+		UEITPainter painter = new RasterPainter();
+		RasterCanvas[] segments = RasterCanvas.wrap(painter.renderSegments(width, height));
+		DirtyRegion[] transitions = DirtyRegion.diff(segments);
+		GlyphAtlas atlas = painter.getGlyphAtlas(width, height);
+		
+		RasterCanvas frame = new RasterCanvas(new int[width * height], width, height);
+		RasterCanvas dirtyFrame = new RasterCanvas(new int[width * height], width, height);
+		DirtyRegion region = new DirtyRegion(width, height);
+		char[] infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+		char[] previous = new char[GlyphAtlas.INFO_LINE_LENGTH];
+		
+		for(int i = 0; i < 100; i++)
+		{
+			int frameNumber = (950 + i) % 1000;
+			
+			UEITPainter.formatInfoLine(infoline, 58 + i / 40, frameNumber);
+			
+			if(i == 0)
+			{
+				region.setFull(width, height);
+			}
+			else
+			{
+				region.set(transitions[(frameNumber + segments.length - 1) % segments.length]);
+				atlas.addInfoLineBounds(previous, infoline, region);
+			}
+			
+			painter.paintUEIT(dirtyFrame, segments[frameNumber % segments.length], infoline, region);
+			painter.paintUEIT(frame, segments[frameNumber % segments.length], infoline);
+			
+			if(!Arrays.equals(frame.getData(), dirtyFrame.getData()))
+			{
+				throw new IllegalStateException("Dirty region update differs from the full frame " + frameNumber + " at " + width + "x" + height);
+			}
+			
+			System.arraycopy(infoline, 0, previous, 0, infoline.length);
+		}
+		
+		FrameBuffer buffer = FrameBufferPool.getShared().lease(width, height);
+		
+		UEITPainter.formatInfoLine(infoline, 60, 123);
+		painter.paintUEIT(frame, segments[123 % segments.length], infoline);
+		painter.paintUEIT(buffer, segments[123 % segments.length], infoline);
+		
+		int[] pixels = new int[width * height];
+		buffer.getPixels().get(pixels);
+		buffer.release();
+		
+		if(!Arrays.equals(frame.getData(), pixels))
+		{
+			throw new IllegalStateException("Frame buffer differs from the heap raster at " + width + "x" + height);
+		}
+		
+		passed("overlay", width + "x" + height);
+	}
+	
+	/**
+	 * Checks that the sprites advance by the same distance every frame, that frames composed with dirty regions
+	 * match frames painted in full, and that composing does not allocate.
+	 */
+	protected static void checkSprites(int width, int height)
+	{
+		// 8 px and a fractional 8.5 px per frame at 60 fps
+		
+		for(double speed : new double[] { UEIT.DEFAULT_SPRITE_SPEED, 510 })
+		{
+			Sprite bar = Sprite.create("bar", speed);
+			bar.setLayout(UEITLayout.get(width, height));
+			
+			for(int i = 0; i < 1000; i++)
+			{
+				bar.update(i * FrameComposer.PERIOD);
+				int x = bar.getX();
+				
+				bar.update((i + 1) * FrameComposer.PERIOD);
+				int step = bar.getX() - x;
+				
+				if(step >= 0 && Math.abs(step - speed / 60) >= 1)
+				{
+					throw new IllegalStateException("Sprite moved by " + step + " px in frame " + i + " at " + speed + " px/s");
+				}
+			}
+		}
+		
+		FrameComposer composer = new FrameComposer(width, height);
+		SpriteLayer reference = SpriteLayer.create(UEIT.DEFAULT_SPRITES, UEIT.DEFAULT_SPRITE_SPEED);
+		
+		RasterCanvas frame = new RasterCanvas(new int[width * height], width, height);
+		RasterCanvas expected = new RasterCanvas(new int[width * height], width, height);
+		
+		for(int i = 0; i < 300; i++)
+		{
+			composer.compose(frame);
+			composer.paintFull(expected, reference);
+			
+			if(!Arrays.equals(expected.getData(), frame.getData()))
+			{
+				throw new IllegalStateException("Sprite composition differs from the full frame " + i + " at " + width + "x" + height);
+			}
+		}
+		
+		long allocated = getAllocatedBytes();
+		
+		for(int i = 0; i < 1000; i++)
+		{
+			composer.compose(frame);
+		}
+		
+		allocated = getAllocatedBytes() - allocated;
+		
+		if(allocated > 0)
+		{
+			throw new IllegalStateException("Sprite composition allocated " + allocated + " bytes in 1000 frames at " + width + "x" + height);
+		}
+		
+		passed("sprites", width + "x" + height);
+	}
+	
+	/**
+	 * Bytes allocated so far by the current thread, or 0 where the JVM does not count them.
+	 */
+	protected static long getAllocatedBytes()
+	{
+		if(THREADS instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean)THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Row of a synthetic frame sequence in which frame n (counted from 1) fills row n % height with n:
+	 * returns the value the row holds in frame n.
+	 */
+	protected static int getExchangeRow(long frame, int row, int height)
+	{
+		long last = frame - ((frame - row) % height + height) % height;
+		return last > 0 ? (int)last : 0;
+	}
+	
+	/**
+	 * Hands the synthetic sequence through the triple buffer to a thread that copies the changed region of every frame
+	 * it takes into a retained copy of the screen, and checks there that every frame taken is complete and newer
+	 * than the previous one and that the retained copy stays equal to it.
+	 */
+	protected static void checkExchange(final int width, final int height, final int count) throws Exception
+	{
+		final FrameExchange frames = new FrameExchange();
+		final String[] error = new String[1];
+		
+		Thread consumer = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				int[] screen = new int[width * height];
+				long last = 0;
+				
+				while(last < count)
+				{
+					FrameExchange.Slot slot = frames.take();
+					
+					if(slot == null)
+					{
+						Thread.yield();
+						continue;
+					}
+					
+					int[] data = slot.getCanvas().getData();
+					
+					if(slot.getSequence() <= last)
+					{
+						error[0] = "Frame " + slot.getSequence() + " taken after frame " + last;
+						return;
+					}
+					
+					last = slot.getSequence();
+					
+					for(int row = 0; row < height; row++)
+					{
+						int value = getExchangeRow(last, row, height);
+						
+						for(int x = 0; x < width; x++)
+						{
+							if(data[row * width + x] != value)
+							{
+								error[0] = "Frame " + last + " taken incomplete at " + x + "," + row;
+								return;
+							}
+						}
+					}
+					
+					slot.getChangedRegion().copy(data, screen);
+					
+					if(!Arrays.equals(screen, data))
+					{
+						error[0] = "Changed region of frame " + last + " does not update the previous frame";
+						return;
+					}
+				}
+			}
+		}, "exchange check");
+		
+		consumer.start();
+		
+		DirtyRegion changed = new DirtyRegion(width, height);
+		
+		for(long frame = 1; frame <= count && consumer.isAlive(); frame++)
+		{
+			FrameExchange.Slot slot = frames.getBack(width, height);
+			int[] data = slot.getCanvas().getData();
+			
+			changed.clear();
+			changed.add(0, (int)(frame % height), width, 1);
+			
+			DirtyRegion redraw = frames.nextFrame(changed);
+			
+			for(int i = 0; i < (redraw.isFull() ? 1 : redraw.getCount()); i++)
+			{
+				int x = redraw.isFull() ? 0 : redraw.getX(i);
+				int y = redraw.isFull() ? 0 : redraw.getY(i);
+				int w = redraw.isFull() ? width : redraw.getRectWidth(i);
+				int h = redraw.isFull() ? height : redraw.getRectHeight(i);
+				
+				for(int row = y; row < y + h; row++)
+				{
+					Arrays.fill(data, row * width + x, row * width + x + w, getExchangeRow(frame, row, height));
+				}
+			}
+			
+			frames.publish(0, 0);
+		}
+		
+		consumer.join();
+		
+		if(error[0] != null)
+		{
+			throw new IllegalStateException(error[0] + " at " + width + "x" + height);
+		}
+		
+		passed("exchange", count + " frames at " + width + "x" + height);
+	}
+	
+	/**
+	 * Checks that rendering frames with dirty regions and sprites into the frame exchange and publishing them
+	 * does not allocate while another thread presents them.
+	 */
+	protected static void checkExchangeAllocation(int width, int height) throws Exception
+	{
+		FrameComposer composer = new FrameComposer(width, height);
+		FrameExchange frames = new FrameExchange();
+		Thread presenter = FrameComposer.present(frames, width, height);
+		
+		try
+		{
+			// until the rectangle arrays of the regions have grown to the largest unions
+			
+			for(int i = 0; i < 2000; i++)
+			{
+				composer.produce(frames, presenter);
+			}
+			
+			long allocated = getAllocatedBytes();
+			
+			for(int i = 0; i < 1000; i++)
+			{
+				composer.produce(frames, presenter);
+			}
+			
+			allocated = getAllocatedBytes() - allocated;
+			
+			if(allocated > 0)
+			{
+				throw new IllegalStateException("Rendering into the frame exchange allocated " + allocated + " bytes in 1000 frames at " + width + "x" + height);
+			}
+		}
+		finally
+		{
+			presenter.interrupt();
+			presenter.join();
+		}
+		
+		passed("exchange", "no allocation at " + width + "x" + height);
+	}
+	
+	/**
+	 * Checks the selected row kernels against the scalar ones on all 2^24 colors, at offsets that leave
+	 * partial vectors at both ends, and on ramps of every width up to 4096 and a few larger ones.
+	 */
+	protected static void checkKernels(RowKernels kernels)
+	{
+		RowKernels scalar = RowKernels.getScalar();
+		
+		int[] colors = new int[(1 << 24) + 7];
+		
+		for(int i = 0; i < colors.length; i++)
+		{
+			colors[i] = 0xFF000000 | (i - 3);
+		}
+		
+		byte[] expected = new byte[colors.length * 4 + 5];
+		byte[] actual = new byte[expected.length];
+		
+		for(String kernel : UEITBenchmarks.KERNELS)
+		{
+			Arrays.fill(expected, (byte)0x5A);
+			Arrays.fill(actual, (byte)0x5A);
+			
+			UEITBenchmarks.runKernel(scalar, kernel, colors, 3, 1 << 24, 5, null, expected);
+			UEITBenchmarks.runKernel(kernels, kernel, colors, 3, 1 << 24, 5, null, actual);
+			
+			if(!Arrays.equals(expected, actual))
+			{
+				throw new IllegalStateException(kernels.getName() + " " + kernel + " differs from the scalar kernel");
+			}
+		}
+		
+		int[] expectedRamp = new int[16384];
+		int[] actualRamp = new int[expectedRamp.length];
+		
+		for(int count = 0; count < expectedRamp.length; count += count < 4096 ? 1 : 997)
+		{
+			for(int[] masks : new int[][] { { 0xFFFFFF, 0 }, { 0xFF00FF, 0x00FF00 } })
+			{
+				scalar.ramp(expectedRamp, count, masks[0], masks[1]);
+				kernels.ramp(actualRamp, count, masks[0], masks[1]);
+				
+				if(!Arrays.equals(expectedRamp, actualRamp))
+				{
+					throw new IllegalStateException(kernels.getName() + " ramp of " + count + " pixels differs from the scalar kernel");
+				}
+			}
+		}
+		
+		passed("kernels", kernels.getName());
+	}
+	
+	/**
+	 * Checks every pixel format against the reference implementation on all 2^24 colors, on random pixels
+	 * and on a frame of odd size, with both matrices, and on the UEIT frame through all conversion paths.
+	 */
+	protected static void checkPixelFormats(RawPixelFormat format, int[] frame, int width, int height) throws Exception
+	{
+		int[] colors = new int[1 << 24];
+		
+		for(int i = 0; i < colors.length; i++)
+		{
+			colors[i] = 0xFF000000 | i;
+		}
+		
+		Random random = new Random(format.ordinal());
+		int[] noise = new int[1023 * 767];
+		
+		for(int i = 0; i < noise.length; i++)
+		{
+			noise[i] = 0xFF000000 | random.nextInt(1 << 24);
+		}
+		
+		for(YCbCrMatrix matrix : format.isYCbCr() ? YCbCrMatrix.values() : new YCbCrMatrix[] { YCbCrMatrix.BT601 })
+		{
+			FrameConverter converter = new FrameConverter(format, matrix);
+			
+			checkPixelFormat(converter, colors, 4096, 4096, "all colors");
+			checkPixelFormat(converter, noise, 1023, 767, "random pixels");
+			checkPixelFormat(converter, noise, 1023 * 767 / 13, 13, "a frame of odd size");
+		}
+		
+		FrameConverter converter = new FrameConverter(format, YCbCrMatrix.BT709);
+		byte[] expected = checkPixelFormat(converter, frame, width, height, "the UEIT frame");
+		
+		byte[] serial = new byte[expected.length];
+		new FrameConverter(format, YCbCrMatrix.BT709, null).convert(frame, width, height, serial);
+		
+		FrameBuffer buffer = FrameBufferPool.getShared().lease(width, height);
+		byte[] offHeap = new byte[expected.length];
+		
+		buffer.getPixels().put(frame);
+		converter.convert(buffer, offHeap);
+		buffer.release();
+		
+		byte[] strips = new byte[expected.length];
+		int rows = 6;
+		
+		for(int row = 0; row < height; row += rows)
+		{
+			converter.convertRows(frame, row * width, width, row, Math.min(rows, height - row), height, strips);
+		}
+		
+		if(!Arrays.equals(expected, serial) || !Arrays.equals(expected, offHeap) || !Arrays.equals(expected, strips))
+		{
+			throw new IllegalStateException(format.getName() + " conversion paths disagree");
+		}
+		
+		passed("convert", format.getName());
+	}
+	
+	protected static byte[] checkPixelFormat(FrameConverter converter, int[] argb, int width, int height, String description)
+	{
+		byte[] expected = PixelFormatReference.convert(converter.getFormat(), converter.getMatrix(), argb, width, height);
+		byte[] actual = new byte[converter.getFrameSize(width, height)];
+		
+		converter.convert(argb, width, height, actual);
+		
+		for(int i = 0; i < expected.length; i++)
+		{
+			if(expected[i] != actual[i])
+			{
+				throw new IllegalStateException(converter.getFormat().getName() + " " + converter.getMatrix().getName() + " differs from the reference on " + description + " at byte " + i);
+			}
+		}
+		
+		return expected;
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates several frame sets in one JVM, as listed in a properties manifest:
+ * <pre>
+ * jobs=2                   # frame sets generated concurrently
+ * threads=2                # render threads of each frame set
+ * default.fps=60
+ * default.frames=32
+ * default.format=c
+ * default.directory=out
+ * job.hd.size=1280x720
+ * job.fhd.size=1920x1080
+ * job.fhd.format=bin
+ * job.xga.size=1024x768
+ * job.xga.verify=true
+ * job.xga.layout=true      # also writes the layout header
+ * job.fpga.size=800x480
+ * job.fpga.format=bin
+ * job.fpga.pixel-format=rgb565le
+ * job.fpga.color-matrix=bt709  # for YCbCr pixel formats
+ * </pre>
+ * Every job.&lt;name&gt;.* key overrides the matching default.* key. Jobs of the same resolution
+ * share pre-rendered segment images through a {@link SegmentCache}.
+ */
+public class BatchRunner
+{
+	protected final List<Job> jobs = new ArrayList<Job>();
+	protected final int concurrency;
+	protected final int threadCount;
+	
+	protected SegmentCache segmentCache = new SegmentCache(SegmentCache.getDefaultMaxPixels(), null);
+	
+	public BatchRunner(Properties manifest)
+	{
+		TreeSet<String> names = new TreeSet<String>();
+		
+		for(String key : manifest.stringPropertyNames())
+		{
+			if(key.startsWith("job.") && key.indexOf('.', 4) > 4)
+			{
+				names.add(key.substring(4, key.indexOf('.', 4)));
+			}
+		}
+		
+		for(String name : names)
+		{
+			jobs.add(new Job(name, manifest));
+		}
+		
+		int processors = Runtime.getRuntime().availableProcessors();
+		
+		concurrency = Math.max(1, Integer.parseInt(manifest.getProperty("jobs", Integer.toString(Math.min(Math.max(jobs.size(), 1), processors)))));
+		threadCount = Math.max(1, Integer.parseInt(manifest.getProperty("threads", Integer.toString(Math.max(1, processors / concurrency)))));
+	}
+	
+	public static Properties loadManifest(String filename) throws IOException
+	{
+		Properties manifest = new Properties();
+		InputStream in = new FileInputStream(filename);
+		
+		try
+		{
+			manifest.load(in);
+		}
+		finally
+		{
+			in.close();
+		}
+		
+		return manifest;
+	}
+	
+	/**
+	 * Sets the cache through which jobs share segment images.
+	 */
+	public void setSegmentCache(SegmentCache segmentCache)
+	{
+		this.segmentCache = segmentCache;
+	}
+	
+	public List<Job> getJobs()
+	{
+		return jobs;
+	}
+	
+	/**
+	 * Runs all jobs on a pool of the configured size and prints the timing of each. Returns false if any job failed.
+	 */
+	public boolean run() throws InterruptedException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		long time = System.nanoTime();
+		
+		try
+		{
+			List<Future<Job>> futures = new ArrayList<Future<Job>>();
+			
+			for(final Job job : jobs)
+			{
+				futures.add(executor.submit(new Callable<Job>()
+				{
+					public Job call()
+					{
+						runJob(job);
+						return job;
+					}
+				}));
+			}
+			
+			for(Future<Job> future : futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch(ExecutionException ex)
+				{
+					System.err.println(ex.getCause().toString());
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		
+		boolean success = true;
+		
+		System.out.println(String.format("%-16s %-11s %5s %7s %-8s %10s %8s  %s", "Job", "Size", "FPS", "Frames", "Format", "Time, s", "FPS out", "Status"));
+		
+		for(Job job : jobs)
+		{
+			System.out.println(String.format("%-16s %-11s %5s %7d %-8s %10.3f %8.1f  %s",
+											 job.name, job.width + "x" + job.height, job.fps, job.frameCount, job.format.name().toLowerCase(),
+											 job.nanos / 1e9, job.nanos > 0 ? job.frameCount * 1e9 / job.nanos : 0, job.error == null ? "ok" : job.error));
+			
+			success &= job.error == null;
+		}
+		
+		System.out.println(String.format("%d jobs in %.3f s on %d workers with %d threads each", jobs.size(), (System.nanoTime() - time) / 1e9, concurrency, threadCount));
+		System.out.println(segmentCache.getStatistics());
+		System.out.println(FrameBufferPool.getShared().getStatistics());
+		
+		return success;
+	}
+	
+	protected void runJob(Job job)
+	{
+		long time = System.nanoTime();
+		try
+		{
+			FrameSetGenerator generator = new FrameSetGenerator(job.fps);
+			
+			generator.setThreadCount(threadCount);
+			generator.setOutputFormat(job.format);
+			generator.setVerify(job.verify);
+			generator.setWriteLayout(job.layout);
+			
+			if(job.pixelFormat != null)
+			{
+				generator.setPixelConverter(new FrameConverter(job.pixelFormat, job.matrix));
+			}
+
+			generator.setVerbose(false);
+			
+			if(job.directory != null)
+			{
+				job.directory.mkdirs();
+				generator.setOutputDirectory(job.directory);
+			}
+			
+			generator.setSegmentCache(segmentCache);
+			generator.generate(job.width, job.height, job.frameCount);
+		}
+		catch(Throwable ex)
+		{
+			job.error = ex.toString();
+		}
+		finally
+		{
+			job.nanos = System.nanoTime() - time;
+		}
+	}
+	
+	public static class Job
+	{
+		protected final String name;
+		protected final int width;
+		protected final int height;
+		protected final double fps;
+		protected final int frameCount;
+		protected final OutputFormat format;
+		protected final RawPixelFormat pixelFormat;
+		protected final YCbCrMatrix matrix;
+		protected final boolean verify;
+		protected final boolean layout;
+		protected final File directory;
+		
+		protected long nanos;
+		protected String error;
+		
+		public Job(String name, Properties manifest)
+		{
+			this.name = name;
+			
+			String size = getProperty(manifest, name, "size", null);
+			
+			if(size == null || size.indexOf('x') < 0)
+			{
+				throw new IllegalArgumentException("Job " + name + ": size must be given as WIDTHxHEIGHT");
+			}
+			
+			try
+			{
+				width = Integer.parseInt(size.substring(0, size.indexOf('x')).trim());
+				height = Integer.parseInt(size.substring(size.indexOf('x') + 1).trim());
+				
+				fps = Double.parseDouble(getProperty(manifest, name, "fps", "60"));
+				frameCount = Integer.parseInt(getProperty(manifest, name, "frames", "32"));
+				format = OutputFormat.fromName(getProperty(manifest, name, "format", OutputFormat.C.name()));
+				
+				String pixelFormat = getProperty(manifest, name, "pixel-format", null);
+				
+				this.pixelFormat = pixelFormat != null ? RawPixelFormat.fromName(pixelFormat) : null;
+				matrix = YCbCrMatrix.fromName(getProperty(manifest, name, "color-matrix", YCbCrMatrix.BT601.getName()));
+			}
+			catch(IllegalArgumentException ex)
+			{
+				throw new IllegalArgumentException("Job " + name + ": " + ex.getMessage());
+			}
+			
+			verify = Boolean.parseBoolean(getProperty(manifest, name, "verify", "false"));
+			layout = Boolean.parseBoolean(getProperty(manifest, name, "layout", "false"));
+			
+			String directory = getProperty(manifest, name, "directory", null);
+			this.directory = directory != null ? new File(directory) : null;
+		}
+		
+		protected static String getProperty(Properties manifest, String name, String key, String defaultValue)
+		{
+			String value = manifest.getProperty("job." + name + "." + key);
+			
+			if(value == null)
+			{
+				value = manifest.getProperty("default." + key, defaultValue);
+			}
+			
+			return value != null ? value.trim() : null;
+		}
+		
+		public String getName()
+		{
+			return name;
+		}
+		
+		public String getSizeKey()
+		{
+			return width + "x" + height;
+		}
+	}
+}
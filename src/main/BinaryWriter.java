@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a frame set as raw little-endian ARGB uint32_t data through a file channel. Off-heap frames are written
+ * straight from their buffers, pixels in arrays are copied through one reusable direct buffer.
+ * The accompanying .h file declares the same UEIT_DATA array as the C source output,
+ * and the .S file defines it with .incbin so that the data never has to go through the C compiler.
+ * With a converter the frames are written in its pixel format instead, as an array of frames of UEIT_FRAME_SIZE bytes.
+ */
+public class BinaryWriter implements StripWriter
+{
+	protected static final int BUFFER_SIZE = 4 << 20;
+	
+	protected final FileChannel channel;
+	protected final int width;
+	protected final int height;
+	
+	protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	protected final IntBuffer pixels = buffer.asIntBuffer();
+	
+	protected final FrameConverter converter;
+	protected byte[] frame;
+	protected int frameRow;
+	
+	public BinaryWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+	{
+		this(filename, width, height, fps, frameCount, null);
+	}
+	
+	/**
+	 * @param converter converter into the pixel format of the file, or null for ARGB
+	 */
+	public BinaryWriter(String filename, int width, int height, int fps, int frameCount, FrameConverter converter) throws IOException
+	{
+		this.width = width;
+		this.height = height;
+		this.converter = converter;
+		
+		channel = FileChannel.open(Paths.get(filename + ".bin"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		CHeader header = new CHeader(filename, width, height, fps, frameCount);
+		String name = CHeader.getName(filename);
+		
+		header.append("#define UEIT_DATA_FILE\t\t\"" + name + ".bin\"");
+		
+		if(converter != null)
+		{
+			writeHeader(header, name, converter);
+		}
+		else
+		{
+			header.append("#define UEIT_DATA_SIZE\t\t(UEIT_NUM_FRAMES * UEIT_WIDTH * UEIT_HEIGHT * 4)");
+			header.append("");
+			header.append("/*");
+			header.append(" * Little-endian ARGB data, defined either by assembling " + name + ".S (.incbin) or by converting the binary file with");
+			header.append(" * objcopy -I binary -O <target> --rename-section .data=.rodata,alloc,load,readonly,data,contents");
+			header.append(" *         --redefine-sym _binary_" + name + "_bin_start=UEIT_DATA " + name + ".bin " + name + ".o");
+			header.append(" */");
+			header.append("extern const uint32_t UEIT_DATA[UEIT_NUM_FRAMES][UEIT_WIDTH * UEIT_HEIGHT] __attribute__((aligned(32)));");
+			header.append("");
+			header.close();
+		}
+		
+		CHeader.writeIncbin(filename, "UEIT_DATA", name + ".bin");
+	}
+	
+	protected void writeHeader(CHeader header, String name, FrameConverter converter) throws IOException
+	{
+		RawPixelFormat format = converter.getFormat();
+		
+		header.append("#define UEIT_PIXEL_FORMAT\t\"" + format.getName() + "\"");
+		
+		if(format.isYCbCr())
+		{
+			header.append("#define UEIT_COLOR_MATRIX\t\"" + converter.getMatrix().getName() + "\"");
+		}
+		
+		header.append("#define UEIT_FRAME_SIZE\t\t" + format.getFrameSize(width, height));
+		header.append("#define UEIT_DATA_SIZE\t\t(UEIT_NUM_FRAMES * UEIT_FRAME_SIZE)");
+		header.append("");
+		header.append("/*");
+		header.append(" * Frames in the " + format.getName() + " pixel format (as named by ffmpeg), defined by assembling " + name + ".S (.incbin).");
+		header.append(" */");
+		header.append("extern const uint8_t UEIT_DATA[UEIT_NUM_FRAMES][UEIT_FRAME_SIZE] __attribute__((aligned(32)));");
+		header.append("");
+		header.close();
+	}
+	
+	public void writeFrame(int[] argb) throws IOException
+	{
+		if(converter != null)
+		{
+			converter.convert(argb, width, height, getFrame());
+			write(ByteBuffer.wrap(frame, 0, converter.getFrameSize(width, height)));
+		}
+		else
+		{
+			write(argb, 0, argb.length);
+		}
+	}
+	
+	/**
+	 * The buffer already holds little-endian ARGB data, so it is written as it is unless it has to be converted.
+	 */
+	public void writeFrame(FrameBuffer frame) throws IOException
+	{
+		if(converter != null)
+		{
+			converter.convert(frame, getFrame());
+			write(ByteBuffer.wrap(this.frame, 0, converter.getFrameSize(width, height)));
+		}
+		else
+		{
+			write(frame.getBytes());
+		}
+	}
+	
+	protected byte[] getFrame()
+	{
+		if(frame == null || frame.length < converter.getFrameSize(width, height))
+		{
+			frame = new byte[converter.getFrameSize(width, height)];
+		}
+		
+		return frame;
+	}
+	
+	protected void write(ByteBuffer bytes) throws IOException
+	{
+		if(bytes.isDirect())
+		{
+			while(bytes.hasRemaining())
+			{
+				channel.write(bytes);
+			}
+			
+			return;
+		}
+		
+		int end = bytes.limit();
+		
+		while(bytes.hasRemaining())
+		{
+			bytes.limit(bytes.position() + Math.min(bytes.remaining(), BUFFER_SIZE));
+			
+			buffer.clear();
+			buffer.put(bytes);
+			buffer.flip();
+			
+			bytes.limit(end);
+			flush();
+		}
+	}
+	
+	/**
+	 * Converted rows of packed formats are written as they come, planar formats collect the rows of a frame first.
+	 */
+	public void writeRows(int[] argb, int offset, int rowCount) throws IOException
+	{
+		if(converter == null)
+		{
+			write(argb, offset, rowCount * width);
+		}
+		else if(converter.getFormat().isPlanar())
+		{
+			converter.convertRows(argb, offset, width, frameRow, rowCount, height, getFrame());
+			frameRow += rowCount;
+			
+			if(frameRow >= height)
+			{
+				write(ByteBuffer.wrap(frame, 0, converter.getFrameSize(width, height)));
+				frameRow = 0;
+			}
+		}
+		else
+		{
+			int size = converter.getFormat().getRowSize(width) * rowCount;
+			
+			if(frame == null || frame.length < size)
+			{
+				frame = new byte[size];
+			}
+			
+			converter.convertRows(argb, offset, width, rowCount, frame);
+			write(ByteBuffer.wrap(frame, 0, size));
+		}
+	}
+	
+	protected void write(int[] argb, int offset, int count) throws IOException
+	{
+		int end = offset + count;
+		
+		while(offset < end)
+		{
+			int length = Math.min(end - offset, BUFFER_SIZE / 4);
+			
+			pixels.clear();
+			pixels.put(argb, offset, length);
+			
+			buffer.clear();
+			buffer.limit(length * 4);
+			flush();
+			
+			offset += length;
+		}
+	}
+	
+	/**
+	 * Writes the direct buffer from its position to its limit.
+	 */
+	protected void flush() throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+	
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
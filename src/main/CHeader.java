@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * C header describing a generated frame set: include guard, frame geometry and frame count macros.
+ */
+public class CHeader implements Closeable
+{
+	protected final PrintWriter psh;
+	
+	public CHeader(String filename, int width, int height, int fps, int frameCount) throws IOException
+	{
+		psh = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename + ".h"), "UTF-8")));
+		
+		String name = getName(filename);
+		
+		psh.append("#ifndef ").append(name.toUpperCase() + "_H").append("\r\n");
+		psh.append("#define ").append(name.toUpperCase() + "_H").append("\r\n");
+		psh.append("\r\n");
+		
+		psh.append("#include <stdint.h>\r\n");
+		psh.append("\r\n");
+		
+		psh.append("#define UEIT_WIDTH\t\t\t").append(Integer.toString(width)).append("\r\n");
+		psh.append("#define UEIT_HEIGHT\t\t\t").append(Integer.toString(height)).append("\r\n");
+		psh.append("\r\n");
+		
+		psh.append("#define UEIT_FPS\t\t\t").append(Integer.toString(fps)).append("\r\n");
+		psh.append("#define UEIT_NUM_FRAMES\t\t").append(Integer.toString(frameCount)).append("\r\n");
+		psh.append("\r\n");
+	}
+	
+	/**
+	 * Strips the directory from an output file name, for references between the generated files.
+	 */
+	public static String getName(String filename)
+	{
+		return new File(filename).getName();
+	}
+	
+	public CHeader append(String line)
+	{
+		psh.append(line).append("\r\n");
+		return this;
+	}
+	
+	public void close() throws IOException
+	{
+		psh.append("#endif\r\n");
+		psh.close();
+	}
+	
+	/**
+	 * Writes filename.S, which defines the given read-only symbol as the contents of the data file with .incbin.
+	 * The data file is named relative to the .S file.
+	 */
+	public static void writeIncbin(String filename, String symbol, String dataFile) throws IOException
+	{
+		PrintWriter pss = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename + ".S"), "UTF-8")));
+		
+		pss.append("\t.section .rodata\r\n");
+		pss.append("\t.balign 32\r\n");
+		pss.append("\t.global ").append(symbol).append("\r\n");
+		pss.append("\t.type ").append(symbol).append(", %object\r\n");
+		pss.append(symbol).append(":\r\n");
+		pss.append("\t.incbin \"").append(dataFile).append("\"\r\n");
+		pss.append("\t.size ").append(symbol).append(", . - ").append(symbol).append("\r\n");
+		
+		pss.close();
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a frame set as a pair of C source files (.h and .c) containing a 2D const array of uint32_t with ARGB pixel data.
+ */
+public class CSourceWriter implements StripWriter, PipelinedWriter
+{
+	protected final FileChannel channel;
+	protected final HexArrayEmitter emitter;
+	
+	protected final int width;
+	protected final int frameSize;
+	protected int framePosition;
+	protected int[] strip;
+	
+	public CSourceWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+	{
+		this.width = width;
+		frameSize = width * height;
+		
+		channel = FileChannel.open(Paths.get(filename + ".c"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		emitter = new HexArrayEmitter(channel);
+		
+		CHeader header = new CHeader(filename, width, height, fps, frameCount);
+		
+		header.append("extern const uint32_t UEIT_DATA[UEIT_NUM_FRAMES][UEIT_WIDTH * UEIT_HEIGHT] __attribute__((aligned(32)));");
+		header.append("");
+		header.close();
+		
+		emitter.append("#include \"").append(CHeader.getName(filename)).append(".h\"\r\n");
+		emitter.append("\r\n");
+		
+		emitter.append("const uint32_t UEIT_DATA[UEIT_NUM_FRAMES][UEIT_WIDTH * UEIT_HEIGHT] __attribute__((aligned(32))) =\r\n");
+		emitter.append("{\r\n");
+	}
+	
+	public void writeFrame(int[] argb) throws IOException
+	{
+		emitter.appendFrame(argb);
+	}
+	
+	/**
+	 * Writes the frame in strips copied through a small array.
+	 */
+	public void writeFrame(FrameBuffer frame) throws IOException
+	{
+		int rows = Math.max(1, STRIP_PIXELS / width);
+		
+		if(strip == null)
+		{
+			strip = new int[rows * width];
+		}
+		
+		for(int row = 0; row < frame.getHeight(); row += rows)
+		{
+			int count = Math.min(rows, frame.getHeight() - row);
+			
+			frame.getRows(row, count, strip);
+			writeRows(strip, 0, count);
+		}
+	}
+	
+	public void writeRows(int[] argb, int offset, int rowCount) throws IOException
+	{
+		if(framePosition == 0)
+		{
+			emitter.beginFrame();
+		}
+		
+		int count = rowCount * width;
+		
+		emitter.appendPixels(argb, offset, count, framePosition);
+		framePosition += count;
+		
+		if(framePosition >= frameSize)
+		{
+			emitter.endFrame();
+			framePosition = 0;
+		}
+	}
+	
+	public PipelinedWriter.Encoder createEncoder()
+	{
+		return new Encoder();
+	}
+	
+	public void writeEncoded(EncodedFrame frame) throws IOException
+	{
+		emitter.flush();
+		
+		ByteBuffer buffer = ByteBuffer.wrap(frame.getData(), 0, frame.getLength());
+		
+		while(buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+	
+	public void close() throws IOException
+	{
+		emitter.append("};\r\n");
+		emitter.flush();
+		
+		channel.close();
+	}
+	
+	/**
+	 * Formats frames into encoded frames through an emitter of its own.
+	 */
+	protected class Encoder implements PipelinedWriter.Encoder, WritableByteChannel
+	{
+		protected final HexArrayEmitter emitter = new HexArrayEmitter(this);
+		protected final int[] strip = new int[Math.max(1, STRIP_PIXELS / width) * width];
+		
+		protected EncodedFrame target;
+		
+		public void encode(FrameBuffer frame, EncodedFrame dst) throws IOException
+		{
+			target = dst;
+			target.setLength(0);
+			
+			int rows = strip.length / width;
+			
+			emitter.beginFrame();
+			
+			for(int row = 0; row < frame.getHeight(); row += rows)
+			{
+				int count = Math.min(rows, frame.getHeight() - row);
+				
+				frame.getRows(row, count, strip);
+				emitter.appendPixels(strip, 0, count * width, row * width);
+			}
+			
+			emitter.endFrame();
+			emitter.flush();
+			
+			target = null;
+		}
+		
+		public int write(ByteBuffer src)
+		{
+			int length = src.remaining();
+			
+			src.get(target.ensureCapacity(target.getLength() + length), target.getLength(), length);
+			target.setLength(target.getLength() + length);
+			
+			return length;
+		}
+		
+		public boolean isOpen()
+		{
+			return true;
+		}
+		
+		public void close()
+		{
+		}
+	}
+}
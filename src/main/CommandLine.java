@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the command line into positional arguments and named options of the form --name or --name=value.
+ */
+public class CommandLine
+{
+	protected final List<String> positional = new ArrayList<String>();
+	protected final Map<String, String> options = new HashMap<String, String>();
+	
+	public CommandLine(String[] args)
+	{
+		for(String arg : args)
+		{
+			if(arg.startsWith("--") && arg.length() > 2)
+			{
+				int index = arg.indexOf('=');
+				
+				if(index > 0)
+				{
+					options.put(arg.substring(2, index), arg.substring(index + 1));
+				}
+				else
+				{
+					options.put(arg.substring(2), "");
+				}
+			}
+			else
+			{
+				positional.add(arg);
+			}
+		}
+	}
+	
+	public int getPositionalCount()
+	{
+		return positional.size();
+	}
+	
+	public String getPositional(int index)
+	{
+		return positional.get(index);
+	}
+	
+	public boolean hasOption(String name)
+	{
+		return options.containsKey(name);
+	}
+	
+	public String getOption(String name, String defaultValue)
+	{
+		String value = options.get(name);
+		return value != null ? value : defaultValue;
+	}
+	
+	public int getIntOption(String name, int defaultValue)
+	{
+		String value = options.get(name);
+		return value != null ? Integer.parseInt(value) : defaultValue;
+	}
+	
+	public double getDoubleOption(String name, double defaultValue)
+	{
+		String value = options.get(name);
+		return value != null ? Double.parseDouble(value) : defaultValue;
+	}
+}
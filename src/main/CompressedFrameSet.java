@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reference decoder of the containers written by {@link CompressedWriter}. Every decoded frame is checked
+ * against the CRC-32 stored in the index.
+ */
+public class CompressedFrameSet implements FrameSetReader
+{
+	protected final FileChannel channel;
+	protected final FrameCodec codec;
+	
+	protected final int width;
+	protected final int height;
+	protected final int fps;
+	protected final int frameCount;
+	protected final long indexOffset;
+	
+	protected final ByteBuffer entry = ByteBuffer.allocate(CompressedWriter.ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	protected final CRC32 crc = new CRC32();
+	
+	protected byte[] encoded = new byte[0];
+	protected byte[] raw;
+	
+	public CompressedFrameSet(String filename) throws IOException
+	{
+		channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate(CompressedWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			read(header, 0);
+			
+			if(header.getInt(0) != CompressedWriter.MAGIC || header.getInt(4) != CompressedWriter.VERSION)
+			{
+				throw new IOException("Not a compressed frame set: " + filename);
+			}
+			
+			codec = createCodec(header.getInt(8));
+			width = header.getInt(12);
+			height = header.getInt(16);
+			fps = header.getInt(20);
+			frameCount = header.getInt(24);
+			indexOffset = header.getInt(28) & 0xFFFFFFFFL;
+		}
+		catch(IOException ex)
+		{
+			channel.close();
+			throw ex;
+		}
+		
+		raw = new byte[width * height * 4];
+	}
+	
+	public static FrameCodec createCodec(int id) throws IOException
+	{
+		switch(id)
+		{
+			case RleCodec.ID:
+				return new RleCodec();
+				
+			case DeflateCodec.ID:
+				return new DeflateCodec();
+				
+			case Lz4Codec.ID:
+				return new Lz4Codec();
+				
+			default:
+				throw new IOException("Unknown codec: " + id);
+		}
+	}
+	
+	public FrameCodec getCodec()
+	{
+		return codec;
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	public int getFPS()
+	{
+		return fps;
+	}
+	
+	public int getFrameCount()
+	{
+		return frameCount;
+	}
+	
+	public void readFrame(int frameNumber, int[] dst) throws IOException
+	{
+		entry.clear();
+		read(entry, indexOffset + (long)frameNumber * CompressedWriter.ENTRY_SIZE);
+		
+		long offset = entry.getLong(0);
+		int length = entry.getInt(8);
+		int checksum = entry.getInt(12);
+		
+		if(encoded.length < length)
+		{
+			encoded = new byte[length];
+		}
+		
+		read(ByteBuffer.wrap(encoded, 0, length), offset);
+		codec.decode(encoded, length, width, height, raw, dst);
+		
+		ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(dst, 0, width * height);
+		
+		crc.reset();
+		crc.update(raw, 0, raw.length);
+		
+		if((int)crc.getValue() != checksum)
+		{
+			throw new IOException("CRC mismatch in frame " + frameNumber);
+		}
+	}
+	
+	protected void read(ByteBuffer buffer, long position) throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			int n = channel.read(buffer, position);
+			
+			if(n < 0)
+			{
+				throw new IOException("Unexpected end of compressed frame set");
+			}
+			
+			position += n;
+		}
+	}
+	
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
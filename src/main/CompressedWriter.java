@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a frame set as a container of individually compressed frames with a per-frame index,
+ * so any frame can be located and decoded on its own.
+ * <p>
+ * The container starts with a header of little-endian uint32_t words (magic, version, codec, width, height,
+ * fps, frame count, index offset), followed by an index of {@link #ENTRY_SIZE} bytes per frame
+ * (uint64_t offset of the encoded frame, uint32_t encoded size, uint32_t CRC-32 of the little-endian ARGB data)
+ * and the encoded frames. The .h file describes the codec, the .S file defines UEIT_COMPRESSED_DATA with .incbin.
+ */
+public class CompressedWriter implements PipelinedWriter
+{
+	public static final int MAGIC = 0x5A494555; // "UEIZ"
+	public static final int VERSION = 1;
+	
+	public static final int HEADER_SIZE = 32;
+	public static final int ENTRY_SIZE = 16;
+	
+	protected final FileChannel channel;
+	protected final FrameCodec codec;
+	
+	protected final int width;
+	protected final int height;
+	
+	protected final Encoder encoder;
+	protected final EncodedFrame encoded = new EncodedFrame();
+	protected final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	
+	protected int frameNumber;
+	protected long position;
+	
+	public CompressedWriter(String filename, int width, int height, int fps, int frameCount, FrameCodec codec) throws IOException
+	{
+		this.codec = codec;
+		this.width = width;
+		this.height = height;
+		
+		encoder = new Encoder(codec);
+		
+		String name = CHeader.getName(filename);
+		String dataFile = name + "." + codec.getName();
+		channel = FileChannel.open(Paths.get(filename + "." + codec.getName()), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(codec.getId()).putInt(width).putInt(height).putInt(fps).putInt(frameCount).putInt(HEADER_SIZE);
+		header.flip();
+		write(header, 0);
+		
+		position = HEADER_SIZE + (long)ENTRY_SIZE * frameCount;
+		
+		CHeader h = new CHeader(filename, width, height, fps, frameCount);
+		
+		h.append("#include <string.h>");
+		h.append("");
+		h.append("#define UEIT_COMPRESSED_FILE\t\"" + dataFile + "\"");
+		h.append("#define UEIT_INDEX_OFFSET\t\t" + HEADER_SIZE);
+		h.append("#define UEIT_INDEX_ENTRY_SIZE\t" + ENTRY_SIZE);
+		h.append("");
+		h.append("/*");
+		h.append(" * Container defined by assembling " + name + ".S (.incbin). Header: little-endian uint32_t magic, version, codec,");
+		h.append(" * width, height, fps, frame count, index offset. Index: uint64_t offset, uint32_t size and uint32_t CRC-32 per frame.");
+		h.append(" */");
+		h.append("extern const uint8_t UEIT_COMPRESSED_DATA[] __attribute__((aligned(32)));");
+		h.append("");
+		h.append("/*");
+		h.append(" * Returns the encoded data of the given frame and stores its size (little-endian targets).");
+		h.append(" */");
+		h.append("static inline const uint8_t *ueit_frame_data(const uint8_t *data, uint32_t frame, uint32_t *size)");
+		h.append("{");
+		h.append("\tconst uint8_t *entry = data + UEIT_INDEX_OFFSET + (size_t)frame * UEIT_INDEX_ENTRY_SIZE;");
+		h.append("\tuint64_t offset;");
+		h.append("");
+		h.append("\tmemcpy(&offset, entry, sizeof(offset));");
+		h.append("\tmemcpy(size, entry + 8, sizeof(*size));");
+		h.append("");
+		h.append("\treturn data + offset;");
+		h.append("}");
+		h.append("");
+		
+		codec.appendDecoder(h);
+		h.close();
+		
+		CHeader.writeIncbin(filename, "UEIT_COMPRESSED_DATA", dataFile);
+	}
+	
+	public void writeFrame(int[] argb) throws IOException
+	{
+		encoder.encode(argb, encoded);
+		writeEncoded(encoded);
+	}
+	
+	public void writeFrame(FrameBuffer frame) throws IOException
+	{
+		encoder.encode(frame, encoded);
+		writeEncoded(encoded);
+	}
+	
+	public PipelinedWriter.Encoder createEncoder() throws IOException
+	{
+		return new Encoder(CompressedFrameSet.createCodec(codec.getId()));
+	}
+	
+	public void writeEncoded(EncodedFrame frame) throws IOException
+	{
+		write(ByteBuffer.wrap(frame.getData(), 0, frame.getLength()), position);
+		
+		entry.clear();
+		entry.putLong(position).putInt(frame.getLength()).putInt(frame.getChecksum());
+		entry.flip();
+		write(entry, HEADER_SIZE + (long)ENTRY_SIZE * frameNumber);
+		
+		position += frame.getLength();
+		frameNumber++;
+	}
+	
+	protected void write(ByteBuffer buffer, long position) throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+	
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+	
+	/**
+	 * Compresses frames with a codec of its own and computes the CRC-32 of their little-endian ARGB data.
+	 */
+	protected class Encoder implements PipelinedWriter.Encoder
+	{
+		protected final FrameCodec codec;
+		
+		protected final byte[] raw = new byte[width * height * 4];
+		protected final ByteBuffer rawBuffer = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+		protected final CRC32 crc = new CRC32();
+		protected int[] pixels;
+		
+		public Encoder(FrameCodec codec)
+		{
+			this.codec = codec;
+		}
+		
+		public void encode(int[] argb, EncodedFrame dst)
+		{
+			rawBuffer.clear();
+			rawBuffer.asIntBuffer().put(argb);
+			
+			encodeRaw(argb, dst);
+		}
+		
+		public void encode(FrameBuffer frame, EncodedFrame dst)
+		{
+			frame.getBytes().get(raw);
+			
+			if(pixels == null)
+			{
+				pixels = new int[width * height];
+			}
+			
+			rawBuffer.clear();
+			rawBuffer.asIntBuffer().get(pixels);
+			
+			encodeRaw(pixels, dst);
+		}
+		
+		/**
+		 * Encodes a frame whose little-endian bytes are already in the raw buffer.
+		 */
+		protected void encodeRaw(int[] argb, EncodedFrame dst)
+		{
+			crc.reset();
+			crc.update(raw, 0, raw.length);
+			
+			dst.setLength(codec.encode(argb, raw, width, height, dst.ensureCapacity(codec.getMaxEncodedLength(width, height))));
+			dst.setChecksum((int)crc.getValue());
+		}
+	}
+}
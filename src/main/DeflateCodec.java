@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * zlib-wrapped Deflate of the little-endian ARGB bytes of a frame; zlib's uncompress() decodes a frame in C.
+ */
+public class DeflateCodec implements FrameCodec
+{
+	public static final int ID = 2;
+	
+	protected final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	protected final Inflater inflater = new Inflater();
+	
+	public int getId()
+	{
+		return ID;
+	}
+	
+	public String getName()
+	{
+		return "deflate";
+	}
+	
+	public int getMaxEncodedLength(int width, int height)
+	{
+		int length = width * height * 4;
+		return length + (length >> 12) + (length >> 14) + (length >> 25) + 64;
+	}
+	
+	public int encode(int[] argb, byte[] raw, int width, int height, byte[] dst)
+	{
+		deflater.reset();
+		deflater.setInput(raw, 0, width * height * 4);
+		deflater.finish();
+		
+		int length = 0;
+		
+		while(!deflater.finished())
+		{
+			length += deflater.deflate(dst, length, dst.length - length);
+		}
+		
+		return length;
+	}
+	
+	public void decode(byte[] src, int length, int width, int height, byte[] raw, int[] argb) throws IOException
+	{
+		int size = width * height * 4;
+		
+		inflater.reset();
+		inflater.setInput(src, 0, length);
+		
+		try
+		{
+			int count = 0;
+			
+			while(count < size && !inflater.finished())
+			{
+				int n = inflater.inflate(raw, count, size - count);
+				
+				if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				
+				count += n;
+			}
+			
+			if(count != size || !inflater.finished())
+			{
+				throw new IOException("Deflate frame length mismatch");
+			}
+		}
+		catch(DataFormatException ex)
+		{
+			throw new IOException(ex.toString());
+		}
+		
+		ByteBuffer.wrap(raw, 0, size).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(argb, 0, width * height);
+	}
+	
+	public void appendDecoder(CHeader header)
+	{
+		header.append("/*");
+		header.append(" * Frames are zlib streams of little-endian ARGB data; decode them with zlib's uncompress(),");
+		header.append(" * using UEIT_WIDTH * UEIT_HEIGHT * 4 as the destination length.");
+		header.append(" */");
+		header.append("");
+	}
+}
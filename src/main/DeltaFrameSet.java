@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reference decoder of the .delta files written by {@link DeltaWriter}. The file is memory-mapped
+ * and frames are expanded on demand.
+ */
+public class DeltaFrameSet implements FrameSetReader
+{
+	protected final FileChannel channel;
+	protected final IntBuffer data;
+	
+	protected final int width;
+	protected final int height;
+	protected final int fps;
+	protected final int frameCount;
+	protected final int keyFrameOffset;
+	
+	public DeltaFrameSet(String filename) throws IOException
+	{
+		channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		
+		if(channel.size() > Integer.MAX_VALUE)
+		{
+			channel.close();
+			throw new IOException("Delta file is too large to map: " + filename);
+		}
+		
+		data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		
+		if(data.limit() < DeltaWriter.HEADER_WORDS || data.get(0) != DeltaWriter.MAGIC || data.get(1) != DeltaWriter.VERSION)
+		{
+			channel.close();
+			throw new IOException("Not a delta frame set: " + filename);
+		}
+		
+		width = data.get(2);
+		height = data.get(3);
+		fps = data.get(4);
+		frameCount = data.get(5);
+		keyFrameOffset = data.get(7);
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	public int getFPS()
+	{
+		return fps;
+	}
+	
+	public int getFrameCount()
+	{
+		return frameCount;
+	}
+	
+	/**
+	 * Expands the given frame into dst, which holds width * height pixels.
+	 */
+	public void readFrame(int frameNumber, int[] dst)
+	{
+		int entry = DeltaWriter.HEADER_WORDS + frameNumber * DeltaWriter.ENTRY_WORDS;
+		int size = width * height;
+		
+		data.position(keyFrameOffset + data.get(entry) * size);
+		data.get(dst, 0, size);
+		
+		patchFrame(frameNumber, dst);
+	}
+	
+	/**
+	 * Applies the patch of the given frame to dst, which must already hold the frame's key frame.
+	 */
+	public void patchFrame(int frameNumber, int[] dst)
+	{
+		int entry = DeltaWriter.HEADER_WORDS + frameNumber * DeltaWriter.ENTRY_WORDS;
+		
+		int x = data.get(entry + 1);
+		int y = data.get(entry + 2);
+		int w = data.get(entry + 3);
+		int h = data.get(entry + 4);
+		
+		data.position(data.get(entry + 5));
+		
+		for(int row = y; row < y + h; row++)
+		{
+			data.get(dst, row * width + x, w);
+		}
+	}
+	
+	/**
+	 * Writes all frames in full to the given writer.
+	 */
+	public void expand(FrameSetWriter writer) throws IOException
+	{
+		int[] frame = new int[width * height];
+		
+		for(int frameNumber = 0; frameNumber < frameCount; frameNumber++)
+		{
+			readFrame(frameNumber, frame);
+			writer.writeFrame(frame);
+		}
+	}
+	
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
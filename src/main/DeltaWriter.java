@@ -0,0 +1,274 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a frame set as key frames plus dirty-rectangle patches. Frames with the same number modulo 8
+ * share the segment image and differ only in the info line, so the first 8 frames are stored in full
+ * and every frame records the bounding rectangle in which it differs from its key frame.
+ * <p>
+ * The .delta file consists of little-endian uint32_t words: a header of {@link #HEADER_WORDS} words
+ * (magic, version, width, height, fps, frame count, key frame count, offset of the key frames),
+ * a table of {@link #ENTRY_WORDS} words per frame (key frame, x, y, width, height, offset of the patch pixels),
+ * the key frames and the patch pixels, row by row. All offsets count words from the start of the file.
+ * The accompanying .h file contains a reference C decoder and the .S file defines UEIT_DELTA_DATA with .incbin.
+ */
+public class DeltaWriter implements FrameSetWriter
+{
+	public static final int MAGIC = 0x44494555; // "UEID"
+	public static final int VERSION = 1;
+	
+	public static final int HEADER_WORDS = 8;
+	public static final int ENTRY_WORDS = 6;
+	
+	public static final int KEY_FRAME_COUNT = 8;
+	
+	protected final FileChannel channel;
+	
+	protected final int width;
+	protected final int height;
+	protected final int frameCount;
+	
+	protected final int[][] keyFrames;
+	protected final long keyFrameOffset;
+	
+	protected ByteBuffer buffer;
+	protected int[] pixels;
+	
+	protected int frameNumber;
+	protected long patchOffset;
+	
+	public DeltaWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+	{
+		this.width = width;
+		this.height = height;
+		this.frameCount = frameCount;
+		
+		keyFrames = new int[Math.min(KEY_FRAME_COUNT, frameCount)][];
+		keyFrameOffset = HEADER_WORDS + (long)ENTRY_WORDS * frameCount;
+		patchOffset = keyFrameOffset + (long)keyFrames.length * width * height;
+		
+		if(patchOffset > 0xFFFFFFFFL)
+		{
+			throw new IOException("Frame set is too large for 32-bit offsets");
+		}
+		
+		channel = FileChannel.open(Paths.get(filename + ".delta"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		buffer = ByteBuffer.allocate(width * height * 4).order(ByteOrder.LITTLE_ENDIAN);
+		
+		buffer.clear();
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(fps).putInt(frameCount).putInt(keyFrames.length).putInt((int)keyFrameOffset);
+		write(0);
+		
+		writeHeader(filename, width, height, fps, frameCount);
+	}
+	
+	protected void writeHeader(String filename, int width, int height, int fps, int frameCount) throws IOException
+	{
+		CHeader header = new CHeader(filename, width, height, fps, frameCount);
+		String name = CHeader.getName(filename);
+		
+		header.append("#include <string.h>");
+		header.append("");
+		header.append("#define UEIT_DELTA_FILE\t\t\"" + name + ".delta\"");
+		header.append("#define UEIT_DELTA_HEADER_WORDS\t" + HEADER_WORDS);
+		header.append("#define UEIT_DELTA_ENTRY_WORDS\t" + ENTRY_WORDS);
+		header.append("");
+		header.append("/*");
+		header.append(" * Key frames plus dirty-rectangle patches as little-endian uint32_t words, defined by assembling " + name + ".S (.incbin).");
+		header.append(" * Header: magic, version, width, height, fps, frame count, key frame count, key frame offset.");
+		header.append(" * Frame table: key frame, x, y, width, height, patch offset. Offsets are in words from the start of the data.");
+		header.append(" */");
+		header.append("extern const uint32_t UEIT_DELTA_DATA[] __attribute__((aligned(32)));");
+		header.append("");
+		header.append("/*");
+		header.append(" * Applies the patch of the given frame to dst, which must already hold the frame's key frame,");
+		header.append(" * e.g. when each of the key frames has its own frame buffer.");
+		header.append(" */");
+		header.append("static inline void ueit_delta_patch(const uint32_t *data, uint32_t frame, uint32_t *dst)");
+		header.append("{");
+		header.append("\tconst uint32_t *entry = data + UEIT_DELTA_HEADER_WORDS + frame * UEIT_DELTA_ENTRY_WORDS;");
+		header.append("\tconst uint32_t *src = data + entry[5];");
+		header.append("\tuint32_t y;");
+		header.append("");
+		header.append("\tfor(y = 0; y < entry[4]; y++)");
+		header.append("\t{");
+		header.append("\t\tmemcpy(dst + (entry[2] + y) * data[2] + entry[1], src + y * entry[3], entry[3] * sizeof(uint32_t));");
+		header.append("\t}");
+		header.append("}");
+		header.append("");
+		header.append("/*");
+		header.append(" * Expands the given frame into dst, which holds width * height pixels.");
+		header.append(" */");
+		header.append("static inline void ueit_delta_decode(const uint32_t *data, uint32_t frame, uint32_t *dst)");
+		header.append("{");
+		header.append("\tconst uint32_t *entry = data + UEIT_DELTA_HEADER_WORDS + frame * UEIT_DELTA_ENTRY_WORDS;");
+		header.append("\tsize_t size = (size_t)data[2] * data[3];");
+		header.append("");
+		header.append("\tmemcpy(dst, data + data[7] + entry[0] * size, size * sizeof(uint32_t));");
+		header.append("\tueit_delta_patch(data, frame, dst);");
+		header.append("}");
+		header.append("");
+		header.close();
+		
+		CHeader.writeIncbin(filename, "UEIT_DELTA_DATA", name + ".delta");
+	}
+	
+	public void writeFrame(FrameBuffer frame) throws IOException
+	{
+		if(pixels == null)
+		{
+			pixels = new int[width * height];
+		}
+		
+		frame.getPixels().get(pixels);
+		writeFrame(pixels);
+	}
+	
+	public void writeFrame(int[] argb) throws IOException
+	{
+		int keyFrame = frameNumber % KEY_FRAME_COUNT;
+		
+		int x = 0;
+		int y = 0;
+		int w = 0;
+		int h = 0;
+		
+		if(keyFrames[keyFrame] == null)
+		{
+			keyFrames[keyFrame] = argb.clone();
+			
+			buffer.clear();
+			buffer.asIntBuffer().put(argb);
+			buffer.position(argb.length * 4);
+			write((keyFrameOffset + (long)keyFrame * argb.length) * 4);
+		}
+		else
+		{
+			int[] base = keyFrames[keyFrame];
+			
+			int top = 0;
+			int bottom = height - 1;
+			
+			while(top < height && rowEquals(argb, base, top))
+			{
+				top++;
+			}
+			
+			if(top < height)
+			{
+				while(rowEquals(argb, base, bottom))
+				{
+					bottom--;
+				}
+				
+				int left = width;
+				int right = -1;
+				
+				for(int row = top; row <= bottom; row++)
+				{
+					int offset = row * width;
+					
+					for(int i = 0; i < left; i++)
+					{
+						if(argb[offset + i] != base[offset + i])
+						{
+							left = i;
+							break;
+						}
+					}
+					
+					for(int i = width - 1; i > right; i--)
+					{
+						if(argb[offset + i] != base[offset + i])
+						{
+							right = i;
+							break;
+						}
+					}
+				}
+				
+				x = left;
+				y = top;
+				w = right - left + 1;
+				h = bottom - top + 1;
+				
+				buffer.clear();
+				
+				for(int row = y; row < y + h; row++)
+				{
+					buffer.asIntBuffer().put(argb, row * width + x, w);
+					buffer.position(buffer.position() + w * 4);
+				}
+				
+				write(patchOffset * 4);
+			}
+		}
+		
+		buffer.clear();
+		buffer.putInt(keyFrame).putInt(x).putInt(y).putInt(w).putInt(h).putInt((int)patchOffset);
+		write((HEADER_WORDS + (long)frameNumber * ENTRY_WORDS) * 4);
+		
+		patchOffset += (long)w * h;
+		frameNumber++;
+		
+		if(patchOffset > 0xFFFFFFFFL)
+		{
+			throw new IOException("Frame set is too large for 32-bit offsets");
+		}
+	}
+	
+	protected boolean rowEquals(int[] a, int[] b, int row)
+	{
+		int offset = row * width;
+		
+		for(int i = offset; i < offset + width; i++)
+		{
+			if(a[i] != b[i])
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Writes the buffer contents up to its position at the given file position.
+	 */
+	protected void write(long position) throws IOException
+	{
+		buffer.flip();
+		
+		while(buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+	
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.util.Arrays;
+
+/**
+ * A set of rectangles of a frame that changed since the previous one. Rectangles are stored in a flat
+ * int array and may overlap; once they cover most of the frame the region collapses into the whole frame,
+ * which is cheaper to copy in one piece than in many.
+ */
+public class DirtyRegion
+{
+	/**
+	 * Size of the square tiles in which segment images are compared.
+	 */
+	public static final int TILE_SIZE = 32;
+	
+	/**
+	 * Share of the frame area above which the region becomes the whole frame.
+	 */
+	public static final double FULL_THRESHOLD = 0.5;
+	
+	protected int width;
+	protected int height;
+	
+	protected int[] rects = new int[64];
+	protected int count;
+	protected long area;
+	protected boolean full;
+	
+	public DirtyRegion(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	public void clear()
+	{
+		count = 0;
+		area = 0;
+		full = false;
+	}
+	
+	/**
+	 * Marks the whole frame of the given size as changed.
+	 */
+	public void setFull(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		
+		count = 0;
+		area = (long)width * height;
+		full = true;
+	}
+	
+	public boolean isFull()
+	{
+		return full;
+	}
+	
+	public boolean isEmpty()
+	{
+		return !full && count == 0;
+	}
+	
+	/**
+	 * Number of rectangles, or 0 for a full region.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+	
+	public int getX(int index)
+	{
+		return rects[index * 4];
+	}
+	
+	public int getY(int index)
+	{
+		return rects[index * 4 + 1];
+	}
+	
+	public int getRectWidth(int index)
+	{
+		return rects[index * 4 + 2];
+	}
+	
+	public int getRectHeight(int index)
+	{
+		return rects[index * 4 + 3];
+	}
+	
+	/**
+	 * Total area of the rectangles in pixels, counting overlaps twice.
+	 */
+	public long getArea()
+	{
+		return area;
+	}
+	
+	/**
+	 * Adds a rectangle, clipped to the frame.
+	 */
+	public void add(int x, int y, int w, int h)
+	{
+		if(full)
+		{
+			return;
+		}
+		
+		int x1 = Math.max(x, 0);
+		int y1 = Math.max(y, 0);
+		int x2 = Math.min(x + w, width);
+		int y2 = Math.min(y + h, height);
+		
+		if(x1 >= x2 || y1 >= y2)
+		{
+			return;
+		}
+		
+		area += (long)(x2 - x1) * (y2 - y1);
+		
+		if(area > FULL_THRESHOLD * width * height)
+		{
+			setFull(width, height);
+			return;
+		}
+		
+		if(count * 4 == rects.length)
+		{
+			rects = Arrays.copyOf(rects, rects.length * 2);
+		}
+		
+		rects[count * 4] = x1;
+		rects[count * 4 + 1] = y1;
+		rects[count * 4 + 2] = x2 - x1;
+		rects[count * 4 + 3] = y2 - y1;
+		
+		count++;
+	}
+	
+	public void add(DirtyRegion region)
+	{
+		if(region.full)
+		{
+			setFull(width, height);
+			return;
+		}
+		
+		for(int i = 0; i < region.count; i++)
+		{
+			add(region.getX(i), region.getY(i), region.getRectWidth(i), region.getRectHeight(i));
+		}
+	}
+	
+	public void set(DirtyRegion region)
+	{
+		clear();
+		
+		width = region.width;
+		height = region.height;
+		
+		add(region);
+	}
+	
+	/**
+	 * Copies the pixels of the region from one raster of the frame size to another.
+	 */
+	public void copy(int[] src, int[] dst)
+	{
+		if(full)
+		{
+			System.arraycopy(src, 0, dst, 0, width * height);
+			return;
+		}
+		
+		for(int i = 0; i < count; i++)
+		{
+			int x = getX(i);
+			int w = getRectWidth(i);
+			int y2 = getY(i) + getRectHeight(i);
+			
+			for(int row = getY(i); row < y2; row++)
+			{
+				System.arraycopy(src, row * width + x, dst, row * width + x, w);
+			}
+		}
+	}
+	
+	/**
+	 * Draws the region of the image at the same place, or the whole image for a full region.
+	 */
+	public void draw(Graphics g, Image image)
+	{
+		if(full)
+		{
+			g.drawImage(image, 0, 0, null);
+			return;
+		}
+		
+		for(int i = 0; i < count; i++)
+		{
+			int x1 = getX(i);
+			int y1 = getY(i);
+			int x2 = x1 + getRectWidth(i);
+			int y2 = y1 + getRectHeight(i);
+			
+			g.drawImage(image, x1, y1, x2, y2, x1, y1, x2, y2, null);
+		}
+	}
+	
+	/**
+	 * Returns the tiles in which two rasters of the same size differ, with runs of adjacent tiles
+	 * merged into rectangles within a tile row, and rectangles of the same columns in consecutive tile rows merged as well.
+	 */
+	public static DirtyRegion diff(RasterCanvas a, RasterCanvas b)
+	{
+		int width = a.getWidth();
+		int height = a.getHeight();
+		
+		int[] dataA = a.getData();
+		int[] dataB = b.getData();
+		
+		DirtyRegion region = new DirtyRegion(width, height);
+		
+		int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+		boolean[] dirty = new boolean[columns];
+		
+		// Runs of the previous tile row still open for extension: start column, end column, index of the rectangle
+		int[] open = new int[columns * 3];
+		int openCount = 0;
+		
+		int[] next = new int[columns * 3];
+		
+		for(int y = 0; y < height && !region.full; y += TILE_SIZE)
+		{
+			int h = Math.min(TILE_SIZE, height - y);
+			
+			Arrays.fill(dirty, false);
+			
+			for(int row = y; row < y + h; row++)
+			{
+				int offset = row * width;
+				
+				for(int column = 0; column < columns; column++)
+				{
+					if(dirty[column])
+					{
+						continue;
+					}
+					
+					int x1 = offset + column * TILE_SIZE;
+					int x2 = offset + Math.min((column + 1) * TILE_SIZE, width);
+					
+					for(int i = x1; i < x2; i++)
+					{
+						if(dataA[i] != dataB[i])
+						{
+							dirty[column] = true;
+							break;
+						}
+					}
+				}
+			}
+			
+			int nextCount = 0;
+			
+			for(int column = 0; column < columns; column++)
+			{
+				if(!dirty[column])
+				{
+					continue;
+				}
+				
+				int start = column;
+				
+				while(column + 1 < columns && dirty[column + 1])
+				{
+					column++;
+				}
+				
+				int x = start * TILE_SIZE;
+				int w = Math.min((column + 1) * TILE_SIZE, width) - x;
+				int index = -1;
+				
+				for(int i = 0; i < openCount; i++)
+				{
+					if(open[i * 3] == start && open[i * 3 + 1] == column)
+					{
+						index = open[i * 3 + 2];
+						break;
+					}
+				}
+				
+				if(index >= 0)
+				{
+					region.rects[index * 4 + 3] += h;
+					region.area += (long)w * h;
+				}
+				else
+				{
+					index = region.count;
+					region.add(x, y, w, h);
+					
+					if(region.full)
+					{
+						break;
+					}
+				}
+				
+				next[nextCount * 3] = start;
+				next[nextCount * 3 + 1] = column;
+				next[nextCount * 3 + 2] = index;
+				nextCount++;
+			}
+			
+			int[] swap = open;
+			open = next;
+			next = swap;
+			openCount = nextCount;
+			
+			if(!region.full && region.area > FULL_THRESHOLD * width * height)
+			{
+				region.setFull(width, height);
+			}
+		}
+		
+		return region;
+	}
+	
+	/**
+	 * Returns the regions that change from each segment image to the next one, the last one wrapping around to the first.
+	 */
+	public static DirtyRegion[] diff(RasterCanvas[] segments)
+	{
+		DirtyRegion[] transitions = new DirtyRegion[segments.length];
+		
+		for(int i = 0; i < segments.length; i++)
+		{
+			transitions[i] = diff(segments[i], segments[(i + 1) % segments.length]);
+		}
+		
+		return transitions;
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Encoded data of one frame on its way from an encoder to the writer. The array grows as needed and is reused.
+ */
+public class EncodedFrame
+{
+	protected byte[] data = new byte[0];
+	protected int length;
+	protected int checksum;
+	
+	public byte[] getData()
+	{
+		return data;
+	}
+	
+	/**
+	 * Returns the data array, grown to hold at least the given number of bytes and keeping the current contents.
+	 */
+	public byte[] ensureCapacity(int capacity)
+	{
+		if(data.length < capacity)
+		{
+			data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+		}
+		
+		return data;
+	}
+	
+	public int getLength()
+	{
+		return length;
+	}
+	
+	public void setLength(int length)
+	{
+		this.length = length;
+	}
+	
+	public int getChecksum()
+	{
+		return checksum;
+	}
+	
+	public void setChecksum(int checksum)
+	{
+		this.checksum = checksum;
+	}
+}
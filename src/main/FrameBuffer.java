@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Off-heap frame of ARGB pixels leased from a {@link FrameBufferPool}: a direct byte buffer in little-endian order,
+ * which is also the layout of the binary output, and an int view of it. The buffer has to be handed back
+ * with {@link #release()} once the frame is written.
+ */
+public class FrameBuffer
+{
+	protected final FrameBufferPool pool;
+	
+	protected final int width;
+	protected final int height;
+	
+	protected final ByteBuffer bytes;
+	protected final IntBuffer pixels;
+	
+	protected boolean leased;
+	
+	protected FrameBuffer(FrameBufferPool pool, int width, int height)
+	{
+		this.pool = pool;
+		this.width = width;
+		this.height = height;
+		
+		bytes = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.LITTLE_ENDIAN);
+		pixels = bytes.asIntBuffer();
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	public int getSize()
+	{
+		return bytes.capacity();
+	}
+	
+	/**
+	 * Returns a view of the frame as little-endian bytes, positioned at the start.
+	 */
+	public ByteBuffer getBytes()
+	{
+		return bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Returns a view of the frame as pixels, positioned at the start.
+	 */
+	public IntBuffer getPixels()
+	{
+		return pixels.duplicate();
+	}
+	
+	/**
+	 * Copies rowCount rows starting at the given row into dst.
+	 */
+	public void getRows(int row, int rowCount, int[] dst)
+	{
+		IntBuffer view = pixels.duplicate();
+		view.position(row * width);
+		view.get(dst, 0, rowCount * width);
+	}
+	
+	/**
+	 * Returns the buffer to its pool.
+	 */
+	public void release()
+	{
+		pool.release(this);
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Thread-safe pool of off-heap frame buffers of any size, bounded by the total number of bytes allocated.
+ * Returned buffers are kept and handed out again for frames of the same size, so repeated generation
+ * does not churn the Java heap. If the budget is exhausted, free buffers of other sizes are dropped first;
+ * if there are none, a lease waits until a buffer is returned. A single buffer larger than the whole budget
+ * is still allocated when nothing else is leased.
+ */
+public class FrameBufferPool implements FrameBufferPoolMBean
+{
+	protected static FrameBufferPool shared;
+	
+	protected final long maxBytes;
+	
+	protected final Map<Long, ArrayDeque<FrameBuffer>> free = new HashMap<Long, ArrayDeque<FrameBuffer>>();
+	
+	protected long allocatedBytes;
+	protected long peakAllocatedBytes;
+	protected int leasedCount;
+	protected int freeCount;
+	
+	protected long leases;
+	protected long reuses;
+	protected long allocations;
+	protected long discards;
+	protected long waits;
+	
+	public FrameBufferPool(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * Returns the pool shared by everything in this JVM that does not get its own, with a budget of a quarter of the maximum heap size.
+	 */
+	public static synchronized FrameBufferPool getShared()
+	{
+		if(shared == null)
+		{
+			shared = new FrameBufferPool(Runtime.getRuntime().maxMemory() / 4);
+		}
+		
+		return shared;
+	}
+	
+	/**
+	 * Replaces the shared pool, e.g. with one of a different budget.
+	 */
+	public static synchronized void setShared(FrameBufferPool pool)
+	{
+		shared = pool;
+	}
+	
+	protected static Long getKey(int width, int height)
+	{
+		return ((long)width << 32) | height;
+	}
+	
+	/**
+	 * Leases a buffer for a width x height frame, waiting if the budget does not allow another one.
+	 */
+	public synchronized FrameBuffer lease(int width, int height) throws InterruptedException
+	{
+		while(true)
+		{
+			FrameBuffer buffer = tryLease(width, height);
+			
+			if(buffer != null)
+			{
+				return buffer;
+			}
+			
+			waits++;
+			wait();
+		}
+	}
+	
+	/**
+	 * Leases a buffer for a width x height frame if the budget allows one right away, otherwise returns null.
+	 */
+	public synchronized FrameBuffer tryLease(int width, int height)
+	{
+		Long key = getKey(width, height);
+		long size = (long)width * height * 4;
+		
+		ArrayDeque<FrameBuffer> buffers = free.get(key);
+		
+		if(buffers != null && !buffers.isEmpty())
+		{
+			FrameBuffer buffer = buffers.pop();
+			freeCount--;
+			reuses++;
+			
+			return lease(buffer);
+		}
+		
+		while(allocatedBytes + size > maxBytes && discard(key))
+		{
+		}
+		
+		if(allocatedBytes + size <= maxBytes || leasedCount == 0)
+		{
+			allocatedBytes += size;
+			peakAllocatedBytes = Math.max(peakAllocatedBytes, allocatedBytes);
+			allocations++;
+			
+			return lease(new FrameBuffer(this, width, height));
+		}
+		
+		return null;
+	}
+	
+	protected FrameBuffer lease(FrameBuffer buffer)
+	{
+		buffer.leased = true;
+		
+		leasedCount++;
+		leases++;
+		
+		return buffer;
+	}
+	
+	/**
+	 * Drops one free buffer of a size other than the given one. Returns false if there is none.
+	 */
+	protected boolean discard(Long keep)
+	{
+		for(Iterator<Map.Entry<Long, ArrayDeque<FrameBuffer>>> it = free.entrySet().iterator(); it.hasNext();)
+		{
+			Map.Entry<Long, ArrayDeque<FrameBuffer>> entry = it.next();
+			
+			if(entry.getKey().equals(keep) || entry.getValue().isEmpty())
+			{
+				continue;
+			}
+			
+			FrameBuffer buffer = entry.getValue().pop();
+			
+			if(entry.getValue().isEmpty())
+			{
+				it.remove();
+			}
+			
+			allocatedBytes -= buffer.getSize();
+			freeCount--;
+			discards++;
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Takes a buffer back. Releasing a buffer twice has no effect.
+	 */
+	public synchronized void release(FrameBuffer buffer)
+	{
+		if(!buffer.leased)
+		{
+			return;
+		}
+		
+		buffer.leased = false;
+		leasedCount--;
+		
+		Long key = getKey(buffer.getWidth(), buffer.getHeight());
+		ArrayDeque<FrameBuffer> buffers = free.get(key);
+		
+		if(buffers == null)
+		{
+			free.put(key, buffers = new ArrayDeque<FrameBuffer>());
+		}
+		
+		buffers.push(buffer);
+		freeCount++;
+		
+		notifyAll();
+	}
+	
+	public synchronized void trim()
+	{
+		for(ArrayDeque<FrameBuffer> buffers : free.values())
+		{
+			for(FrameBuffer buffer : buffers)
+			{
+				allocatedBytes -= buffer.getSize();
+			}
+		}
+		
+		free.clear();
+		freeCount = 0;
+		
+		notifyAll();
+	}
+	
+	public synchronized long getLeases()
+	{
+		return leases;
+	}
+	
+	public synchronized long getReuses()
+	{
+		return reuses;
+	}
+	
+	public synchronized long getAllocations()
+	{
+		return allocations;
+	}
+	
+	public synchronized long getDiscards()
+	{
+		return discards;
+	}
+	
+	public synchronized long getWaits()
+	{
+		return waits;
+	}
+	
+	public synchronized int getLeasedCount()
+	{
+		return leasedCount;
+	}
+	
+	public synchronized int getFreeCount()
+	{
+		return freeCount;
+	}
+	
+	public synchronized long getAllocatedBytes()
+	{
+		return allocatedBytes;
+	}
+	
+	public synchronized long getPeakAllocatedBytes()
+	{
+		return peakAllocatedBytes;
+	}
+	
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+	
+	/**
+	 * Registers the pool in the platform MBean server as main:type=FrameBufferPool.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("main:type=FrameBufferPool");
+			
+			if(!server.isRegistered(name))
+			{
+				server.registerMBean(this, name);
+			}
+		}
+		catch(JMException ex)
+		{
+			System.err.println(ex.toString());
+		}
+	}
+	
+	public synchronized String getStatistics()
+	{
+		return String.format("FrameBufferPool: %d leases, %d reuses, %d allocations, %d discards, %d waits, %d leased, %d free, %.1f of %.1f MB, peak %.1f MB",
+							 leases, reuses, allocations, discards, waits, leasedCount, freeCount, allocatedBytes / 1048576.0, maxBytes / 1048576.0, peakAllocatedBytes / 1048576.0);
+	}
+}
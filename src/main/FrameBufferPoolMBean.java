@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * JMX view of {@link FrameBufferPool}.
+ */
+public interface FrameBufferPoolMBean
+{
+	public long getLeases();
+	public long getReuses();
+	public long getAllocations();
+	public long getDiscards();
+	public long getWaits();
+	
+	public int getLeasedCount();
+	public int getFreeCount();
+	
+	public long getAllocatedBytes();
+	public long getPeakAllocatedBytes();
+	public long getMaxBytes();
+	
+	public void trim();
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+
+/**
+ * Compression of a single frame for {@link CompressedWriter}. Instances keep scratch buffers and are not thread-safe.
+ */
+public interface FrameCodec
+{
+	/**
+	 * Codec identifier stored in the container header.
+	 */
+	public int getId();
+	
+	public String getName();
+	
+	public int getMaxEncodedLength(int width, int height);
+	
+	/**
+	 * Encodes a frame into dst and returns the encoded length. raw holds the same pixels as argb
+	 * as little-endian bytes, for codecs that work on bytes.
+	 */
+	public int encode(int[] argb, byte[] raw, int width, int height, byte[] dst);
+	
+	/**
+	 * Decodes a frame into argb, using raw as scratch space of width * height * 4 bytes.
+	 */
+	public void decode(byte[] src, int length, int width, int height, byte[] raw, int[] argb) throws IOException;
+	
+	/**
+	 * Appends a description of the encoded frames and, where practical, a reference C decoder to the header.
+	 */
+	public void appendDecoder(CHeader header);
+}
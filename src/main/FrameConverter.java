@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts ARGB frames into a raw pixel format. Frames are split into bands of whole rows of about
+ * {@link StripWriter#STRIP_PIXELS} pixels, which are converted in parallel on a fork-join pool.
+ */
+public class FrameConverter
+{
+	protected final RawPixelFormat format;
+	protected final YCbCrMatrix matrix;
+	protected final ForkJoinPool pool;
+	
+	protected final ThreadLocal<int[]> rows = new ThreadLocal<int[]>();
+	
+	/**
+	 * Creates a converter running on the common fork-join pool.
+	 */
+	public FrameConverter(RawPixelFormat format, YCbCrMatrix matrix)
+	{
+		this(format, matrix, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param pool pool to convert bands on, or null to convert on the calling thread
+	 */
+	public FrameConverter(RawPixelFormat format, YCbCrMatrix matrix, ForkJoinPool pool)
+	{
+		this.format = format;
+		this.matrix = matrix;
+		this.pool = pool;
+	}
+	
+	public RawPixelFormat getFormat()
+	{
+		return format;
+	}
+	
+	public YCbCrMatrix getMatrix()
+	{
+		return matrix;
+	}
+	
+	public int getFrameSize(int width, int height)
+	{
+		return format.getFrameSize(width, height);
+	}
+	
+	/**
+	 * Returns the number of rows in a band: even, so that bands never split a pair of chroma rows.
+	 */
+	public static int getBandRows(int width)
+	{
+		return Math.max(2, StripWriter.STRIP_PIXELS / width & ~1);
+	}
+	
+	public void convert(int[] argb, int width, int height, byte[] dst)
+	{
+		if(pool == null || height <= getBandRows(width))
+		{
+			format.convert(argb, width, height, matrix, dst);
+		}
+		else
+		{
+			pool.invoke(new BandTask(argb, null, width, height, 0, height, dst));
+		}
+	}
+	
+	/**
+	 * Converts a frame held off-heap, copying each band through an array of the converting thread.
+	 */
+	public void convert(FrameBuffer frame, byte[] dst)
+	{
+		BandTask task = new BandTask(null, frame, frame.getWidth(), frame.getHeight(), 0, frame.getHeight(), dst);
+		
+		if(pool == null)
+		{
+			task.compute();
+		}
+		else
+		{
+			pool.invoke(task);
+		}
+	}
+	
+	/**
+	 * Converts rows of a packed format into the beginning of dst.
+	 */
+	public void convertRows(int[] argb, int offset, int width, int rowCount, byte[] dst)
+	{
+		format.convertRows(argb, offset, width, 0, rowCount, rowCount, matrix, dst);
+	}
+	
+	/**
+	 * Converts the rows of a frame that start with the given row into their place in a whole frame in dst.
+	 */
+	public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, byte[] dst)
+	{
+		format.convertRows(argb, offset, width, row, rowCount, height, matrix, dst);
+	}
+	
+	protected class BandTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final int[] argb;
+		protected final FrameBuffer frame;
+		protected final int width;
+		protected final int height;
+		protected final int from;
+		protected final int to;
+		protected final byte[] dst;
+		
+		public BandTask(int[] argb, FrameBuffer frame, int width, int height, int from, int to, byte[] dst)
+		{
+			this.argb = argb;
+			this.frame = frame;
+			this.width = width;
+			this.height = height;
+			this.from = from;
+			this.to = to;
+			this.dst = dst;
+		}
+		
+		protected void compute()
+		{
+			int band = getBandRows(width);
+			int bands = (to - from + band - 1) / band;
+			
+			if(bands > 1 && pool != null)
+			{
+				int middle = from + bands / 2 * band;
+				invokeAll(new BandTask(argb, frame, width, height, from, middle, dst), new BandTask(argb, frame, width, height, middle, to, dst));
+			}
+			else if(argb != null)
+			{
+				format.convertRows(argb, from * width, width, from, to - from, height, matrix, dst);
+			}
+			else
+			{
+				int[] pixels = rows.get();
+				
+				if(pixels == null || pixels.length < band * width)
+				{
+					pixels = new int[band * width];
+					rows.set(pixels);
+				}
+				
+				for(int row = from; row < to; row += band)
+				{
+					int count = Math.min(band, to - row);
+					
+					frame.getRows(row, count, pixels);
+					format.convertRows(pixels, 0, width, row, count, height, matrix, dst);
+				}
+			}
+		}
+	}
+}
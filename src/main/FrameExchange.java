@@ -0,0 +1,238 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer passing rendered frames from one producer thread to one presenting thread.
+ * The producer renders into the back slot and publishes it by swapping it with the ready slot in a single
+ * atomic operation; the presenter swaps the ready slot for its front slot only when a newer frame was published.
+ * Neither side ever waits for the other: the presenter always gets the latest complete frame, and frames
+ * published faster than they are presented are skipped.
+ * <p>
+ * Every slot knows which frame it holds. The producer keeps the regions that changed in the last {@link #HISTORY}
+ * frames, from which it derives both the region to redraw when a slot comes back holding an older frame
+ * and the region that changed since the frame the presenter took last.
+ */
+public class FrameExchange
+{
+	/**
+	 * Number of frames whose changed regions are kept. Slots lagging further behind are redrawn in full.
+	 */
+	public static final int HISTORY = 8;
+	
+	/**
+	 * Set in the ready index when it holds a frame the presenter has not taken yet.
+	 */
+	protected static final int FRESH = 4;
+	protected static final int INDEX = 3;
+	
+	protected final Slot[] slots = { new Slot(), new Slot(), new Slot() };
+	protected final AtomicInteger ready = new AtomicInteger(1);
+	
+	protected int back = 0;
+	protected int front = 2;
+	
+	protected final DirtyRegion[] history = new DirtyRegion[HISTORY];
+	protected long sequence;
+	protected volatile long taken;
+	
+	protected long publishedFrames;
+	protected long skippedFrames;
+	
+	public FrameExchange()
+	{
+		for(int i = 0; i < history.length; i++)
+		{
+			history[i] = new DirtyRegion(0, 0);
+		}
+	}
+	
+	/**
+	 * Producer side: returns the slot to render the next frame into, with an image of the given size.
+	 * The image is only allocated when the size changes.
+	 */
+	public Slot getBack(int width, int height)
+	{
+		Slot slot = slots[back];
+		
+		if(slot.image == null || slot.image.getWidth() != width || slot.image.getHeight() != height)
+		{
+			slot.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			slot.canvas = new RasterCanvas(slot.image);
+			slot.sequence = 0;
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * Producer side: starts the next frame, given the region in which it differs from the previous one,
+	 * and returns the region of the back slot that has to be redrawn to bring it up to date.
+	 */
+	public DirtyRegion nextFrame(DirtyRegion changed)
+	{
+		sequence++;
+		history[(int)(sequence % HISTORY)].set(changed);
+		
+		Slot slot = slots[back];
+		union(slot.redraw, slot.sequence, slot.image.getWidth(), slot.image.getHeight());
+		
+		return slot.redraw;
+	}
+	
+	/**
+	 * Producer side: hands the back slot, now holding the complete frame, over to the presenter
+	 * and takes the previous ready slot as the new back slot.
+	 * 
+	 * @param startNanos time the frame was started at, as returned by {@link System#nanoTime()}
+	 * @param renderNanos time it took to render it
+	 */
+	public void publish(long startNanos, long renderNanos)
+	{
+		Slot slot = slots[back];
+		
+		slot.sequence = sequence;
+		slot.startNanos = startNanos;
+		slot.renderNanos = renderNanos;
+		union(slot.changed, taken, slot.image.getWidth(), slot.image.getHeight());
+		
+		int previous = ready.getAndSet(back | FRESH);
+		back = previous & INDEX;
+		
+		publishedFrames++;
+		
+		if((previous & FRESH) != 0)
+		{
+			skippedFrames++;
+		}
+	}
+	
+	/**
+	 * Presenter side: swaps in the latest published frame and returns it, or returns null if no frame
+	 * was published since the last call.
+	 */
+	public Slot take()
+	{
+		if((ready.get() & FRESH) == 0)
+		{
+			return null;
+		}
+		
+		front = ready.getAndSet(front) & INDEX;
+		taken = slots[front].sequence;
+		
+		return slots[front];
+	}
+	
+	/**
+	 * Presenter side: returns the frame taken last, whose image is null until a frame was taken.
+	 */
+	public Slot getFront()
+	{
+		return slots[front];
+	}
+	
+	/**
+	 * Sets the region to everything that changed after the given frame up to the current one,
+	 * or to the whole frame if that frame is no longer in the history.
+	 */
+	protected void union(DirtyRegion region, long since, int width, int height)
+	{
+		if(since <= 0 || sequence - since > HISTORY || since > sequence)
+		{
+			region.setFull(width, height);
+			return;
+		}
+		
+		region.set(history[(int)(sequence % HISTORY)]);
+		
+		for(long frame = sequence - 1; frame > since && !region.isFull(); frame--)
+		{
+			region.add(history[(int)(frame % HISTORY)]);
+		}
+	}
+	
+	public long getPublishedFrames()
+	{
+		return publishedFrames;
+	}
+	
+	/**
+	 * Number of frames that were replaced by a newer one before the presenter took them.
+	 */
+	public long getSkippedFrames()
+	{
+		return skippedFrames;
+	}
+	
+	/**
+	 * A rendered frame together with the number of the frame it holds and the region that changed in it
+	 * since the frame the presenter had taken when it was published.
+	 */
+	public static class Slot
+	{
+		protected BufferedImage image;
+		protected RasterCanvas canvas;
+		protected long sequence;
+		
+		protected long startNanos;
+		protected long renderNanos;
+		
+		protected final DirtyRegion redraw = new DirtyRegion(0, 0);
+		protected final DirtyRegion changed = new DirtyRegion(0, 0);
+		
+		public BufferedImage getImage()
+		{
+			return image;
+		}
+		
+		public RasterCanvas getCanvas()
+		{
+			return canvas;
+		}
+		
+		/**
+		 * Number of the frame, counted from 1 by the producer.
+		 */
+		public long getSequence()
+		{
+			return sequence;
+		}
+		
+		public long getStartNanos()
+		{
+			return startNanos;
+		}
+		
+		public long getRenderNanos()
+		{
+			return renderNanos;
+		}
+		
+		/**
+		 * Region that changed since the frame the presenter had taken when this one was published,
+		 * which covers everything that changed since any frame it may have taken meanwhile.
+		 */
+		public DirtyRegion getChangedRegion()
+		{
+			return changed;
+		}
+	}
+}
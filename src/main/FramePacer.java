@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.GraphicsDevice;
+
+/**
+ * Paces the render loop at the target frame rate. Besides waiting for the next frame,
+ * every pacer measures how far the actual frame intervals deviate from the target period.
+ */
+public abstract class FramePacer
+{
+	protected final long periodNanos;
+	
+	protected long prevFrameTime;
+	protected volatile long frameIndex;
+	
+	protected long frameCount;
+	protected double errorSum;
+	protected double errorSquareSum;
+	protected long maxError;
+	
+	protected FramePacer(long periodNanos)
+	{
+		this.periodNanos = periodNanos;
+	}
+	
+	/**
+	 * Creates a pacer by strategy name: "sleep", "park" or "vsync".
+	 * The vsync strategy uses the refresh rate of the given device if it is known.
+	 */
+	public static FramePacer create(String strategy, double targetFrameRate, GraphicsDevice device)
+	{
+		long periodNanos = Math.round(1e9 / targetFrameRate);
+		
+		if(strategy.equalsIgnoreCase("sleep"))
+		{
+			return new SleepFramePacer(periodNanos);
+		}
+		else if(strategy.equalsIgnoreCase("park"))
+		{
+			return new ParkFramePacer(periodNanos);
+		}
+		else if(strategy.equalsIgnoreCase("vsync"))
+		{
+			return new VsyncFramePacer(periodNanos, device);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown frame pacer: " + strategy);
+		}
+	}
+	
+	public long getPeriodNanos()
+	{
+		return periodNanos;
+	}
+	
+	/**
+	 * Resets the pacer; the current time becomes the start of the first frame.
+	 */
+	public void start()
+	{
+		prevFrameTime = System.nanoTime();
+		frameIndex = 0;
+		resetStatistics();
+	}
+	
+	/**
+	 * Blocks until the next frame is due.
+	 */
+	public void awaitNextFrame() throws InterruptedException
+	{
+		waitForNextFrame();
+		
+		long time = System.nanoTime();
+		long error = time - prevFrameTime - periodNanos;
+		
+		prevFrameTime = time;
+		frameIndex++;
+		
+		frameCount++;
+		errorSum += error;
+		errorSquareSum += (double)error * error;
+		maxError = Math.max(maxError, Math.abs(error));
+	}
+	
+	protected abstract void waitForNextFrame() throws InterruptedException;
+	
+	public void resetStatistics()
+	{
+		frameCount = 0;
+		errorSum = 0;
+		errorSquareSum = 0;
+		maxError = 0;
+	}
+	
+	/**
+	 * Scheduled presentation time of the frame being rendered, relative to start(): the number of frames
+	 * paced so far times the period. Motion animated against it advances by exactly the same distance
+	 * every frame, however late or early the frame is actually rendered.
+	 */
+	public long getFrameTimeNanos()
+	{
+		return frameIndex * periodNanos;
+	}
+	
+	public long getFrameCount()
+	{
+		return frameCount;
+	}
+	
+	/**
+	 * Mean deviation of the frame interval from the target period, in nanoseconds.
+	 */
+	public double getMeanErrorNanos()
+	{
+		return frameCount > 0 ? errorSum / frameCount : 0;
+	}
+	
+	/**
+	 * Root mean square deviation of the frame interval from the target period, in nanoseconds.
+	 */
+	public double getJitterNanos()
+	{
+		return frameCount > 0 ? Math.sqrt(errorSquareSum / frameCount) : 0;
+	}
+	
+	/**
+	 * Largest absolute deviation of the frame interval from the target period, in nanoseconds.
+	 */
+	public long getMaxErrorNanos()
+	{
+		return maxError;
+	}
+	
+	public String getStatistics()
+	{
+		return String.format("%s: %d frames, period %.3f ms, mean error %.3f ms, jitter %.3f ms, max error %.3f ms",
+							 getClass().getSimpleName(), frameCount, periodNanos / 1e6, getMeanErrorNanos() / 1e6, getJitterNanos() / 1e6, maxError / 1e6);
+	}
+}
@@ -0,0 +1,798 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Headless frame set generator, organized as a pipeline: render workers paint frames into off-heap buffers,
+ * encoder workers turn them into the bytes of the output format where the writer supports it,
+ * and the calling thread writes the frames in order. The stages are linked by bounded queues
+ * and a fixed number of frame slots circulates through them, so a slow stage holds back the others
+ * instead of piling up frames, and generation runs at the pace of the slowest stage.
+ * With a tile height set, frames are rendered and serialized in horizontal strips instead,
+ * so that neither frames nor segment images are ever held in memory as a whole.
+ */
+public class FrameSetGenerator
+{
+	protected final UEITPainter painter = new RasterPainter();
+	protected final TilePainter tilePainter = new TilePainter();
+	
+	protected final int fps;
+	protected int threadCount;
+	protected int encoderThreadCount;
+	protected int queueCapacity;
+	protected OutputFormat outputFormat = OutputFormat.C;
+	protected FrameConverter pixelConverter;
+	protected boolean verify;
+	protected boolean writeLayout;
+	protected File outputDirectory;
+	protected boolean verbose = true;
+	protected int tileHeight;
+	
+	protected int width;
+	protected int height;
+	
+	protected RasterCanvas[] segments;
+	protected RasterCanvas[] sharedSegments;
+	protected SegmentCache segmentCache;
+	protected FrameBufferPool bufferPool = FrameBufferPool.getShared();
+	protected long[] renderTimes;
+	
+	protected final FrameTelemetry telemetry = new FrameTelemetry("generator", 0);
+	
+	protected final PipelineStage renderStage = new PipelineStage("render");
+	protected final PipelineStage encodeStage = new PipelineStage("encode");
+	protected final PipelineStage writeStage = new PipelineStage("write");
+	
+	public FrameSetGenerator(double targetFrameRate)
+	{
+		fps = UEIT.getImprintedFPS(UEIT.clampFrameRate(targetFrameRate));
+		threadCount = Runtime.getRuntime().availableProcessors();
+		encoderThreadCount = threadCount / 2;
+	}
+	
+	public int getFPS()
+	{
+		return fps;
+	}
+	
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+	
+	public void setThreadCount(int threadCount)
+	{
+		this.threadCount = Math.max(threadCount, 1);
+	}
+	
+	public int getEncoderThreadCount()
+	{
+		return encoderThreadCount;
+	}
+	
+	/**
+	 * Sets the number of encoder workers; 0 encodes on the writing thread.
+	 */
+	public void setEncoderThreadCount(int encoderThreadCount)
+	{
+		this.encoderThreadCount = Math.max(encoderThreadCount, 0);
+	}
+	
+	public int getQueueCapacity()
+	{
+		return queueCapacity;
+	}
+	
+	/**
+	 * Sets the number of frames in flight between the stages, or 0 for twice the number of workers.
+	 * Each of them holds a frame buffer.
+	 */
+	public void setQueueCapacity(int queueCapacity)
+	{
+		this.queueCapacity = Math.max(queueCapacity, 0);
+	}
+	
+	public OutputFormat getOutputFormat()
+	{
+		return outputFormat;
+	}
+	
+	public void setOutputFormat(OutputFormat outputFormat)
+	{
+		this.outputFormat = outputFormat;
+	}
+	
+	public FrameConverter getPixelConverter()
+	{
+		return pixelConverter;
+	}
+	
+	/**
+	 * Sets the converter into the pixel format of the output, or null for ARGB. Only the binary format supports other pixel formats.
+	 */
+	public void setPixelConverter(FrameConverter pixelConverter)
+	{
+		this.pixelConverter = pixelConverter;
+	}
+	
+	public boolean isVerify()
+	{
+		return verify;
+	}
+	
+	/**
+	 * If set, the written frame set is read back and every frame is compared with a freshly rendered one.
+	 */
+	public void setVerify(boolean verify)
+	{
+		this.verify = verify;
+	}
+	
+	public boolean isWriteLayout()
+	{
+		return writeLayout;
+	}
+	
+	/**
+	 * If set, the geometry of the frames is also written as a C header, named as the frame set with a _layout suffix.
+	 */
+	public void setWriteLayout(boolean writeLayout)
+	{
+		this.writeLayout = writeLayout;
+	}
+	
+	public File getOutputDirectory()
+	{
+		return outputDirectory;
+	}
+	
+	/**
+	 * Sets the directory the files are written to; null means the working directory.
+	 */
+	public void setOutputDirectory(File outputDirectory)
+	{
+		this.outputDirectory = outputDirectory;
+	}
+	
+	/**
+	 * Enables the per-frame progress messages.
+	 */
+	public void setVerbose(boolean verbose)
+	{
+		this.verbose = verbose;
+	}
+	
+	public int getTileHeight()
+	{
+		return tileHeight;
+	}
+	
+	/**
+	 * Sets the height of the strips frames are rendered in, or 0 to render whole frames.
+	 * Tiled output needs a format whose writer accepts strips.
+	 */
+	public void setTileHeight(int tileHeight)
+	{
+		this.tileHeight = Math.max(tileHeight, 0);
+	}
+	
+	/**
+	 * Supplies pre-rendered segment images of the right size, e.g. shared between frame sets of the same resolution;
+	 * null makes the generator render its own.
+	 */
+	public void setSegments(RasterCanvas[] segments)
+	{
+		sharedSegments = segments;
+	}
+	
+	/**
+	 * Sets the cache the segment images are taken from, or null to render them for every frame set.
+	 */
+	public void setSegmentCache(SegmentCache segmentCache)
+	{
+		this.segmentCache = segmentCache;
+	}
+	
+	/**
+	 * Sets the pool the frame buffers are leased from; the shared pool by default.
+	 */
+	public void setBufferPool(FrameBufferPool bufferPool)
+	{
+		this.bufferPool = bufferPool;
+	}
+	
+	/**
+	 * Timing of the generated frames: the render time of each frame, the time spent writing it
+	 * and the interval between successive writes.
+	 */
+	public FrameTelemetry getTelemetry()
+	{
+		return telemetry;
+	}
+	
+	/**
+	 * Metrics of the render, encode and write stages of the last or current run.
+	 */
+	public PipelineStage[] getStages()
+	{
+		return new PipelineStage[] { renderStage, encodeStage, writeStage };
+	}
+	
+	public String getFileName(int width, int height, int frameCount)
+	{
+		String filename = "ueit_" + fps + "_" + frameCount + "_" + width + "_" + height;
+		return pixelConverter != null ? filename + "_" + pixelConverter.getFormat().getName() : filename;
+	}
+	
+	/**
+	 * File name with the output directory, without extension.
+	 */
+	public String getOutputPath(int width, int height, int frameCount)
+	{
+		String filename = getFileName(width, height, frameCount);
+		return outputDirectory != null ? new File(outputDirectory, filename).getPath() : filename;
+	}
+	
+	public void generate(int width, int height, int frameCount) throws IOException
+	{
+		this.width = width;
+		this.height = height;
+		
+		if(writeLayout)
+		{
+			UEITLayout.get(width, height).writeHeader(getOutputPath(width, height, frameCount) + "_layout", fps, frameCount);
+		}
+		
+		if(tileHeight > 0)
+		{
+			generateStrips(width, height, frameCount);
+			return;
+		}
+		
+		try
+		{
+			if(sharedSegments != null)
+			{
+				segments = sharedSegments;
+			}
+			else if(segmentCache != null)
+			{
+				segments = segmentCache.get(width, height);
+			}
+			else
+			{
+				ForkJoinPool pool = new ForkJoinPool(threadCount);
+				
+				try
+				{
+					segments = new RasterCanvas[8];
+					pool.invoke(new SegmentTask(0, segments.length));
+				}
+				finally
+				{
+					pool.shutdown();
+				}
+			}
+			
+			String filename = getOutputPath(width, height, frameCount);
+			FrameSetWriter writer = outputFormat.createWriter(filename, width, height, fps, frameCount, pixelConverter);
+			
+			try
+			{
+				runPipeline(writer, frameCount);
+			}
+			finally
+			{
+				writer.close();
+			}
+			
+			if(verify)
+			{
+				verify(filename, frameCount);
+			}
+		}
+		finally
+		{
+			segments = null;
+		}
+	}
+	
+	/**
+	 * Renders, encodes and writes the frames through the pipeline. Worker failures are rethrown on the calling thread.
+	 */
+	protected void runPipeline(FrameSetWriter writer, int frameCount) throws IOException
+	{
+		boolean encoding = writer instanceof PipelinedWriter && encoderThreadCount > 0;
+		int encoders = encoding ? encoderThreadCount : 0;
+		
+		int capacity = queueCapacity > 0 ? queueCapacity : (threadCount + encoders) * 2;
+		Slot[] slots;
+		
+		try
+		{
+			slots = leaseSlots(Math.max(Math.min(capacity, frameCount), 1));
+		}
+		catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		
+		BlockingQueue<Slot> free = new ArrayBlockingQueue<Slot>(slots.length, false, Arrays.asList(slots));
+		BlockingQueue<Slot> rendered = new ArrayBlockingQueue<Slot>(slots.length);
+		BlockingQueue<Slot> encoded = encoding ? new ArrayBlockingQueue<Slot>(slots.length) : rendered;
+		
+		AtomicInteger nextFrame = new AtomicInteger();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount + encoders);
+		
+		try
+		{
+			renderStage.start(threadCount, free);
+			encodeStage.start(encoders, encoding ? rendered : null);
+			writeStage.start(1, encoded);
+			
+			for(int i = 0; i < threadCount; i++)
+			{
+				executor.execute(new RenderWorker(free, rendered, nextFrame, frameCount, failure));
+			}
+			
+			for(int i = 0; i < encoders; i++)
+			{
+				executor.execute(new EncodeWorker(((PipelinedWriter)writer).createEncoder(), rendered, encoded, failure));
+			}
+			
+			Slot[] pending = new Slot[slots.length];
+			
+			for(int frameNumber = 0; frameNumber < frameCount; frameNumber++)
+			{
+				while(pending[frameNumber % pending.length] == null)
+				{
+					Slot slot = writeStage.poll(encoded, 100, TimeUnit.MILLISECONDS);
+					
+					if(slot != null)
+					{
+						pending[slot.frameNumber % pending.length] = slot;
+					}
+					else if(failure.get() != null)
+					{
+						Throwable ex = failure.get();
+						throw ex instanceof IOException ? (IOException)ex : new IOException(ex);
+					}
+				}
+				
+				Slot slot = pending[frameNumber % pending.length];
+				pending[frameNumber % pending.length] = null;
+				
+				if(verbose)
+				{
+					System.out.println("Generating image " + (frameNumber + 1) + " of " + frameCount + "...");
+				}
+				
+				long time = System.nanoTime();
+				
+				if(encoding)
+				{
+					((PipelinedWriter)writer).writeEncoded(slot.encoded);
+				}
+				else
+				{
+					writer.writeFrame(slot.buffer);
+				}
+				
+				writeStage.record(time);
+				telemetry.recordFrame(time, slot.renderNanos, System.nanoTime() - time);
+				
+				free.add(slot);
+			}
+		}
+		catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		finally
+		{
+			executor.shutdownNow();
+			
+			try
+			{
+				executor.awaitTermination(10, TimeUnit.SECONDS);
+			}
+			catch(InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+			}
+			
+			renderStage.stop();
+			encodeStage.stop();
+			writeStage.stop();
+			
+			for(Slot slot : slots)
+			{
+				slot.buffer.release();
+			}
+		}
+	}
+	
+	/**
+	 * Leases up to the given number of frame slots: the first one waits for the pool, the others are taken
+	 * only as far as the pool budget allows right away, so a small budget shortens the pipeline instead of blocking it.
+	 */
+	protected Slot[] leaseSlots(int count) throws InterruptedException
+	{
+		Slot[] slots = new Slot[count];
+		slots[0] = new Slot(bufferPool.lease(width, height));
+		
+		for(int i = 1; i < count; i++)
+		{
+			FrameBuffer buffer = bufferPool.tryLease(width, height);
+			
+			if(buffer == null)
+			{
+				return Arrays.copyOf(slots, i);
+			}
+			
+			slots[i] = new Slot(buffer);
+		}
+		
+		return slots;
+	}
+	
+	/**
+	 * Renders every frame in strips of tileHeight full rows, a batch of strips in parallel,
+	 * and streams them to the writer in order. Peak memory depends on the strip size only.
+	 */
+	protected void generateStrips(int width, int height, int frameCount) throws IOException
+	{
+		int rows = tileHeight;
+		
+		if(pixelConverter != null && pixelConverter.getFormat().isPlanar())
+		{
+			rows += rows & 1;
+		}
+		
+		rows = Math.min(rows, height);
+		int stripCount = (height + rows - 1) / rows;
+		long total = (long)frameCount * stripCount;
+		
+		String filename = getOutputPath(width, height, frameCount);
+		FrameSetWriter writer = outputFormat.createWriter(filename, width, height, fps, frameCount, pixelConverter);
+		
+		ForkJoinPool pool = new ForkJoinPool(threadCount);
+		
+		try
+		{
+			if(!(writer instanceof StripWriter))
+			{
+				throw new IOException("The " + outputFormat.name() + " format does not support tiled output");
+			}
+			
+			StripWriter stripWriter = (StripWriter)writer;
+			
+			int batchSize = (int)Math.min(threadCount, total);
+			BufferedImage[] strips = new BufferedImage[batchSize];
+			renderTimes = new long[batchSize];
+			
+			for(int i = 0; i < strips.length; i++)
+			{
+				strips[i] = new BufferedImage(width, rows, BufferedImage.TYPE_INT_RGB);
+			}
+			
+			long frameTime = 0;
+			long frameRenderTime = 0;
+			long frameWriteTime = 0;
+			
+			for(long start = 0; start < total; start += batchSize)
+			{
+				int count = (int)Math.min(batchSize, total - start);
+				
+				pool.invoke(new StripTask(strips, start, 0, count, stripCount));
+				
+				for(int i = 0; i < count; i++)
+				{
+					int frameNumber = (int)((start + i) / stripCount);
+					int strip = (int)((start + i) % stripCount);
+					
+					long time = System.nanoTime();
+					
+					if(strip == 0)
+					{
+						if(verbose)
+						{
+							System.out.println("Generating image " + (frameNumber + 1) + " of " + frameCount + "...");
+						}
+						
+						frameTime = time;
+						frameRenderTime = 0;
+						frameWriteTime = 0;
+					}
+					
+					stripWriter.writeRows(((DataBufferInt)strips[i].getRaster().getDataBuffer()).getData(), 0, Math.min(rows, height - strip * rows));
+					
+					frameRenderTime += renderTimes[i];
+					frameWriteTime += System.nanoTime() - time;
+					
+					if(strip == stripCount - 1)
+					{
+						telemetry.recordFrame(frameTime, frameRenderTime, frameWriteTime);
+					}
+				}
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+			writer.close();
+			
+			renderTimes = null;
+		}
+		
+		if(verify)
+		{
+			System.out.println("Verification is not supported for tiled output");
+		}
+	}
+	
+	/**
+	 * Round-trips the written frame set: decodes every frame and compares it with the raw raster.
+	 */
+	protected void verify(String filename, int frameCount) throws IOException
+	{
+		FrameSetReader reader = outputFormat.openReader(filename);
+		
+		if(reader == null)
+		{
+			System.out.println("Verification is not supported for the " + outputFormat.name() + " format");
+			return;
+		}
+		
+		try
+		{
+			RasterCanvas frame = new RasterCanvas(new int[width * height], width, height);
+			int[] decoded = new int[width * height];
+			char[] infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+			
+			for(int frameNumber = 0; frameNumber < frameCount; frameNumber++)
+			{
+				renderFrame(frameNumber, frame, infoline);
+				reader.readFrame(frameNumber, decoded);
+				
+				if(!Arrays.equals(frame.getData(), decoded))
+				{
+					throw new IOException("Verification failed at frame " + frameNumber);
+				}
+			}
+			
+			if(verbose)
+			{
+				System.out.println("Verified " + frameCount + " frames");
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+	
+	protected void renderFrame(int frameNumber, RasterCanvas frame, char[] infoline)
+	{
+		UEITPainter.formatInfoLine(infoline, fps, frameNumber);
+		painter.paintUEIT(frame, segments[frameNumber % segments.length], infoline);
+	}
+	
+	protected void renderFrame(int frameNumber, FrameBuffer frame, char[] infoline)
+	{
+		UEITPainter.formatInfoLine(infoline, fps, frameNumber);
+		painter.paintUEIT(frame, segments[frameNumber % segments.length], infoline);
+	}
+	
+	protected class SegmentTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final int from;
+		protected final int to;
+		
+		public SegmentTask(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+		
+		protected void compute()
+		{
+			if(to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new SegmentTask(from, middle), new SegmentTask(middle, to));
+			}
+			else
+			{
+				segments[from] = new RasterCanvas(painter.renderSegment(width, height, from));
+			}
+		}
+	}
+	
+	protected class StripTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final BufferedImage[] strips;
+		protected final long base;
+		protected final int from;
+		protected final int to;
+		protected final int stripCount;
+		
+		public StripTask(BufferedImage[] strips, long base, int from, int to, int stripCount)
+		{
+			this.strips = strips;
+			this.base = base;
+			this.from = from;
+			this.to = to;
+			this.stripCount = stripCount;
+		}
+		
+		protected void compute()
+		{
+			if(to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new StripTask(strips, base, from, middle, stripCount), new StripTask(strips, base, middle, to, stripCount));
+			}
+			else
+			{
+				long time = System.nanoTime();
+				
+				int frameNumber = (int)((base + from) / stripCount);
+				int strip = (int)((base + from) % stripCount);
+				
+				RasterCanvas c = tilePainter.renderTile(strips[from], 0, strip * strips[from].getHeight(), width, height, frameNumber % 8);
+				tilePainter.getGlyphAtlas(width, height).drawInfoLine(c, UEITPainter.formatInfoLine(new char[GlyphAtlas.INFO_LINE_LENGTH], fps, frameNumber));
+				
+				renderTimes[from] = System.nanoTime() - time;
+			}
+		}
+	}
+	
+	/**
+	 * A frame in flight: its buffer, and its encoded data once an encoder is done with it.
+	 */
+	protected static class Slot
+	{
+		protected final FrameBuffer buffer;
+		protected final EncodedFrame encoded = new EncodedFrame();
+		
+		protected int frameNumber;
+		protected long renderNanos;
+		
+		public Slot(FrameBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+	}
+	
+	protected class RenderWorker implements Runnable
+	{
+		protected final BlockingQueue<Slot> free;
+		protected final BlockingQueue<Slot> rendered;
+		protected final AtomicInteger nextFrame;
+		protected final int frameCount;
+		protected final AtomicReference<Throwable> failure;
+		
+		protected final char[] infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+		
+		public RenderWorker(BlockingQueue<Slot> free, BlockingQueue<Slot> rendered, AtomicInteger nextFrame, int frameCount, AtomicReference<Throwable> failure)
+		{
+			this.free = free;
+			this.rendered = rendered;
+			this.nextFrame = nextFrame;
+			this.frameCount = frameCount;
+			this.failure = failure;
+		}
+		
+		public void run()
+		{
+			try
+			{
+				while(true)
+				{
+					Slot slot = renderStage.take(free);
+					int frameNumber = nextFrame.getAndIncrement();
+					
+					if(frameNumber >= frameCount)
+					{
+						return;
+					}
+					
+					long time = System.nanoTime();
+					renderFrame(frameNumber, slot.buffer, infoline);
+					
+					slot.frameNumber = frameNumber;
+					slot.renderNanos = System.nanoTime() - time;
+					renderStage.record(time);
+					
+					rendered.put(slot);
+				}
+			}
+			catch(InterruptedException ex)
+			{
+			}
+			catch(Throwable ex)
+			{
+				failure.compareAndSet(null, ex);
+			}
+		}
+	}
+	
+	protected class EncodeWorker implements Runnable
+	{
+		protected final PipelinedWriter.Encoder encoder;
+		protected final BlockingQueue<Slot> rendered;
+		protected final BlockingQueue<Slot> encoded;
+		protected final AtomicReference<Throwable> failure;
+		
+		public EncodeWorker(PipelinedWriter.Encoder encoder, BlockingQueue<Slot> rendered, BlockingQueue<Slot> encoded, AtomicReference<Throwable> failure)
+		{
+			this.encoder = encoder;
+			this.rendered = rendered;
+			this.encoded = encoded;
+			this.failure = failure;
+		}
+		
+		public void run()
+		{
+			try
+			{
+				while(true)
+				{
+					Slot slot = encodeStage.take(rendered);
+					
+					long time = System.nanoTime();
+					encoder.encode(slot.buffer, slot.encoded);
+					encodeStage.record(time);
+					
+					encoded.put(slot);
+				}
+			}
+			catch(InterruptedException ex)
+			{
+			}
+			catch(Throwable ex)
+			{
+				failure.compareAndSet(null, ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Random access to the frames of a frame set written by a {@link FrameSetWriter}.
+ */
+public interface FrameSetReader extends Closeable
+{
+	public int getWidth();
+	
+	public int getHeight();
+	
+	public int getFPS();
+	
+	public int getFrameCount();
+	
+	/**
+	 * Decodes the given frame into dst, which holds width * height ARGB pixels.
+	 */
+	public void readFrame(int frameNumber, int[] dst) throws IOException;
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Output sink for a generated frame set. Frames are passed in order as ARGB pixel arrays, row by row,
+ * or as off-heap frame buffers.
+ */
+public interface FrameSetWriter extends Closeable
+{
+	public void writeFrame(int[] argb) throws IOException;
+	
+	/**
+	 * Writes a frame from an off-heap buffer; the buffer stays with the caller.
+	 */
+	public void writeFrame(FrameBuffer frame) throws IOException;
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pull-based source of UEIT frames. Each call of {@link #next()} renders the next frame into one of a fixed number
+ * of off-heap buffers; the consumer hands the buffer back with {@link Frame#release()}.
+ * Once all buffers are leased, next() blocks until one is released, so a slow consumer
+ * throttles rendering and memory use stays bounded however long the stream runs.
+ * The buffers come from a {@link FrameBufferPool} and go back to it on {@link #close()}.
+ */
+public class FrameSource
+{
+	protected final UEITPainter painter = new RasterPainter();
+	
+	protected final int fps;
+	protected final int width;
+	protected final int height;
+	protected final long frameCount;
+	
+	protected final RasterCanvas[] segments;
+	protected final BlockingQueue<Frame> pool;
+	protected final int poolSize;
+	protected final FrameBufferPool bufferPool;
+	protected final char[] infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+	
+	protected long frameIndex;
+	protected int bufferCount;
+	protected boolean closed;
+	
+	/**
+	 * @param frameCount number of frames to produce, or a negative number for an endless stream
+	 * @param poolSize number of frame buffers the consumer may hold at once
+	 */
+	public FrameSource(double targetFrameRate, int width, int height, long frameCount, int poolSize)
+	{
+		this(targetFrameRate, RasterCanvas.wrap(new RasterPainter().renderSegments(width, height)), frameCount, poolSize);
+	}
+	
+	/**
+	 * Creates a source on pre-rendered segment images, which determine the frame size.
+	 */
+	public FrameSource(double targetFrameRate, RasterCanvas[] segments, long frameCount, int poolSize)
+	{
+		this(targetFrameRate, segments, frameCount, poolSize, FrameBufferPool.getShared());
+	}
+	
+	public FrameSource(double targetFrameRate, RasterCanvas[] segments, long frameCount, int poolSize, FrameBufferPool bufferPool)
+	{
+		this.fps = UEIT.getImprintedFPS(UEIT.clampFrameRate(targetFrameRate));
+		this.width = segments[0].getWidth();
+		this.height = segments[0].getHeight();
+		this.frameCount = frameCount;
+		this.segments = segments;
+		
+		this.poolSize = poolSize;
+		this.bufferPool = bufferPool;
+		
+		pool = new ArrayBlockingQueue<Frame>(poolSize);
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	public boolean hasNext()
+	{
+		return frameCount < 0 || frameIndex < frameCount;
+	}
+	
+	/**
+	 * Renders the next frame, waiting for a free buffer if the consumer holds all of them.
+	 */
+	public Frame next() throws InterruptedException
+	{
+		if(!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		
+		Frame frame = pool.poll();
+		
+		if(frame == null && bufferCount < poolSize)
+		{
+			frame = new Frame(bufferPool.lease(width, height));
+			bufferCount++;
+		}
+		else if(frame == null)
+		{
+			frame = pool.take();
+		}
+		
+		frame.frameIndex = frameIndex;
+		frame.released = false;
+		
+		int frameNumber = (int)(frameIndex % 1000);
+		
+		UEITPainter.formatInfoLine(infoline, fps, frameNumber);
+		painter.paintUEIT(frame.buffer, segments[frameNumber % segments.length], infoline);
+		
+		frameIndex++;
+		return frame;
+	}
+	
+	/**
+	 * Returns the buffers to the pool they came from; frames still leased go back when they are released.
+	 */
+	public synchronized void close()
+	{
+		closed = true;
+		
+		for(Frame frame; (frame = pool.poll()) != null;)
+		{
+			frame.buffer.release();
+		}
+	}
+	
+	/**
+	 * A leased frame buffer. Its contents stay valid until it is released.
+	 */
+	public class Frame
+	{
+		protected final FrameBuffer buffer;
+		
+		protected long frameIndex;
+		protected boolean released;
+		
+		protected Frame(FrameBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+		
+		public long getFrameIndex()
+		{
+			return frameIndex;
+		}
+		
+		public FrameBuffer getBuffer()
+		{
+			return buffer;
+		}
+		
+		/**
+		 * Returns the buffer to the pool. Releasing a frame twice has no effect.
+		 */
+		public synchronized void release()
+		{
+			if(!released)
+			{
+				released = true;
+				
+				synchronized(FrameSource.this)
+				{
+					if(closed)
+					{
+						buffer.release();
+					}
+					else
+					{
+						pool.add(this);
+					}
+				}
+			}
+		}
+	}
+}
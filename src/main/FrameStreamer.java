@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+
+/**
+ * Pulls frames from a {@link FrameSource} and writes them to a sink, paced at the target frame rate
+ * unless no pacer is given, in which case the sink alone sets the pace.
+ */
+public class FrameStreamer
+{
+	protected final FrameSource source;
+	protected final FrameSetWriter sink;
+	protected final FramePacer pacer;
+	
+	protected final FrameTelemetry telemetry;
+	
+	public FrameStreamer(FrameSource source, FrameSetWriter sink, FramePacer pacer)
+	{
+		this.source = source;
+		this.sink = sink;
+		this.pacer = pacer;
+		
+		telemetry = new FrameTelemetry("stream", pacer != null ? pacer.getPeriodNanos() : 0);
+	}
+	
+	public FrameTelemetry getTelemetry()
+	{
+		return telemetry;
+	}
+	
+	public FramePacer getPacer()
+	{
+		return pacer;
+	}
+	
+	/**
+	 * Streams until the source is exhausted or the thread is interrupted. Returns the number of frames written.
+	 */
+	public long stream() throws IOException
+	{
+		long count = 0;
+		
+		if(pacer != null)
+		{
+			pacer.start();
+		}
+		
+		try
+		{
+			while(source.hasNext())
+			{
+				long time = System.nanoTime();
+				FrameSource.Frame frame = source.next();
+				
+				long renderTime = System.nanoTime();
+				
+				try
+				{
+					sink.writeFrame(frame.getBuffer());
+				}
+				finally
+				{
+					frame.release();
+				}
+				
+				telemetry.recordFrame(time, renderTime - time, System.nanoTime() - renderTime);
+				count++;
+				
+				if(pacer != null)
+				{
+					pacer.awaitNextFrame();
+				}
+			}
+		}
+		catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+		
+		return count;
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-frame timing of a frame source: intervals between frames, render and present durations
+ * and the deviation of the interval from the target period, kept in lock-free histograms,
+ * plus counters of missed deadlines and of requested frames that were never painted.
+ * A frame misses its deadline when it starts more than half a period late.
+ */
+public class FrameTelemetry implements FrameTelemetryMBean
+{
+	protected final String source;
+	protected final long periodNanos;
+	
+	protected final LatencyHistogram frameInterval = new LatencyHistogram();
+	protected final LatencyHistogram renderTime = new LatencyHistogram();
+	protected final LatencyHistogram presentTime = new LatencyHistogram();
+	protected final LatencyHistogram pacingError = new LatencyHistogram();
+	
+	protected final AtomicLong requestedFrames = new AtomicLong();
+	protected final AtomicLong missedDeadlines = new AtomicLong();
+	
+	protected volatile long prevFrameStart;
+	
+	protected ObjectName objectName;
+	
+	/**
+	 * @param periodNanos target frame period, or 0 if frames are not paced
+	 */
+	public FrameTelemetry(String source, long periodNanos)
+	{
+		this.source = source;
+		this.periodNanos = periodNanos;
+	}
+	
+	/**
+	 * Counts a frame requested from another thread, such as a repaint request.
+	 * Requests that are not followed by a recorded frame are reported as dropped.
+	 */
+	public void frameRequested()
+	{
+		requestedFrames.incrementAndGet();
+	}
+	
+	/**
+	 * Records a frame that started at the given time, as returned by {@link System#nanoTime()}.
+	 */
+	public void recordFrame(long startNanos, long renderNanos, long presentNanos)
+	{
+		long prev = prevFrameStart;
+		prevFrameStart = startNanos;
+		
+		if(prev != 0)
+		{
+			long interval = startNanos - prev;
+			frameInterval.record(interval);
+			
+			if(periodNanos > 0)
+			{
+				pacingError.record(Math.abs(interval - periodNanos));
+				
+				if(interval > periodNanos + periodNanos / 2)
+				{
+					missedDeadlines.incrementAndGet();
+				}
+			}
+		}
+		
+		renderTime.record(renderNanos);
+		presentTime.record(presentNanos);
+	}
+	
+	public LatencyHistogram getFrameIntervalHistogram()
+	{
+		return frameInterval;
+	}
+	
+	public LatencyHistogram getRenderTimeHistogram()
+	{
+		return renderTime;
+	}
+	
+	public LatencyHistogram getPresentTimeHistogram()
+	{
+		return presentTime;
+	}
+	
+	public LatencyHistogram getPacingErrorHistogram()
+	{
+		return pacingError;
+	}
+	
+	/**
+	 * Registers the telemetry in the platform MBean server as main:type=FrameTelemetry,source=&lt;source&gt;.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("main:type=FrameTelemetry,source=" + ObjectName.quote(source));
+			
+			if(server.isRegistered(name))
+			{
+				server.unregisterMBean(name);
+			}
+			
+			server.registerMBean(this, name);
+			objectName = name;
+		}
+		catch(JMException ex)
+		{
+			System.err.println(ex.toString());
+		}
+	}
+	
+	public void unregister()
+	{
+		if(objectName != null)
+		{
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			}
+			catch(JMException ex)
+			{
+			}
+			
+			objectName = null;
+		}
+	}
+	
+	public String getSource()
+	{
+		return source;
+	}
+	
+	public double getTargetPeriod()
+	{
+		return periodNanos / 1e6;
+	}
+	
+	public long getFrameCount()
+	{
+		return renderTime.getCount();
+	}
+	
+	public long getMissedDeadlines()
+	{
+		return missedDeadlines.get();
+	}
+	
+	public long getDroppedFrames()
+	{
+		long requested = requestedFrames.get();
+		return requested > 0 ? Math.max(requested - getFrameCount(), 0) : 0;
+	}
+	
+	public double getFrameIntervalMean()
+	{
+		return frameInterval.getMean() / 1e6;
+	}
+	
+	public double getFrameInterval50()
+	{
+		return frameInterval.getValueAtPercentile(50) / 1e6;
+	}
+	
+	public double getFrameInterval99()
+	{
+		return frameInterval.getValueAtPercentile(99) / 1e6;
+	}
+	
+	public double getFrameInterval999()
+	{
+		return frameInterval.getValueAtPercentile(99.9) / 1e6;
+	}
+	
+	public double getFrameIntervalMax()
+	{
+		return frameInterval.getMax() / 1e6;
+	}
+	
+	public double getRenderTimeMean()
+	{
+		return renderTime.getMean() / 1e6;
+	}
+	
+	public double getRenderTime50()
+	{
+		return renderTime.getValueAtPercentile(50) / 1e6;
+	}
+	
+	public double getRenderTime99()
+	{
+		return renderTime.getValueAtPercentile(99) / 1e6;
+	}
+	
+	public double getRenderTimeMax()
+	{
+		return renderTime.getMax() / 1e6;
+	}
+	
+	public double getPresentTimeMean()
+	{
+		return presentTime.getMean() / 1e6;
+	}
+	
+	public double getPresentTime50()
+	{
+		return presentTime.getValueAtPercentile(50) / 1e6;
+	}
+	
+	public double getPresentTime99()
+	{
+		return presentTime.getValueAtPercentile(99) / 1e6;
+	}
+	
+	public double getPresentTimeMax()
+	{
+		return presentTime.getMax() / 1e6;
+	}
+	
+	public double getPacingError50()
+	{
+		return pacingError.getValueAtPercentile(50) / 1e6;
+	}
+	
+	public double getPacingError99()
+	{
+		return pacingError.getValueAtPercentile(99) / 1e6;
+	}
+	
+	public double getPacingErrorMax()
+	{
+		return pacingError.getMax() / 1e6;
+	}
+	
+	public void reset()
+	{
+		frameInterval.reset();
+		renderTime.reset();
+		presentTime.reset();
+		pacingError.reset();
+		
+		requestedFrames.set(0);
+		missedDeadlines.set(0);
+		prevFrameStart = 0;
+	}
+	
+	public String getStatistics()
+	{
+		return String.format("%s: %d frames, %d missed deadlines, %d dropped, interval p50 %.3f ms p99 %.3f ms max %.3f ms, render p50 %.3f ms p99 %.3f ms, present p50 %.3f ms p99 %.3f ms",
+							 source, getFrameCount(), getMissedDeadlines(), getDroppedFrames(),
+							 getFrameInterval50(), getFrameInterval99(), getFrameIntervalMax(),
+							 getRenderTime50(), getRenderTime99(), getPresentTime50(), getPresentTime99());
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * JMX view of {@link FrameTelemetry}. Durations are in milliseconds.
+ */
+public interface FrameTelemetryMBean
+{
+	public String getSource();
+	
+	public double getTargetPeriod();
+	
+	public long getFrameCount();
+	public long getMissedDeadlines();
+	public long getDroppedFrames();
+	
+	public double getFrameIntervalMean();
+	public double getFrameInterval50();
+	public double getFrameInterval99();
+	public double getFrameInterval999();
+	public double getFrameIntervalMax();
+	
+	public double getRenderTimeMean();
+	public double getRenderTime50();
+	public double getRenderTime99();
+	public double getRenderTimeMax();
+	
+	public double getPresentTimeMean();
+	public double getPresentTime50();
+	public double getPresentTime99();
+	public double getPresentTimeMax();
+	
+	public double getPacingError50();
+	public double getPacingError99();
+	public double getPacingErrorMax();
+	
+	public void reset();
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Info line characters pre-rasterized once per resolution, so that drawing the info line
+ * comes down to blitting ten glyphs from the atlas without allocating anything.
+ * Blitted glyphs are pixel-exact with UEITPainter.paintString().
+ */
+public class GlyphAtlas
+{
+	public static final String CHARACTERS = "0123456789FPS: ";
+	
+	public static final int INFO_LINE_LENGTH = 10;
+	
+	protected final int width;
+	protected final int height;
+	
+	protected final BufferedImage atlas;
+	protected final int[] atlasData;
+	protected final int atlasWidth;
+	
+	/**
+	 * Glyph bounds within the atlas, indexed by character.
+	 */
+	protected final int[] glyphX = new int[128];
+	protected final int[] glyphWidth = new int[128];
+	protected final int[] glyphHeight = new int[128];
+	protected final boolean[] glyphPresent = new boolean[128];
+	
+	/**
+	 * Glyph offsets from the top left corner of the atlas bounds to the center of the character cell,
+	 * indexed by character.
+	 */
+	protected final int[] glyphOffsetX = new int[128];
+	protected final int[] glyphOffsetY = new int[128];
+	
+	/**
+	 * Centers of the info line character cells.
+	 */
+	protected final int[] cellX = new int[INFO_LINE_LENGTH];
+	protected final int cellY;
+	
+	public GlyphAtlas(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		
+		UEITLayout layout = UEITLayout.get(width, height);
+		
+		for(int i = 0; i < cellX.length; i++)
+		{
+			cellX[i] = layout.getInfoCellX(i);
+		}
+		
+		cellY = layout.getInfoCellY();
+		
+		int h = layout.getInfoLine()[3];
+		
+		BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = (Graphics2D)scratch.getGraphics();
+		
+		Font font = UEITPainter.deriveInfoLineFont(g, h);
+		FontMetrics fm = g.getFontMetrics(font);
+		
+		g.dispose();
+		
+		// Each character is drawn around the center of a cell with the same margins on all sides,
+		// then cropped to the pixels actually set
+		
+		int margin = Math.max(fm.getMaxAdvance(), fm.getHeight()) + 2;
+		int size = margin * 2;
+		
+		BufferedImage cell = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		int[] cellData = ((DataBufferInt)cell.getRaster().getDataBuffer()).getData();
+		
+		int[][] crops = new int[CHARACTERS.length()][];
+		int[] bounds = new int[4];
+		int total = 0;
+		
+		for(int i = 0; i < CHARACTERS.length(); i++)
+		{
+			char ch = CHARACTERS.charAt(i);
+			
+			Arrays.fill(cellData, 0);
+			
+			g = (Graphics2D)cell.getGraphics();
+			g.setFont(font);
+			g.setColor(UEITPainter.COLOR_LIGHT_GRAY);
+			g.setStroke(UEITPainter.STROKE_1PX);
+			UEITPainter.paintString(g, fm, String.valueOf(ch), margin, margin);
+			g.dispose();
+			
+			glyphPresent[ch] = true;
+			
+			if(!getBounds(cellData, size, bounds))
+			{
+				continue;
+			}
+			
+			glyphOffsetX[ch] = bounds[0] - margin;
+			glyphOffsetY[ch] = bounds[1] - margin;
+			glyphWidth[ch] = bounds[2] - bounds[0];
+			glyphHeight[ch] = bounds[3] - bounds[1];
+			glyphX[ch] = total;
+			
+			crops[i] = new int[glyphWidth[ch] * glyphHeight[ch]];
+			
+			for(int y = 0; y < glyphHeight[ch]; y++)
+			{
+				System.arraycopy(cellData, (bounds[1] + y) * size + bounds[0], crops[i], y * glyphWidth[ch], glyphWidth[ch]);
+			}
+			
+			total += glyphWidth[ch];
+		}
+		
+		int atlasHeight = 1;
+		
+		for(int i = 0; i < CHARACTERS.length(); i++)
+		{
+			atlasHeight = Math.max(atlasHeight, glyphHeight[CHARACTERS.charAt(i)]);
+		}
+		
+		atlasWidth = Math.max(total, 1);
+		atlas = new BufferedImage(atlasWidth, atlasHeight, BufferedImage.TYPE_INT_ARGB);
+		atlasData = ((DataBufferInt)atlas.getRaster().getDataBuffer()).getData();
+		
+		for(int i = 0; i < CHARACTERS.length(); i++)
+		{
+			char ch = CHARACTERS.charAt(i);
+			
+			for(int y = 0; y < glyphHeight[ch]; y++)
+			{
+				System.arraycopy(crops[i], y * glyphWidth[ch], atlasData, y * atlasWidth + glyphX[ch], glyphWidth[ch]);
+			}
+		}
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	public BufferedImage getAtlas()
+	{
+		return atlas;
+	}
+	
+	/**
+	 * Returns whether all characters of the info line are available in the atlas.
+	 */
+	public boolean canDraw(char[] infoline)
+	{
+		for(int i = 0; i < infoline.length; i++)
+		{
+			if(infoline[i] >= glyphPresent.length || !glyphPresent[infoline[i]])
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Adds the bounds of the glyphs that differ between two info lines, both the old and the new ones, to the region.
+	 */
+	public void addInfoLineBounds(char[] previous, char[] infoline, DirtyRegion region)
+	{
+		for(int i = 0; i < Math.min(infoline.length, INFO_LINE_LENGTH); i++)
+		{
+			if(i < previous.length && previous[i] == infoline[i])
+			{
+				continue;
+			}
+			
+			if(i < previous.length)
+			{
+				addGlyphBounds(i, previous[i], region);
+			}
+			
+			addGlyphBounds(i, infoline[i], region);
+		}
+	}
+	
+	protected void addGlyphBounds(int index, char ch, DirtyRegion region)
+	{
+		if(ch < glyphPresent.length && glyphPresent[ch])
+		{
+			region.add(cellX[index] + glyphOffsetX[ch], cellY + glyphOffsetY[ch], glyphWidth[ch], glyphHeight[ch]);
+		}
+	}
+	
+	/**
+	 * Blits the info line glyphs into the raster, skipping characters not in the atlas.
+	 */
+	public void drawInfoLine(RasterCanvas c, char[] infoline)
+	{
+		int[] data = c.getData();
+		int stride = c.getWidth();
+		int limit = c.getHeight();
+		
+		for(int i = 0; i < Math.min(infoline.length, INFO_LINE_LENGTH); i++)
+		{
+			char ch = infoline[i];
+			
+			if(ch >= glyphPresent.length || !glyphPresent[ch])
+			{
+				continue;
+			}
+			
+			int x = cellX[i] + glyphOffsetX[ch] - c.getOriginX();
+			int y = cellY + glyphOffsetY[ch] - c.getOriginY();
+			
+			int x1 = Math.max(x, 0);
+			int x2 = Math.min(x + glyphWidth[ch], stride);
+			
+			int y1 = Math.max(y, 0);
+			int y2 = Math.min(y + glyphHeight[ch], limit);
+			
+			for(int row = y1; row < y2; row++)
+			{
+				int src = (row - y) * atlasWidth + glyphX[ch] - x;
+				int dst = row * stride;
+				
+				for(int col = x1; col < x2; col++)
+				{
+					int argb = atlasData[src + col];
+					
+					if(argb != 0)
+					{
+						data[dst + col] = argb;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Blits the info line glyphs into a frame of pixels with the given width and height, skipping characters not in the atlas.
+	 */
+	public void drawInfoLine(IntBuffer data, int stride, int limit, char[] infoline)
+	{
+		for(int i = 0; i < Math.min(infoline.length, INFO_LINE_LENGTH); i++)
+		{
+			char ch = infoline[i];
+			
+			if(ch >= glyphPresent.length || !glyphPresent[ch])
+			{
+				continue;
+			}
+			
+			int x = cellX[i] + glyphOffsetX[ch];
+			int y = cellY + glyphOffsetY[ch];
+			
+			int x1 = Math.max(x, 0);
+			int x2 = Math.min(x + glyphWidth[ch], stride);
+			
+			int y1 = Math.max(y, 0);
+			int y2 = Math.min(y + glyphHeight[ch], limit);
+			
+			for(int row = y1; row < y2; row++)
+			{
+				int src = (row - y) * atlasWidth + glyphX[ch] - x;
+				int dst = row * stride;
+				
+				for(int col = x1; col < x2; col++)
+				{
+					int argb = atlasData[src + col];
+					
+					if(argb != 0)
+					{
+						data.put(dst + col, argb);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Blits the info line glyphs through the graphics context, skipping characters not in the atlas.
+	 */
+	public void drawInfoLine(Graphics2D g, char[] infoline)
+	{
+		for(int i = 0; i < Math.min(infoline.length, INFO_LINE_LENGTH); i++)
+		{
+			char ch = infoline[i];
+			
+			if(ch >= glyphPresent.length || !glyphPresent[ch] || glyphWidth[ch] == 0)
+			{
+				continue;
+			}
+			
+			int x = cellX[i] + glyphOffsetX[ch];
+			int y = cellY + glyphOffsetY[ch];
+			
+			g.drawImage(atlas, x, y, x + glyphWidth[ch], y + glyphHeight[ch], glyphX[ch], 0, glyphX[ch] + glyphWidth[ch], glyphHeight[ch], null);
+		}
+	}
+	
+	/**
+	 * Finds the bounds of the non-transparent pixels as { x1, y1, x2, y2 }, exclusive of x2 and y2.
+	 */
+	protected static boolean getBounds(int[] data, int size, int[] bounds)
+	{
+		int x1 = size, y1 = size, x2 = 0, y2 = 0;
+		
+		for(int y = 0; y < size; y++)
+		{
+			for(int x = 0; x < size; x++)
+			{
+				if(data[y * size + x] != 0)
+				{
+					x1 = Math.min(x1, x);
+					y1 = Math.min(y1, y);
+					x2 = Math.max(x2, x + 1);
+					y2 = Math.max(y2, y + 1);
+				}
+			}
+		}
+		
+		bounds[0] = x1;
+		bounds[1] = y1;
+		bounds[2] = x2;
+		bounds[3] = y2;
+		
+		return x1 < x2;
+	}
+}
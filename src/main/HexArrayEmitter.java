@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams C array initializers of hexadecimal uint32_t values into a channel.
+ * Digits are taken from a lookup table and collected in a reusable buffer, so nothing is allocated per pixel.
+ */
+public class HexArrayEmitter
+{
+	protected static final int BUFFER_SIZE = 1 << 16;
+	
+	protected static final int VALUES_PER_LINE = 8;
+	protected static final int MAX_LINE_LENGTH = 3 + VALUES_PER_LINE * 12;
+	
+	/**
+	 * Two uppercase hexadecimal digits for every byte value.
+	 */
+	protected static final byte[] HEX_PAIRS = new byte[256 * 2];
+	
+	static
+	{
+		byte[] digits = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+		
+		for(int i = 0; i < 256; i++)
+		{
+			HEX_PAIRS[i * 2 + 0] = digits[i >>> 4];
+			HEX_PAIRS[i * 2 + 1] = digits[i & 15];
+		}
+	}
+	
+	protected final WritableByteChannel channel;
+	
+	protected final byte[] buffer = new byte[BUFFER_SIZE];
+	protected final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+	protected int position;
+	
+	public HexArrayEmitter(WritableByteChannel channel)
+	{
+		this.channel = channel;
+	}
+	
+	public HexArrayEmitter append(String s) throws IOException
+	{
+		for(int i = 0; i < s.length(); i++)
+		{
+			if(position == buffer.length)
+			{
+				flush();
+			}
+			
+			buffer[position++] = (byte)s.charAt(i);
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Emits one frame as an initializer block, opaque ARGB values, eight per line.
+	 */
+	public void appendFrame(int[] argb) throws IOException
+	{
+		beginFrame();
+		appendPixels(argb, 0, argb.length, 0);
+		endFrame();
+	}
+	
+	public void beginFrame() throws IOException
+	{
+		append("\t{");
+	}
+	
+	/**
+	 * Emits count pixels of the current frame from the given offset of the array;
+	 * index is the position of the first of them within the frame, which determines the line breaks.
+	 */
+	public void appendPixels(int[] argb, int offset, int count, int index) throws IOException
+	{
+		byte[] buffer = this.buffer;
+		byte[] pairs = HEX_PAIRS;
+		int position = this.position;
+		
+		for(int i = offset, end = offset + count, column = index % VALUES_PER_LINE; i < end; i++, column++)
+		{
+			if(column == VALUES_PER_LINE)
+			{
+				column = 0;
+			}
+			
+			if(column == 0)
+			{
+				if(position > buffer.length - MAX_LINE_LENGTH)
+				{
+					this.position = position;
+					flush();
+					position = 0;
+				}
+				
+				buffer[position++] = '\r';
+				buffer[position++] = '\n';
+				buffer[position++] = '\t';
+			}
+			
+			int value = argb[i] | 0xFF000000;
+			int pair;
+			
+			buffer[position++] = '\t';
+			buffer[position++] = '0';
+			buffer[position++] = 'x';
+			
+			pair = (value >>> 23) & 0x1FE;
+			buffer[position++] = pairs[pair];
+			buffer[position++] = pairs[pair + 1];
+			
+			pair = (value >>> 15) & 0x1FE;
+			buffer[position++] = pairs[pair];
+			buffer[position++] = pairs[pair + 1];
+			
+			pair = (value >>> 7) & 0x1FE;
+			buffer[position++] = pairs[pair];
+			buffer[position++] = pairs[pair + 1];
+			
+			pair = (value << 1) & 0x1FE;
+			buffer[position++] = pairs[pair];
+			buffer[position++] = pairs[pair + 1];
+			
+			buffer[position++] = ',';
+		}
+		
+		this.position = position;
+	}
+	
+	public void endFrame() throws IOException
+	{
+		append("\r\n");
+		append("\t},\r\n");
+	}
+	
+	public void flush() throws IOException
+	{
+		wrapper.limit(position);
+		wrapper.position(0);
+		
+		while(wrapper.hasRemaining())
+		{
+			channel.write(wrapper);
+		}
+		
+		wrapper.clear();
+		position = 0;
+	}
+}
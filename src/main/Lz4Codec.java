@@ -0,0 +1,369 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * LZ4 block compression of the little-endian ARGB bytes of a frame. The encoder is a plain greedy
+ * single-probe hash matcher producing standard LZ4 blocks, so LZ4_decompress_safe() from liblz4
+ * decodes them as well as the reference decoder in the generated header.
+ */
+public class Lz4Codec implements FrameCodec
+{
+	public static final int ID = 3;
+	
+	protected static final int MIN_MATCH = 4;
+	protected static final int LAST_LITERALS = 5;
+	protected static final int MF_LIMIT = 12;
+	protected static final int MAX_OFFSET = 0xFFFF;
+	
+	protected static final int HASH_BITS = 16;
+	
+	protected final int[] table = new int[1 << HASH_BITS];
+	
+	public int getId()
+	{
+		return ID;
+	}
+	
+	public String getName()
+	{
+		return "lz4";
+	}
+	
+	public int getMaxEncodedLength(int width, int height)
+	{
+		int length = width * height * 4;
+		return length + length / 255 + 16;
+	}
+	
+	public int encode(int[] argb, byte[] raw, int width, int height, byte[] dst)
+	{
+		return compress(raw, width * height * 4, dst);
+	}
+	
+	protected static int readInt(byte[] src, int i)
+	{
+		return (src[i] & 0xFF) | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF) << 16 | src[i + 3] << 24;
+	}
+	
+	protected static int hash(int value)
+	{
+		return (value * -1640531535) >>> (32 - HASH_BITS);
+	}
+	
+	public int compress(byte[] src, int length, byte[] dst)
+	{
+		int anchor = 0;
+		int op = 0;
+		
+		if(length > MF_LIMIT)
+		{
+			int limit = length - MF_LIMIT;
+			int matchLimit = length - LAST_LITERALS;
+			
+			Arrays.fill(table, -1);
+			
+			int ip = 0;
+			
+			while(ip < limit)
+			{
+				int value = readInt(src, ip);
+				int h = hash(value);
+				int ref = table[h];
+				
+				table[h] = ip;
+				
+				if(ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != value)
+				{
+					ip++;
+					continue;
+				}
+				
+				while(ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1])
+				{
+					ip--;
+					ref--;
+				}
+				
+				int matchLength = MIN_MATCH;
+				
+				while(ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength])
+				{
+					matchLength++;
+				}
+				
+				op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+				
+				ip += matchLength;
+				anchor = ip;
+				
+				if(ip < limit)
+				{
+					table[hash(readInt(src, ip - 2))] = ip - 2;
+				}
+			}
+		}
+		
+		return writeSequence(src, anchor, length - anchor, 0, 0, dst, op);
+	}
+	
+	/**
+	 * Writes literals followed by a match, or only the literals of the last sequence if matchLength is 0.
+	 */
+	protected static int writeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength, byte[] dst, int op)
+	{
+		int token = op++;
+		int matchCode = matchLength > 0 ? matchLength - MIN_MATCH : 0;
+		
+		dst[token] = (byte)((Math.min(literalLength, 15) << 4) | Math.min(matchCode, 15));
+		
+		if(literalLength >= 15)
+		{
+			op = writeLength(literalLength - 15, dst, op);
+		}
+		
+		System.arraycopy(src, literalStart, dst, op, literalLength);
+		op += literalLength;
+		
+		if(matchLength > 0)
+		{
+			dst[op++] = (byte)offset;
+			dst[op++] = (byte)(offset >> 8);
+			
+			if(matchCode >= 15)
+			{
+				op = writeLength(matchCode - 15, dst, op);
+			}
+		}
+		
+		return op;
+	}
+	
+	protected static int writeLength(int length, byte[] dst, int op)
+	{
+		while(length >= 255)
+		{
+			dst[op++] = (byte)255;
+			length -= 255;
+		}
+		
+		dst[op++] = (byte)length;
+		return op;
+	}
+	
+	public void decode(byte[] src, int length, int width, int height, byte[] raw, int[] argb) throws IOException
+	{
+		int size = width * height * 4;
+		
+		decompress(src, length, raw, size);
+		ByteBuffer.wrap(raw, 0, size).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(argb, 0, width * height);
+	}
+	
+	public static void decompress(byte[] src, int length, byte[] dst, int size) throws IOException
+	{
+		int ip = 0;
+		int op = 0;
+		
+		try
+		{
+			while(true)
+			{
+				int token = src[ip++] & 0xFF;
+				int literalLength = token >>> 4;
+				
+				if(literalLength == 15)
+				{
+					int b;
+					
+					do
+					{
+						b = src[ip++] & 0xFF;
+						literalLength += b;
+					}
+					while(b == 255);
+				}
+				
+				if(ip + literalLength > length || op + literalLength > size)
+				{
+					throw new IOException("LZ4 literals overrun the block");
+				}
+				
+				System.arraycopy(src, ip, dst, op, literalLength);
+				ip += literalLength;
+				op += literalLength;
+				
+				if(ip >= length)
+				{
+					break;
+				}
+				
+				int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+				ip += 2;
+				
+				if(offset == 0 || offset > op)
+				{
+					throw new IOException("Invalid LZ4 match offset");
+				}
+				
+				int matchLength = token & 15;
+				
+				if(matchLength == 15)
+				{
+					int b;
+					
+					do
+					{
+						b = src[ip++] & 0xFF;
+						matchLength += b;
+					}
+					while(b == 255);
+				}
+				
+				matchLength += MIN_MATCH;
+				
+				if(op + matchLength > size)
+				{
+					throw new IOException("LZ4 match overruns the frame");
+				}
+				
+				int ref = op - offset;
+				
+				if(offset >= matchLength)
+				{
+					System.arraycopy(dst, ref, dst, op, matchLength);
+					op += matchLength;
+				}
+				else
+				{
+					for(int end = op + matchLength; op < end; op++, ref++)
+					{
+						dst[op] = dst[ref];
+					}
+				}
+			}
+		}
+		catch(ArrayIndexOutOfBoundsException ex)
+		{
+			throw new IOException("Truncated LZ4 block");
+		}
+		
+		if(op != size)
+		{
+			throw new IOException("LZ4 frame length mismatch");
+		}
+	}
+	
+	public void appendDecoder(CHeader header)
+	{
+		header.append("/*");
+		header.append(" * Frames are LZ4 blocks of little-endian ARGB data, decodable with LZ4_decompress_safe() or the decoder below.");
+		header.append(" * Returns the number of bytes decoded, or -1 if the block is malformed.");
+		header.append(" */");
+		header.append("static inline long ueit_lz4_decode(const uint8_t *src, uint32_t length, uint8_t *dst, uint32_t size)");
+		header.append("{");
+		header.append("\tconst uint8_t *end = src + length;");
+		header.append("\tuint8_t *out = dst;");
+		header.append("");
+		header.append("\twhile(src < end)");
+		header.append("\t{");
+		header.append("\t\tuint32_t token = *src++;");
+		header.append("\t\tuint32_t n = token >> 4;");
+		header.append("\t\tuint32_t offset;");
+		header.append("\t\tconst uint8_t *ref;");
+		header.append("");
+		header.append("\t\tif(n == 15)");
+		header.append("\t\t{");
+		header.append("\t\t\twhile(src < end && *src == 255)");
+		header.append("\t\t\t{");
+		header.append("\t\t\t\tn += *src++;");
+		header.append("\t\t\t}");
+		header.append("");
+		header.append("\t\t\tif(src >= end)");
+		header.append("\t\t\t{");
+		header.append("\t\t\t\treturn -1;");
+		header.append("\t\t\t}");
+		header.append("");
+		header.append("\t\t\tn += *src++;");
+		header.append("\t\t}");
+		header.append("");
+		header.append("\t\tif(n > (uint32_t)(end - src) || n > size - (uint32_t)(out - dst))");
+		header.append("\t\t{");
+		header.append("\t\t\treturn -1;");
+		header.append("\t\t}");
+		header.append("");
+		header.append("\t\tmemcpy(out, src, n);");
+		header.append("\t\tsrc += n;");
+		header.append("\t\tout += n;");
+		header.append("");
+		header.append("\t\tif(src >= end)");
+		header.append("\t\t{");
+		header.append("\t\t\tbreak;");
+		header.append("\t\t}");
+		header.append("");
+		header.append("\t\tif(end - src < 2)");
+		header.append("\t\t{");
+		header.append("\t\t\treturn -1;");
+		header.append("\t\t}");
+		header.append("");
+		header.append("\t\toffset = src[0] | (src[1] << 8);");
+		header.append("\t\tsrc += 2;");
+		header.append("");
+		header.append("\t\tif(offset == 0 || offset > (uint32_t)(out - dst))");
+		header.append("\t\t{");
+		header.append("\t\t\treturn -1;");
+		header.append("\t\t}");
+		header.append("");
+		header.append("\t\tn = token & 15;");
+		header.append("");
+		header.append("\t\tif(n == 15)");
+		header.append("\t\t{");
+		header.append("\t\t\twhile(src < end && *src == 255)");
+		header.append("\t\t\t{");
+		header.append("\t\t\t\tn += *src++;");
+		header.append("\t\t\t}");
+		header.append("");
+		header.append("\t\t\tif(src >= end)");
+		header.append("\t\t\t{");
+		header.append("\t\t\t\treturn -1;");
+		header.append("\t\t\t}");
+		header.append("");
+		header.append("\t\t\tn += *src++;");
+		header.append("\t\t}");
+		header.append("");
+		header.append("\t\tn += 4;");
+		header.append("");
+		header.append("\t\tif(n > size - (uint32_t)(out - dst))");
+		header.append("\t\t{");
+		header.append("\t\t\treturn -1;");
+		header.append("\t\t}");
+		header.append("");
+		header.append("\t\tfor(ref = out - offset; n > 0; n--)");
+		header.append("\t\t{");
+		header.append("\t\t\t*out++ = *ref++;");
+		header.append("\t\t}");
+		header.append("\t}");
+		header.append("");
+		header.append("\treturn (long)(out - dst);");
+		header.append("}");
+		header.append("");
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Light gray circle two grid rows in diameter moving from left to right along the top of the frame.
+ * Its outline is rasterized into spans once per resolution and only translated afterwards.
+ */
+public class MovingCircle extends Sprite
+{
+	protected static final int RGB_LIGHT_GRAY = UEITPainter.COLOR_LIGHT_GRAY.getRGB();
+	
+	protected int frameWidth;
+	
+	/**
+	 * Spans of the circle at the origin as { row, x1, x2 } triples exclusive of x2.
+	 */
+	protected int[] spans = new int[0];
+	
+	public MovingCircle(double speed)
+	{
+		super(speed);
+	}
+	
+	public void setLayout(UEITLayout layout)
+	{
+		frameWidth = layout.getWidth();
+		
+		w = h = Math.max(layout.getHeight() * 2 / layout.getNumRows(), 1);
+		y = layout.getHeight() / layout.getNumRows();
+		x = -w;
+		
+		spans = UEITLayout.rasterize(false, 0, 0, w, h, UEITPainter.STROKE_1PX);
+		
+		// fillArc(0, 0, w, h) may touch the pixels at x = w and y = h, so the bounds take one more
+		
+		w++;
+		h++;
+	}
+	
+	public void update(long timeNanos)
+	{
+		x = getOffset(timeNanos, frameWidth + w) - w;
+	}
+	
+	public void paint(RasterCanvas c)
+	{
+		for(int i = 0; i < spans.length; i += 3)
+		{
+			c.fillRect(x + spans[i + 1], y + spans[i], spans[i + 2] - spans[i + 1], 1, RGB_LIGHT_GRAY);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One full-screen UEIT window per attached screen. Every window covers its screen at the resolution
+ * of the current display mode and has its own render thread, frame pacer and telemetry,
+ * while segment images are shared through one cache, so screens of the same resolution render them once.
+ * Closing any window closes all of them.
+ */
+public class MultiDisplay
+{
+	protected final List<UEIT> windows = new ArrayList<UEIT>();
+	
+	protected boolean closed;
+	
+	/**
+	 * Opens a window on every screen device; must be called on the event dispatch thread.
+	 *
+	 * @param cmd command line with the window options, as taken by {@link UEIT#createWindow}
+	 * @param targetFrameRate frame rate of all windows, or 0 to run every window at the refresh rate of its screen
+	 * @param telemetryLog log to add the telemetry of every window to, or null
+	 */
+	public static MultiDisplay open(CommandLine cmd, double targetFrameRate, SegmentCache segmentCache, TelemetryCsvWriter telemetryLog)
+	{
+		MultiDisplay group = new MultiDisplay();
+		
+		for(GraphicsDevice device : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices())
+		{
+			double frameRate = targetFrameRate > 0 ? targetFrameRate : getFrameRate(device);
+			
+			UEIT ueit = UEIT.createWindow(cmd, frameRate, device, segmentCache, telemetryLog);
+			ueit.setGroup(group);
+			
+			group.windows.add(ueit);
+			
+			DisplayMode mode = device.getDisplayMode();
+			System.out.println(String.format("%s: %dx%d at %.1f fps", device.getIDstring(), mode.getWidth(), mode.getHeight(), frameRate));
+		}
+		
+		for(UEIT ueit : group.windows)
+		{
+			ueit.setVisible(true);
+		}
+		
+		return group;
+	}
+	
+	/**
+	 * Returns the refresh rate of the device, or 60 if it is not known.
+	 */
+	public static double getFrameRate(GraphicsDevice device)
+	{
+		int refreshRate = VsyncFramePacer.getRefreshRate(device);
+		return refreshRate > 0 ? refreshRate : 60;
+	}
+	
+	public List<UEIT> getWindows()
+	{
+		return windows;
+	}
+	
+	/**
+	 * Stops all windows and exits.
+	 */
+	public void exit()
+	{
+		synchronized(this)
+		{
+			if(closed)
+			{
+				return;
+			}
+			
+			closed = true;
+		}
+		
+		for(UEIT ueit : windows)
+		{
+			ueit.stop();
+		}
+		
+		System.exit(0);
+	}
+}
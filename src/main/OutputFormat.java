@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+
+public enum OutputFormat
+{
+	/**
+	 * C source code: a .h file and a .c file with a 2D const array of uint32_t.
+	 */
+	C
+	{
+		public FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+		{
+			return new CSourceWriter(filename, width, height, fps, frameCount);
+		}
+	},
+	
+	/**
+	 * Raw little-endian ARGB data in a .bin file, with a .h file and an .incbin assembly stub.
+	 */
+	BIN
+	{
+		public FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+		{
+			return new BinaryWriter(filename, width, height, fps, frameCount);
+		}
+		
+		public FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount, FrameConverter converter) throws IOException
+		{
+			return new BinaryWriter(filename, width, height, fps, frameCount, converter);
+		}
+	},
+	
+	/**
+	 * The first 8 frames in full and the rest as dirty-rectangle patches against them, in a .delta file
+	 * with a .h file holding a C decoder and an .incbin assembly stub.
+	 */
+	DELTA
+	{
+		public FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+		{
+			return new DeltaWriter(filename, width, height, fps, frameCount);
+		}
+		
+		public FrameSetReader openReader(String filename) throws IOException
+		{
+			return new DeltaFrameSet(filename + ".delta");
+		}
+	},
+	
+	/**
+	 * Run-length encoded frames in an indexed container, with a C decoder in the .h file.
+	 */
+	RLE
+	{
+		public FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+		{
+			return new CompressedWriter(filename, width, height, fps, frameCount, new RleCodec());
+		}
+		
+		public FrameSetReader openReader(String filename) throws IOException
+		{
+			return new CompressedFrameSet(filename + ".rle");
+		}
+	},
+	
+	/**
+	 * zlib-compressed frames in an indexed container.
+	 */
+	DEFLATE
+	{
+		public FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+		{
+			return new CompressedWriter(filename, width, height, fps, frameCount, new DeflateCodec());
+		}
+		
+		public FrameSetReader openReader(String filename) throws IOException
+		{
+			return new CompressedFrameSet(filename + ".deflate");
+		}
+	},
+	
+	/**
+	 * LZ4 block compressed frames in an indexed container, with a C decoder in the .h file.
+	 */
+	LZ4
+	{
+		public FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount) throws IOException
+		{
+			return new CompressedWriter(filename, width, height, fps, frameCount, new Lz4Codec());
+		}
+		
+		public FrameSetReader openReader(String filename) throws IOException
+		{
+			return new CompressedFrameSet(filename + ".lz4");
+		}
+	};
+	
+	public abstract FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount) throws IOException;
+	
+	/**
+	 * Creates a writer of frames converted into another pixel format, or of ARGB frames if the converter is null.
+	 * Only the binary format supports other pixel formats.
+	 */
+	public FrameSetWriter createWriter(String filename, int width, int height, int fps, int frameCount, FrameConverter converter) throws IOException
+	{
+		if(converter != null)
+		{
+			throw new IOException("The " + name() + " format only supports ARGB pixels");
+		}
+		
+		return createWriter(filename, width, height, fps, frameCount);
+	}
+	
+	/**
+	 * Opens a frame set written in this format for reading, or returns null if the format cannot be read back.
+	 */
+	public FrameSetReader openReader(String filename) throws IOException
+	{
+		return null;
+	}
+	
+	public static OutputFormat fromName(String name)
+	{
+		return valueOf(name.toUpperCase());
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Nanosecond pacing against absolute deadlines: parks the thread until shortly before the deadline
+ * and spins for the remainder. If the loop falls more than a frame behind, the schedule is restarted
+ * from the current time instead of rushing to catch up.
+ */
+public class ParkFramePacer extends FramePacer
+{
+	protected static final long DEFAULT_SPIN_NANOS = 1000000;
+	
+	protected long spinNanos = DEFAULT_SPIN_NANOS;
+	
+	protected long deadline;
+	protected long missedDeadlines;
+	
+	public ParkFramePacer(long periodNanos)
+	{
+		super(periodNanos);
+	}
+	
+	/**
+	 * Sets how long before the deadline parking stops and spinning starts.
+	 */
+	public void setSpinNanos(long spinNanos)
+	{
+		this.spinNanos = Math.max(spinNanos, 0);
+	}
+	
+	public long getMissedDeadlines()
+	{
+		return missedDeadlines;
+	}
+	
+	public void start()
+	{
+		super.start();
+		
+		deadline = prevFrameTime;
+		missedDeadlines = 0;
+	}
+	
+	protected void waitForNextFrame() throws InterruptedException
+	{
+		deadline += periodNanos;
+		
+		long now = System.nanoTime();
+		
+		if(now - deadline > periodNanos)
+		{
+			missedDeadlines++;
+			deadline = now;
+			
+			Thread.yield();
+			return;
+		}
+		
+		waitUntil(deadline);
+	}
+	
+	protected void waitUntil(long deadline) throws InterruptedException
+	{
+		long remaining;
+		
+		while((remaining = deadline - System.nanoTime()) > spinNanos)
+		{
+			LockSupport.parkNanos(remaining - spinNanos);
+			
+			if(Thread.interrupted())
+			{
+				throw new InterruptedException();
+			}
+		}
+		
+		while(deadline - System.nanoTime() > 0)
+		{
+			// Spin for the last stretch, parking is not precise enough
+		}
+	}
+	
+	public String getStatistics()
+	{
+		return super.getStatistics() + String.format(", %d missed deadlines", missedDeadlines);
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of one stage of the generation pipeline: frames processed, time the workers spent busy,
+ * and the depth of the queue the stage takes its input from, sampled whenever a worker takes a frame.
+ */
+public class PipelineStage implements PipelineStageMBean
+{
+	protected final String name;
+	
+	protected volatile int workers;
+	protected volatile BlockingQueue<?> queue;
+	protected volatile long startTime;
+	protected volatile long endTime;
+	
+	protected final AtomicLong frames = new AtomicLong();
+	protected final AtomicLong busyNanos = new AtomicLong();
+	protected final AtomicLong depthSum = new AtomicLong();
+	protected final AtomicLong depthSamples = new AtomicLong();
+	protected volatile int maxDepth;
+	
+	public PipelineStage(String name)
+	{
+		this.name = name;
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Resets the metrics for a new run of the given number of workers taking frames from the queue, which may be null.
+	 */
+	public void start(int workers, BlockingQueue<?> queue)
+	{
+		this.workers = workers;
+		this.queue = queue;
+		
+		frames.set(0);
+		busyNanos.set(0);
+		depthSum.set(0);
+		depthSamples.set(0);
+		maxDepth = 0;
+		
+		startTime = System.nanoTime();
+		endTime = 0;
+	}
+	
+	public void stop()
+	{
+		endTime = System.nanoTime();
+	}
+	
+	/**
+	 * Takes the next frame from the input queue, sampling its depth.
+	 */
+	public <T> T take(BlockingQueue<T> queue) throws InterruptedException
+	{
+		sample(queue);
+		return queue.take();
+	}
+	
+	/**
+	 * Takes the next frame from the input queue if one arrives in time, sampling the depth if it does.
+	 */
+	public <T> T poll(BlockingQueue<T> queue, long timeout, TimeUnit unit) throws InterruptedException
+	{
+		int depth = queue.size();
+		T item = queue.poll(timeout, unit);
+		
+		if(item != null)
+		{
+			sample(depth);
+		}
+		
+		return item;
+	}
+	
+	protected void sample(BlockingQueue<?> queue)
+	{
+		sample(queue.size());
+	}
+	
+	protected void sample(int depth)
+	{
+		depthSum.addAndGet(depth);
+		depthSamples.incrementAndGet();
+		
+		if(depth > maxDepth)
+		{
+			maxDepth = depth;
+		}
+	}
+	
+	/**
+	 * Records a frame processed since the given System.nanoTime().
+	 */
+	public void record(long startNanos)
+	{
+		busyNanos.addAndGet(System.nanoTime() - startNanos);
+		frames.incrementAndGet();
+	}
+	
+	protected long getElapsedNanos()
+	{
+		return (endTime != 0 ? endTime : System.nanoTime()) - startTime;
+	}
+	
+	public int getWorkers()
+	{
+		return workers;
+	}
+	
+	public long getFrames()
+	{
+		return frames.get();
+	}
+	
+	public double getBusyTime()
+	{
+		return busyNanos.get() / 1e6;
+	}
+	
+	/**
+	 * Frames per second over the run so far.
+	 */
+	public double getThroughput()
+	{
+		long elapsed = getElapsedNanos();
+		return elapsed > 0 ? frames.get() * 1e9 / elapsed : 0;
+	}
+	
+	/**
+	 * Fraction of the worker time spent processing frames rather than waiting.
+	 */
+	public double getUtilization()
+	{
+		long elapsed = getElapsedNanos();
+		return elapsed > 0 && workers > 0 ? (double)busyNanos.get() / elapsed / workers : 0;
+	}
+	
+	public int getQueueDepth()
+	{
+		BlockingQueue<?> queue = this.queue;
+		return queue != null ? queue.size() : 0;
+	}
+	
+	public int getMaxQueueDepth()
+	{
+		return maxDepth;
+	}
+	
+	public double getMeanQueueDepth()
+	{
+		long samples = depthSamples.get();
+		return samples > 0 ? (double)depthSum.get() / samples : 0;
+	}
+	
+	public int getQueueCapacity()
+	{
+		BlockingQueue<?> queue = this.queue;
+		return queue != null ? queue.size() + queue.remainingCapacity() : 0;
+	}
+	
+	/**
+	 * Registers the stage in the platform MBean server as main:type=PipelineStage,stage="name".
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("main:type=PipelineStage,stage=" + ObjectName.quote(name));
+			
+			if(!server.isRegistered(objectName))
+			{
+				server.registerMBean(this, objectName);
+			}
+		}
+		catch(JMException ex)
+		{
+			System.err.println(ex.toString());
+		}
+	}
+	
+	public String getStatistics()
+	{
+		return String.format("%-7s %d workers, %d frames, %.1f fps, utilization %.0f%%, queue mean %.1f max %d of %d",
+							 name + ":", workers, frames.get(), getThroughput(), getUtilization() * 100, getMeanQueueDepth(), maxDepth, getQueueCapacity());
+	}
+}
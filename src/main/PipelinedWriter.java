@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+
+/**
+ * Frame set writer whose work per frame splits into encoding, which can run for several frames at once
+ * on encoders of their own, and writing the encoded frames, which happens in frame order on one thread.
+ */
+public interface PipelinedWriter extends FrameSetWriter
+{
+	/**
+	 * Encoding of frames for this writer, used by one thread at a time.
+	 */
+	public interface Encoder
+	{
+		public void encode(FrameBuffer frame, EncodedFrame dst) throws IOException;
+	}
+	
+	public Encoder createEncoder() throws IOException;
+	
+	public void writeEncoded(EncodedFrame frame) throws IOException;
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Direct access to the pixels of an integer RGB raster.
+ * Fills and axis-aligned lines are written as spans and cover exactly the same pixels
+ * as the corresponding non-antialiased Graphics2D operations.
+ * A raster may hold only a tile of a larger canvas: drawing coordinates are then canvas coordinates,
+ * translated by the origin of the tile and clipped to it.
+ */
+public class RasterCanvas
+{
+	protected final int[] data;
+	protected final int width;
+	protected final int height;
+	
+	protected final int originX;
+	protected final int originY;
+	
+	public RasterCanvas(int[] data, int width, int height)
+	{
+		this(data, width, height, 0, 0);
+	}
+	
+	/**
+	 * Wraps a tile of a larger canvas whose top left corner is at (originX, originY) of the canvas.
+	 */
+	public RasterCanvas(int[] data, int width, int height, int originX, int originY)
+	{
+		this.data = data;
+		this.width = width;
+		this.height = height;
+		this.originX = originX;
+		this.originY = originY;
+	}
+	
+	public RasterCanvas(BufferedImage image)
+	{
+		this(((DataBufferInt)image.getRaster().getDataBuffer()).getData(), image.getWidth(), image.getHeight());
+	}
+	
+	public static RasterCanvas[] wrap(BufferedImage[] images)
+	{
+		RasterCanvas[] canvases = new RasterCanvas[images.length];
+		
+		for(int i = 0; i < images.length; i++)
+		{
+			canvases[i] = new RasterCanvas(images[i]);
+		}
+		
+		return canvases;
+	}
+	
+	public int[] getData()
+	{
+		return data;
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	public int getOriginX()
+	{
+		return originX;
+	}
+	
+	public int getOriginY()
+	{
+		return originY;
+	}
+	
+	/**
+	 * Same as Graphics.fillRect(x, y, w, h).
+	 */
+	public void fillRect(int x, int y, int w, int h, int rgb)
+	{
+		x -= originX;
+		y -= originY;
+		
+		int x1 = Math.max(x, 0);
+		int y1 = Math.max(y, 0);
+		
+		int x2 = Math.min(x + w, width);
+		int y2 = Math.min(y + h, height);
+		
+		if(x1 >= x2)
+		{
+			return;
+		}
+		
+		for(int i = y1; i < y2; i++)
+		{
+			Arrays.fill(data, i * width + x1, i * width + x2, rgb);
+		}
+	}
+	
+	/**
+	 * Same as Graphics.drawLine(x1, y1, x2, y2) for horizontal and vertical lines with a 1 px stroke:
+	 * both end points are included.
+	 */
+	public void drawLine(int x1, int y1, int x2, int y2, int rgb)
+	{
+		fillRect(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1) + 1, Math.abs(y2 - y1) + 1, rgb);
+	}
+	
+	/**
+	 * Same as Graphics.drawLine(x1, y1, x2, y2) for horizontal and vertical lines with a 2 px stroke:
+	 * the stroke extends one pixel up and to the left of the line.
+	 */
+	public void drawWideLine(int x1, int y1, int x2, int y2, int rgb)
+	{
+		fillRect(Math.min(x1, x2) - 1, Math.min(y1, y2) - 1, Math.abs(x2 - x1) + 2, Math.abs(y2 - y1) + 2, rgb);
+	}
+	
+	/**
+	 * Fills a column span with one color per column, as a sequence of 1 px vertical lines from y to y + h would.
+	 */
+	public void fillColumns(int x, int y, int h, int[] colors, int count)
+	{
+		x -= originX;
+		y -= originY;
+		
+		int y1 = Math.max(y, 0);
+		int y2 = Math.min(y + h + 1, height);
+		
+		int x1 = Math.max(x, 0);
+		int x2 = Math.min(x + count, width);
+		
+		if(x1 >= x2 || y1 >= y2)
+		{
+			return;
+		}
+		
+		int offset = y1 * width;
+		
+		System.arraycopy(colors, x1 - x, data, offset + x1, x2 - x1);
+		
+		for(int i = y1 + 1; i < y2; i++)
+		{
+			System.arraycopy(data, offset + x1, data, i * width + x1, x2 - x1);
+		}
+	}
+	
+	/**
+	 * Draws a pack of vertical ticks from y to y + h: lines of the given thickness, every second thickness step,
+	 * the first one at x and the last one starting before x + w.
+	 */
+	public void drawTicks(int x, int y, int w, int h, int thickness, int rgb)
+	{
+		x -= originX;
+		y -= originY;
+		
+		int y1 = Math.max(y, 0);
+		int y2 = Math.min(y + h + 1, height);
+		
+		for(int row = y1; row < y2; row++)
+		{
+			int offset = row * width;
+			
+			for(int i = 0; i < w; i += thickness * 2)
+			{
+				int from = Math.max(x + i, 0);
+				int to = Math.min(x + i + thickness, width);
+				
+				if(from < to)
+				{
+					Arrays.fill(data, offset + from, offset + to, rgb);
+				}
+			}
+		}
+	}
+}
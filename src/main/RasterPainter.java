@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Rendering backend for the static UEIT layers which writes directly into the raster of a TYPE_INT_RGB image.
+ * The primitives of the layout become span fills: circles and diagonal lines through the spans they were
+ * rasterized into once per resolution. The result is pixel-exact with UEITPainter.
+ */
+public class RasterPainter extends UEITPainter
+{
+	protected static final int RGB_LIGHT_GRAY	= COLOR_LIGHT_GRAY.getRGB();
+	
+	/**
+	 * Renders the layers without a highlighted segment once, then derives each segment image from a copy of it:
+	 * the segment blocks are light gray and only light gray grid lines cross them.
+	 */
+	public BufferedImage[] renderSegments(int width, int height)
+	{
+		UEITLayout layout = UEITLayout.get(width, height);
+		
+		BufferedImage base = renderSegment(width, height, -1);
+		int[] data = new RasterCanvas(base).getData();
+		
+		BufferedImage[] segments = new BufferedImage[8];
+		
+		for(int i = 0; i < segments.length; i++)
+		{
+			BufferedImage image = i < segments.length - 1 ? new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB) : base;
+			RasterCanvas c = new RasterCanvas(image);
+			
+			if(image != base)
+			{
+				System.arraycopy(data, 0, c.getData(), 0, data.length);
+			}
+			
+			paintSegment(c, layout, i);
+			segments[i] = image;
+		}
+		
+		return segments;
+	}
+	
+	public BufferedImage renderSegment(int width, int height, int segment)
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		paintUEIT(new RasterCanvas(image), UEITLayout.get(width, height), segment);
+		
+		return image;
+	}
+	
+	/**
+	 * Paints the static layers with the given segment highlighted, same as paintUEIT(g, width, height, segment, null, null).
+	 * The canvas may be any tile of the frame; everything outside of it is clipped.
+	 */
+	public void paintUEIT(RasterCanvas c, UEITLayout layout, int segment)
+	{
+		int[] primitives = layout.primitives;
+		
+		for(int i = 0; i < primitives.length; i += UEITLayout.STRIDE)
+		{
+			int a = primitives[i + 1];
+			int b = primitives[i + 2];
+			int w = primitives[i + 3];
+			int h = primitives[i + 4];
+			int rgb = primitives[i + 5];
+			
+			switch(primitives[i])
+			{
+				case UEITLayout.FILL:
+					c.fillRect(a, b, w, h, rgb);
+					break;
+					
+				case UEITLayout.LINE:
+					c.drawLine(a, b, w, h, rgb);
+					break;
+					
+				case UEITLayout.WIDE_LINE:
+					c.drawWideLine(a, b, w, h, rgb);
+					break;
+					
+				case UEITLayout.ARC:
+				case UEITLayout.DIAGONAL:
+					fillSpans(c, layout.data[primitives[i + 7]], rgb);
+					break;
+					
+				case UEITLayout.RAMP:
+					c.fillColumns(a, b, h, layout.data[primitives[i + 7]], w);
+					break;
+					
+				case UEITLayout.TICKS:
+					c.drawTicks(a, b, w, h, primitives[i + 7], rgb);
+					break;
+					
+				case UEITLayout.SEGMENT:
+					paintSegment(c, layout, segment);
+					break;
+			}
+		}
+	}
+	
+	/**
+	 * Highlights the given segment in the top and bottom rectangles within the big circle.
+	 */
+	public void paintSegment(RasterCanvas c, UEITLayout layout, int segment)
+	{
+		if(segment >= 0 && segment < 8)
+		{
+			for(int i = (segment * 2) * 4; i < (segment * 2 + 2) * 4; i += 4)
+			{
+				c.fillRect(layout.segments[i], layout.segments[i + 1], layout.segments[i + 2], layout.segments[i + 3], RGB_LIGHT_GRAY);
+			}
+		}
+	}
+	
+	/**
+	 * Fills the rows of { row, x1, x2 } span triples which fall within the canvas.
+	 */
+	protected static void fillSpans(RasterCanvas c, int[] spans, int rgb)
+	{
+		int y1 = c.getOriginY();
+		int y2 = y1 + c.getHeight();
+		
+		for(int i = 0; i < spans.length; i += 3)
+		{
+			if(spans[i] >= y1 && spans[i] < y2)
+			{
+				c.fillRect(spans[i + 1], spans[i], spans[i + 2] - spans[i + 1], 1, rgb);
+			}
+		}
+	}
+}
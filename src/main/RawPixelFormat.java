@@ -0,0 +1,319 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Byte layouts of raw video frames, named after the matching ffmpeg pixel formats.
+ * Frames are converted from ARGB rasters a band of whole rows at a time, so that bands can be converted in parallel.
+ * The per-pixel loops of packed RGB formats and of luma are {@link RowKernels}.
+ * Formats with chroma subsampling take chroma from the average of each 2 (4:2:2) or 2x2 (4:2:0) pixels,
+ * repeating the last column or row of frames of odd size; the matrix only matters for YCbCr formats.
+ */
+public enum RawPixelFormat
+{
+	/**
+	 * Packed 8-bit R, G, B.
+	 */
+	RGB24(3)
+	{
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			RowKernels.get().toRGB24(argb, offset, width * rowCount, dst, row * getRowSize(width));
+		}
+	},
+	
+	/**
+	 * Packed 8-bit B, G, R, A, i.e. little-endian ARGB words; alpha is always opaque.
+	 */
+	BGRA(4)
+	{
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			RowKernels.get().toBGRA(argb, offset, width * rowCount, dst, row * getRowSize(width));
+		}
+	},
+	
+	/**
+	 * Little-endian 16-bit words of 5-bit R, 6-bit G and 5-bit B, truncated.
+	 */
+	RGB565LE(2)
+	{
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			RowKernels.get().toRGB565LE(argb, offset, width * rowCount, dst, row * getRowSize(width));
+		}
+	},
+	
+	/**
+	 * Little-endian 32-bit words of 10-bit R, G, B in bits 29..0, scaled from 8 bits with rounding;
+	 * the two padding bits are set.
+	 */
+	X2RGB10LE(4)
+	{
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			RowKernels.get().toX2RGB10LE(argb, offset, width * rowCount, dst, row * getRowSize(width));
+		}
+	},
+	
+	/**
+	 * Packed 8-bit YCbCr 4:2:2 as Y0, Cb, Y1, Cr.
+	 */
+	YUYV422(2)
+	{
+		public int getRowSize(int width)
+		{
+			return (width + 1) / 2 * 4;
+		}
+		
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			convert422(argb, offset, width, rowCount, matrix, 8, dst, row * getRowSize(width), 0, 1, 2, 3);
+		}
+	},
+	
+	/**
+	 * Packed 8-bit YCbCr 4:2:2 as Cb, Y0, Cr, Y1.
+	 */
+	UYVY422(2)
+	{
+		public int getRowSize(int width)
+		{
+			return (width + 1) / 2 * 4;
+		}
+		
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			convert422(argb, offset, width, rowCount, matrix, 8, dst, row * getRowSize(width), 1, 0, 3, 2);
+		}
+	},
+	
+	/**
+	 * Packed 10-bit YCbCr 4:2:2 as little-endian 16-bit Y0, Cb, Y1, Cr with the samples in the upper 10 bits.
+	 */
+	Y210LE(4)
+	{
+		public int getRowSize(int width)
+		{
+			return (width + 1) / 2 * 8;
+		}
+		
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			convert422(argb, offset, width, rowCount, matrix, 10, dst, row * getRowSize(width), 0, 1, 2, 3);
+		}
+	},
+	
+	/**
+	 * Planar 8-bit YCbCr 4:2:0: the Y plane followed by a plane of interleaved Cb, Cr.
+	 */
+	NV12(1)
+	{
+		public int getFrameSize(int width, int height)
+		{
+			return width * height + (height + 1) / 2 * ((width + 1) / 2 * 2);
+		}
+		
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			convert420(argb, offset, width, row, rowCount, height, matrix, 8, dst);
+		}
+	},
+	
+	/**
+	 * Planar 10-bit YCbCr 4:2:0 laid out as NV12 with little-endian 16-bit samples in the upper 10 bits.
+	 */
+	P010LE(2)
+	{
+		public int getFrameSize(int width, int height)
+		{
+			return width * height * 2 + (height + 1) / 2 * ((width + 1) / 2 * 4);
+		}
+		
+		public void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst)
+		{
+			convert420(argb, offset, width, row, rowCount, height, matrix, 10, dst);
+		}
+	};
+	
+	protected final int bytesPerPixel;
+	
+	private RawPixelFormat(int bytesPerPixel)
+	{
+		this.bytesPerPixel = bytesPerPixel;
+	}
+	
+	/**
+	 * Size of a row in bytes; for planar formats, of a row of the Y plane.
+	 */
+	public int getRowSize(int width)
+	{
+		return width * bytesPerPixel;
+	}
+	
+	public int getFrameSize(int width, int height)
+	{
+		return getRowSize(width) * height;
+	}
+	
+	/**
+	 * Planar formats keep the chroma of a row apart from its luma, so a band of rows is not contiguous in the frame.
+	 */
+	public boolean isPlanar()
+	{
+		return this == NV12 || this == P010LE;
+	}
+	
+	public boolean isYCbCr()
+	{
+		return this == YUYV422 || this == UYVY422 || this == Y210LE || isPlanar();
+	}
+	
+	/**
+	 * Converts a whole frame into dst, which holds at least {@link #getFrameSize} bytes.
+	 */
+	public void convert(int[] argb, int width, int height, YCbCrMatrix matrix, byte[] dst)
+	{
+		convertRows(argb, 0, width, 0, height, height, matrix, dst);
+	}
+	
+	/**
+	 * Converts rowCount rows of a width x height frame, starting with the given row, whose pixels start at argb[offset],
+	 * into their place in dst, which is laid out as a whole frame. For formats with vertical chroma subsampling
+	 * the first row must be even and so must the row count, unless the rows reach the bottom of the frame.
+	 * For packed formats passing 0 as the row places the rows at the beginning of dst.
+	 */
+	public abstract void convertRows(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, byte[] dst);
+	
+	public int getBytesPerPixel()
+	{
+		return bytesPerPixel;
+	}
+	
+	public String getName()
+	{
+		return name().toLowerCase();
+	}
+	
+	public static RawPixelFormat fromName(String name)
+	{
+		return valueOf(name.toUpperCase());
+	}
+	
+	/**
+	 * Stores an 8-bit sample as a byte, or a 10-bit one as a little-endian 16-bit word with the sample in the upper bits.
+	 */
+	protected static void store(byte[] dst, int index, long value, int bits)
+	{
+		if(bits == 8)
+		{
+			dst[index] = (byte)value;
+		}
+		else
+		{
+			int sample = (int)value << (16 - bits);
+			
+			dst[index] = (byte)sample;
+			dst[index + 1] = (byte)(sample >> 8);
+		}
+	}
+	
+	/**
+	 * Converts rows into packed 4:2:2 samples, writing each pair of pixels into 4 samples at the given sample positions.
+	 */
+	protected static void convert422(int[] argb, int offset, int width, int rowCount, YCbCrMatrix matrix, int bits, byte[] dst, int dstOffset, int y0, int cb, int y1, int cr)
+	{
+		long[] luma = matrix.getLuma(bits);
+		long[] blue = matrix.getCb(2, bits);
+		long[] red = matrix.getCr(2, bits);
+		
+		long yr = luma[0], yg = luma[1], yb = luma[2], yo = luma[3];
+		long br = blue[0], bg = blue[1], bb = blue[2], bo = blue[3];
+		long rr = red[0], rg = red[1], rb = red[2], ro = red[3];
+		
+		int sample = bits == 8 ? 1 : 2;
+		int rowSize = (width + 1) / 2 * 4 * sample;
+		
+		y0 *= sample;
+		cb *= sample;
+		y1 *= sample;
+		cr *= sample;
+		
+		for(int row = 0; row < rowCount; row++)
+		{
+			int i = offset + row * width;
+			int j = dstOffset + row * rowSize;
+			
+			for(int x = 0; x < width; x += 2, i += 2, j += 4 * sample)
+			{
+				int p0 = argb[i];
+				int p1 = x + 1 < width ? argb[i + 1] : p0;
+				
+				int r0 = (p0 >> 16) & 0xFF, g0 = (p0 >> 8) & 0xFF, b0 = p0 & 0xFF;
+				int r1 = (p1 >> 16) & 0xFF, g1 = (p1 >> 8) & 0xFF, b1 = p1 & 0xFF;
+				
+				int r = r0 + r1, g = g0 + g1, b = b0 + b1;
+				
+				store(dst, j + y0, (yr * r0 + yg * g0 + yb * b0 + yo) >> YCbCrMatrix.SHIFT, bits);
+				store(dst, j + y1, (yr * r1 + yg * g1 + yb * b1 + yo) >> YCbCrMatrix.SHIFT, bits);
+				store(dst, j + cb, (br * r + bg * g + bb * b + bo) >> YCbCrMatrix.SHIFT, bits);
+				store(dst, j + cr, (rr * r + rg * g + rb * b + ro) >> YCbCrMatrix.SHIFT, bits);
+			}
+		}
+	}
+	
+	/**
+	 * Converts rows into a Y plane and a plane of interleaved Cb, Cr at half the resolution in both directions.
+	 */
+	protected static void convert420(int[] argb, int offset, int width, int row, int rowCount, int height, YCbCrMatrix matrix, int bits, byte[] dst)
+	{
+		long[] blue = matrix.getCb(4, bits);
+		long[] red = matrix.getCr(4, bits);
+		
+		long br = blue[0], bg = blue[1], bb = blue[2], bo = blue[3];
+		long rr = red[0], rg = red[1], rb = red[2], ro = red[3];
+		
+		int sample = bits == 8 ? 1 : 2;
+		
+		RowKernels.get().toLuma(argb, offset, width * rowCount, matrix, bits, dst, row * width * sample);
+		
+		int chromaRowSize = (width + 1) / 2 * 2 * sample;
+		int chromaOffset = width * height * sample + row / 2 * chromaRowSize;
+		
+		for(int y = 0; y < rowCount; y += 2)
+		{
+			int top = offset + y * width;
+			int bottom = y + 1 < rowCount ? top + width : top;
+			int j = chromaOffset + y / 2 * chromaRowSize;
+			
+			for(int x = 0; x < width; x += 2, j += 2 * sample)
+			{
+				int right = x + 1 < width ? 1 : 0;
+				
+				int p0 = argb[top + x], p1 = argb[top + x + right];
+				int p2 = argb[bottom + x], p3 = argb[bottom + x + right];
+				
+				int r = ((p0 >> 16) & 0xFF) + ((p1 >> 16) & 0xFF) + ((p2 >> 16) & 0xFF) + ((p3 >> 16) & 0xFF);
+				int g = ((p0 >> 8) & 0xFF) + ((p1 >> 8) & 0xFF) + ((p2 >> 8) & 0xFF) + ((p3 >> 8) & 0xFF);
+				int b = (p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF);
+				
+				store(dst, j, (br * r + bg * g + bb * b + bo) >> YCbCrMatrix.SHIFT, bits);
+				store(dst, j + sample, (rr * r + rg * g + rb * b + ro) >> YCbCrMatrix.SHIFT, bits);
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes frames as headerless raw video, e.g. for ffmpeg -f rawvideo or GStreamer fdsrc.
+ * The target is standard output or any file, including a named pipe. Whole frames are converted
+ * into the pixel format in parallel bands; strips of packed formats are converted and written as they come,
+ * while planar formats collect the strips of a frame first.
+ */
+public class RawVideoSink implements StripWriter
+{
+	protected final WritableByteChannel channel;
+	protected final FrameConverter converter;
+	
+	protected final int width;
+	protected final int height;
+	protected int[] strip;
+	protected int frameRow;
+	
+	protected byte[] frame;
+	protected ByteBuffer buffer;
+	
+	public RawVideoSink(WritableByteChannel channel, int width, int height, FrameConverter converter)
+	{
+		this.channel = channel;
+		this.converter = converter;
+		this.width = width;
+		this.height = height;
+	}
+	
+	/**
+	 * Opens a sink on standard output for "-" or an empty name, or on the named file or pipe otherwise.
+	 */
+	public static RawVideoSink open(String target, int width, int height, FrameConverter converter) throws IOException
+	{
+		FileOutputStream out;
+		
+		if(target.isEmpty() || target.equals("-"))
+		{
+			out = new FileOutputStream(FileDescriptor.out);
+		}
+		else
+		{
+			out = new FileOutputStream(target);
+		}
+		
+		return new RawVideoSink(out.getChannel(), width, height, converter);
+	}
+	
+	public RawPixelFormat getFormat()
+	{
+		return converter.getFormat();
+	}
+	
+	public void writeFrame(int[] argb) throws IOException
+	{
+		converter.convert(argb, width, height, getBuffer(converter.getFrameSize(width, height)));
+		write(converter.getFrameSize(width, height));
+	}
+	
+	public void writeFrame(FrameBuffer frame) throws IOException
+	{
+		converter.convert(frame, getBuffer(converter.getFrameSize(width, height)));
+		write(converter.getFrameSize(width, height));
+	}
+	
+	public void writeRows(int[] argb, int offset, int rowCount) throws IOException
+	{
+		if(converter.getFormat().isPlanar())
+		{
+			converter.convertRows(argb, offset, width, frameRow, rowCount, height, getBuffer(converter.getFrameSize(width, height)));
+			frameRow += rowCount;
+			
+			if(frameRow >= height)
+			{
+				write(converter.getFrameSize(width, height));
+				frameRow = 0;
+			}
+		}
+		else
+		{
+			int size = converter.getFormat().getRowSize(width) * rowCount;
+			
+			converter.convertRows(argb, offset, width, rowCount, getBuffer(size));
+			write(size);
+		}
+	}
+	
+	/**
+	 * Returns a buffer that grows to the largest frame or strip written.
+	 */
+	protected byte[] getBuffer(int size)
+	{
+		if(frame == null || frame.length < size)
+		{
+			frame = new byte[size];
+			buffer = ByteBuffer.wrap(frame);
+		}
+		
+		return frame;
+	}
+	
+	protected void write(int size) throws IOException
+	{
+		buffer.clear();
+		buffer.limit(size);
+		
+		while(buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+	
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
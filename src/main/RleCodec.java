@@ -0,0 +1,223 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+
+/**
+ * Run-length encoding of ARGB pixels, row by row. Each packet starts with a little-endian uint16_t header:
+ * with the top bit set it is a run of (header &amp; 0x7FFF) + 1 copies of the following pixel,
+ * otherwise (header + 1) literal pixels follow. Pixels are little-endian uint32_t and packets never cross rows,
+ * which suits the flat fills and color bars of the pattern.
+ */
+public class RleCodec implements FrameCodec
+{
+	public static final int ID = 1;
+	
+	protected static final int MAX_PACKET = 0x8000;
+	
+	/**
+	 * Pixels repeated fewer times than this are kept in literal packets.
+	 */
+	protected static final int MIN_RUN = 3;
+	
+	public int getId()
+	{
+		return ID;
+	}
+	
+	public String getName()
+	{
+		return "rle";
+	}
+	
+	public int getMaxEncodedLength(int width, int height)
+	{
+		return height * (width * 4 + (width / MAX_PACKET + 1) * 2);
+	}
+	
+	public int encode(int[] argb, byte[] raw, int width, int height, byte[] dst)
+	{
+		int op = 0;
+		
+		for(int y = 0; y < height; y++)
+		{
+			int end = (y + 1) * width;
+			int literal = y * width;
+			int i = literal;
+			
+			while(i < end)
+			{
+				int pixel = argb[i];
+				int run = 1;
+				
+				while(i + run < end && run < MAX_PACKET && argb[i + run] == pixel)
+				{
+					run++;
+				}
+				
+				if(run >= MIN_RUN)
+				{
+					op = writeLiterals(argb, literal, i, dst, op);
+					
+					dst[op++] = (byte)(run - 1);
+					dst[op++] = (byte)(((run - 1) >> 8) | 0x80);
+					op = writePixel(pixel, dst, op);
+					
+					i += run;
+					literal = i;
+				}
+				else
+				{
+					i += run;
+				}
+			}
+			
+			op = writeLiterals(argb, literal, end, dst, op);
+		}
+		
+		return op;
+	}
+	
+	protected int writeLiterals(int[] argb, int from, int to, byte[] dst, int op)
+	{
+		while(from < to)
+		{
+			int count = Math.min(to - from, MAX_PACKET);
+			
+			dst[op++] = (byte)(count - 1);
+			dst[op++] = (byte)((count - 1) >> 8);
+			
+			for(int i = from; i < from + count; i++)
+			{
+				op = writePixel(argb[i], dst, op);
+			}
+			
+			from += count;
+		}
+		
+		return op;
+	}
+	
+	protected static int writePixel(int pixel, byte[] dst, int op)
+	{
+		dst[op] = (byte)pixel;
+		dst[op + 1] = (byte)(pixel >> 8);
+		dst[op + 2] = (byte)(pixel >> 16);
+		dst[op + 3] = (byte)(pixel >> 24);
+		
+		return op + 4;
+	}
+	
+	protected static int readPixel(byte[] src, int ip)
+	{
+		return (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8 | (src[ip + 2] & 0xFF) << 16 | src[ip + 3] << 24;
+	}
+	
+	public void decode(byte[] src, int length, int width, int height, byte[] raw, int[] argb) throws IOException
+	{
+		int ip = 0;
+		int op = 0;
+		int count = width * height;
+		
+		try
+		{
+			while(op < count)
+			{
+				int header = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+				int n = (header & 0x7FFF) + 1;
+				
+				ip += 2;
+				
+				if(op + n > count)
+				{
+					throw new IOException("RLE packet overruns the frame");
+				}
+				
+				if((header & 0x8000) != 0)
+				{
+					int pixel = readPixel(src, ip);
+					ip += 4;
+					
+					for(int end = op + n; op < end; op++)
+					{
+						argb[op] = pixel;
+					}
+				}
+				else
+				{
+					for(int end = op + n; op < end; op++, ip += 4)
+					{
+						argb[op] = readPixel(src, ip);
+					}
+				}
+			}
+		}
+		catch(ArrayIndexOutOfBoundsException ex)
+		{
+			throw new IOException("Truncated RLE frame");
+		}
+		
+		if(ip != length)
+		{
+			throw new IOException("RLE frame length mismatch");
+		}
+	}
+	
+	public void appendDecoder(CHeader header)
+	{
+		header.append("/*");
+		header.append(" * Frames are run-length encoded: packets of a little-endian uint16_t header, either a run of (header & 0x7FFF) + 1");
+		header.append(" * copies of one pixel if the top bit is set, or header + 1 literal pixels. Pixels are little-endian ARGB.");
+		header.append(" * Decodes count pixels and returns the end of the encoded data.");
+		header.append(" */");
+		header.append("static inline const uint8_t *ueit_rle_decode(const uint8_t *src, uint32_t *dst, uint32_t count)");
+		header.append("{");
+		header.append("\tuint32_t i = 0;");
+		header.append("");
+		header.append("\twhile(i < count)");
+		header.append("\t{");
+		header.append("\t\tuint32_t packet = src[0] | (src[1] << 8);");
+		header.append("\t\tuint32_t n = (packet & 0x7FFF) + 1;");
+		header.append("");
+		header.append("\t\tsrc += 2;");
+		header.append("");
+		header.append("\t\tif(packet & 0x8000)");
+		header.append("\t\t{");
+		header.append("\t\t\tuint32_t pixel = src[0] | (src[1] << 8) | ((uint32_t)src[2] << 16) | ((uint32_t)src[3] << 24);");
+		header.append("\t\t\tsrc += 4;");
+		header.append("");
+		header.append("\t\t\twhile(n--)");
+		header.append("\t\t\t{");
+		header.append("\t\t\t\tdst[i++] = pixel;");
+		header.append("\t\t\t}");
+		header.append("\t\t}");
+		header.append("\t\telse");
+		header.append("\t\t{");
+		header.append("\t\t\twhile(n--)");
+		header.append("\t\t\t{");
+		header.append("\t\t\t\tdst[i++] = src[0] | (src[1] << 8) | ((uint32_t)src[2] << 16) | ((uint32_t)src[3] << 24);");
+		header.append("\t\t\t\tsrc += 4;");
+		header.append("\t\t\t}");
+		header.append("\t\t}");
+		header.append("\t}");
+		header.append("");
+		header.append("\treturn src;");
+		header.append("}");
+		header.append("");
+	}
+}
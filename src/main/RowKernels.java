@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Per-row pixel loops of painting and pixel format conversion: ramps, packed RGB layouts and luma.
+ * This class runs them as scalar loops. On Java 16 and later, with the jdk.incubator.vector module added
+ * (java --add-modules jdk.incubator.vector), {@link #get()} returns an implementation on SIMD vectors
+ * of the preferred size of the CPU, which gives exactly the same results; -Dueit.vector=false keeps the scalar one.
+ */
+public class RowKernels
+{
+	/**
+	 * 8-bit values scaled to 10 bits, rounded.
+	 */
+	protected static final int[] TEN_BITS = new int[256];
+	
+	static
+	{
+		for(int i = 0; i < TEN_BITS.length; i++)
+		{
+			TEN_BITS[i] = (i * 1023 + 127) / 255;
+		}
+	}
+	
+	protected static final RowKernels SCALAR = new RowKernels();
+	protected static final RowKernels SELECTED = load();
+	
+	/**
+	 * Returns the fastest kernels available in this JVM.
+	 */
+	public static RowKernels get()
+	{
+		return SELECTED;
+	}
+	
+	public static RowKernels getScalar()
+	{
+		return SCALAR;
+	}
+	
+	/**
+	 * The vector kernels are compiled separately for Java 16 and later and only loaded by name,
+	 * so that a missing module, an older JVM or a CPU without usable vectors leaves the scalar kernels in place.
+	 */
+	protected static RowKernels load()
+	{
+		if(Boolean.parseBoolean(System.getProperty("ueit.vector", "true")))
+		{
+			try
+			{
+				return (RowKernels)Class.forName("main.VectorRowKernels").getConstructor().newInstance();
+			}
+			catch(Throwable ex)
+			{
+			}
+		}
+		
+		return SCALAR;
+	}
+	
+	public String getName()
+	{
+		return "scalar";
+	}
+	
+	/**
+	 * Fills dst with a horizontal ramp of count pixels: channels in the rising mask go from 0 to 255
+	 * and channels in the falling mask from 255 to 0, rounded as new Color(float, float, float) would.
+	 */
+	public void ramp(int[] dst, int count, int rising, int falling)
+	{
+		for(int i = 0; i < count; i++)
+		{
+			float v = (float)i / (float)(count - 1);
+			dst[i] = 0xFF000000 | (quantize(v) * 0x010101 & rising) | (quantize((float)1.0 - v) * 0x010101 & falling);
+		}
+	}
+	
+	protected static int quantize(float v)
+	{
+		return (int)(v * 255 + 0.5);
+	}
+	
+	/**
+	 * Converts count ARGB pixels into packed 8-bit R, G, B.
+	 */
+	public void toRGB24(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		for(int i = offset, j = dstOffset; i < offset + count; i++, j += 3)
+		{
+			int pixel = argb[i];
+			
+			dst[j] = (byte)(pixel >> 16);
+			dst[j + 1] = (byte)(pixel >> 8);
+			dst[j + 2] = (byte)pixel;
+		}
+	}
+	
+	/**
+	 * Converts count ARGB pixels into packed 8-bit B, G, R and opaque alpha.
+	 */
+	public void toBGRA(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		for(int i = offset, j = dstOffset; i < offset + count; i++, j += 4)
+		{
+			int pixel = argb[i];
+			
+			dst[j] = (byte)pixel;
+			dst[j + 1] = (byte)(pixel >> 8);
+			dst[j + 2] = (byte)(pixel >> 16);
+			dst[j + 3] = (byte)0xFF;
+		}
+	}
+	
+	/**
+	 * Converts count ARGB pixels into little-endian 16-bit words of truncated 5-bit R, 6-bit G and 5-bit B.
+	 */
+	public void toRGB565LE(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		for(int i = offset, j = dstOffset; i < offset + count; i++, j += 2)
+		{
+			int pixel = argb[i];
+			int rgb565 = ((pixel >> 8) & 0xF800) | ((pixel >> 5) & 0x07E0) | ((pixel >> 3) & 0x001F);
+			
+			dst[j] = (byte)rgb565;
+			dst[j + 1] = (byte)(rgb565 >> 8);
+		}
+	}
+	
+	/**
+	 * Converts count ARGB pixels into little-endian 32-bit words of 10-bit R, G, B with the padding bits set.
+	 * Channels are scaled with rounding, as (c * 1023 + 127) / 255.
+	 */
+	public void toX2RGB10LE(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		for(int i = offset, j = dstOffset; i < offset + count; i++, j += 4)
+		{
+			int pixel = argb[i];
+			int word = 0xC0000000 | (TEN_BITS[(pixel >> 16) & 0xFF] << 20) | (TEN_BITS[(pixel >> 8) & 0xFF] << 10) | TEN_BITS[pixel & 0xFF];
+			
+			dst[j] = (byte)word;
+			dst[j + 1] = (byte)(word >> 8);
+			dst[j + 2] = (byte)(word >> 16);
+			dst[j + 3] = (byte)(word >> 24);
+		}
+	}
+	
+	/**
+	 * Converts count ARGB pixels into limited-range Y samples of the given bit depth:
+	 * bytes at 8 bits, little-endian 16-bit words with the sample in the upper bits at 10 bits.
+	 */
+	public void toLuma(int[] argb, int offset, int count, YCbCrMatrix matrix, int bits, byte[] dst, int dstOffset)
+	{
+		long[] luma = matrix.getLuma(bits);
+		long yr = luma[0], yg = luma[1], yb = luma[2], yo = luma[3];
+		
+		int sample = bits == 8 ? 1 : 2;
+		
+		for(int i = offset, j = dstOffset; i < offset + count; i++, j += sample)
+		{
+			int pixel = argb[i];
+			int r = (pixel >> 16) & 0xFF, g = (pixel >> 8) & 0xFF, b = pixel & 0xFF;
+			
+			RawPixelFormat.store(dst, j, (yr * r + yg * g + yb * b + yo) >> YCbCrMatrix.SHIFT, bits);
+		}
+	}
+}
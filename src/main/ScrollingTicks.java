@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Band of 2 px ticks on black scrolling from left to right in the grid row between the bottom small circles.
+ * The ticks move while the band stays in place.
+ */
+public class ScrollingTicks extends Sprite
+{
+	protected static final int RGB_BLACK = UEITPainter.COLOR_BLACK.getRGB();
+	protected static final int RGB_LIGHT_GRAY = UEITPainter.COLOR_LIGHT_GRAY.getRGB();
+	
+	protected static final int THICKNESS = 2;
+	
+	protected int phase;
+	
+	public ScrollingTicks(double speed)
+	{
+		super(speed);
+	}
+	
+	public void setLayout(UEITLayout layout)
+	{
+		int numCols = layout.getNumCols();
+		int numRows = layout.getNumRows();
+		
+		x = layout.getWidth() * 4 / numCols;
+		y = layout.getHeight() * (numRows - 2) / numRows;
+		
+		w = layout.getWidth() * (numCols - 8) / numCols;
+		h = layout.getHeight() / numRows;
+		
+		phase = 0;
+	}
+	
+	public void update(long timeNanos)
+	{
+		phase = getOffset(timeNanos, THICKNESS * 2);
+	}
+	
+	public void paint(RasterCanvas c)
+	{
+		c.fillRect(x, y, w, h, RGB_BLACK);
+		
+		for(int i = phase - THICKNESS * 2; i < w; i += THICKNESS * 2)
+		{
+			int from = Math.max(i, 0);
+			int to = Math.min(i + THICKNESS, w);
+			
+			if(from < to)
+			{
+				c.fillRect(x + from, y, to - from, h, RGB_LIGHT_GRAY);
+			}
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Thread-safe in-memory cache of segment image sets for several resolutions at once, bounded by the total
+ * number of pixels held. The least recently used sets are evicted first. A set that is missing is rendered,
+ * or loaded from the persistent store if one is given, exactly once even if several threads ask for it at the same time.
+ */
+public class SegmentCache implements SegmentCacheMBean
+{
+	protected final long maxPixels;
+	protected final SegmentDiskCache store;
+	
+	protected final LinkedHashMap<String, RasterCanvas[]> entries = new LinkedHashMap<String, RasterCanvas[]>(16, 0.75f, true);
+	protected final Map<String, FutureTask<RasterCanvas[]>> pending = new HashMap<String, FutureTask<RasterCanvas[]>>();
+	
+	protected long pixelCount;
+	
+	protected long hits;
+	protected long misses;
+	protected long evictions;
+	
+	/**
+	 * @param store persistent store to load missing sets from, or null to render them
+	 */
+	public SegmentCache(long maxPixels, SegmentDiskCache store)
+	{
+		this.maxPixels = maxPixels;
+		this.store = store;
+	}
+	
+	/**
+	 * Returns a pixel budget of a quarter of the maximum heap size.
+	 */
+	public static long getDefaultMaxPixels()
+	{
+		return Runtime.getRuntime().maxMemory() / 4 / 4;
+	}
+	
+	public static String getKey(int width, int height)
+	{
+		return width + "x" + height;
+	}
+	
+	protected static long getPixelCount(RasterCanvas[] segments)
+	{
+		return (long)segments.length * segments[0].getWidth() * segments[0].getHeight();
+	}
+	
+	public RasterCanvas[] get(final int width, final int height)
+	{
+		String key = getKey(width, height);
+		FutureTask<RasterCanvas[]> task;
+		boolean owner = false;
+		
+		synchronized(this)
+		{
+			RasterCanvas[] segments = entries.get(key);
+			
+			if(segments != null)
+			{
+				hits++;
+				return segments;
+			}
+			
+			misses++;
+			task = pending.get(key);
+			
+			if(task == null)
+			{
+				task = new FutureTask<RasterCanvas[]>(new Callable<RasterCanvas[]>()
+				{
+					public RasterCanvas[] call()
+					{
+						return store != null ? store.get(width, height) : RasterCanvas.wrap(new RasterPainter().renderSegments(width, height));
+					}
+				});
+				
+				pending.put(key, task);
+				owner = true;
+			}
+		}
+		
+		RasterCanvas[] segments = null;
+		
+		try
+		{
+			if(owner)
+			{
+				task.run();
+			}
+			
+			segments = getUninterruptibly(task);
+		}
+		finally
+		{
+			if(owner)
+			{
+				synchronized(this)
+				{
+					pending.remove(key);
+					
+					if(segments != null)
+					{
+						entries.put(key, segments);
+						pixelCount += getPixelCount(segments);
+						
+						evict(key);
+					}
+				}
+			}
+		}
+		
+		return segments;
+	}
+	
+	protected static RasterCanvas[] getUninterruptibly(FutureTask<RasterCanvas[]> task)
+	{
+		boolean interrupted = false;
+		
+		try
+		{
+			while(true)
+			{
+				try
+				{
+					return task.get();
+				}
+				catch(InterruptedException ex)
+				{
+					interrupted = true;
+				}
+				catch(ExecutionException ex)
+				{
+					if(ex.getCause() instanceof RuntimeException)
+					{
+						throw (RuntimeException)ex.getCause();
+					}
+					
+					if(ex.getCause() instanceof Error)
+					{
+						throw (Error)ex.getCause();
+					}
+					
+					throw new IllegalStateException(ex.getCause());
+				}
+			}
+		}
+		finally
+		{
+			if(interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Evicts the least recently used sets until the cache fits its budget, keeping the given one.
+	 */
+	protected void evict(String keep)
+	{
+		Iterator<Map.Entry<String, RasterCanvas[]>> it = entries.entrySet().iterator();
+		
+		while(pixelCount > maxPixels && it.hasNext())
+		{
+			Map.Entry<String, RasterCanvas[]> entry = it.next();
+			
+			if(!entry.getKey().equals(keep))
+			{
+				pixelCount -= getPixelCount(entry.getValue());
+				it.remove();
+				evictions++;
+			}
+		}
+	}
+	
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+	
+	public synchronized double getHitRatio()
+	{
+		return hits + misses > 0 ? (double)hits / (hits + misses) : 0;
+	}
+	
+	public synchronized int getEntryCount()
+	{
+		return entries.size();
+	}
+	
+	public synchronized long getPixelCount()
+	{
+		return pixelCount;
+	}
+	
+	public long getMaxPixels()
+	{
+		return maxPixels;
+	}
+	
+	public synchronized void clear()
+	{
+		entries.clear();
+		pixelCount = 0;
+	}
+	
+	/**
+	 * Registers the cache in the platform MBean server as main:type=SegmentCache.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("main:type=SegmentCache");
+			
+			if(!server.isRegistered(name))
+			{
+				server.registerMBean(this, name);
+			}
+		}
+		catch(JMException ex)
+		{
+			System.err.println(ex.toString());
+		}
+	}
+	
+	public synchronized String getStatistics()
+	{
+		return String.format("SegmentCache: %d hits, %d misses, %d evictions, %d sets, %.1f of %.1f Mpixels",
+							 hits, misses, evictions, entries.size(), pixelCount / 1e6, maxPixels / 1e6);
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * JMX view of {@link SegmentCache}.
+ */
+public interface SegmentCacheMBean
+{
+	public long getHits();
+	public long getMisses();
+	public long getEvictions();
+	
+	public double getHitRatio();
+	
+	public int getEntryCount();
+	public long getPixelCount();
+	public long getMaxPixels();
+	
+	public void clear();
+}
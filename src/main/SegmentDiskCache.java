@@ -0,0 +1,344 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent store of pre-rendered segment images, so that a restart or a return to a previous resolution
+ * does not render them again. Entries are keyed by width, height, aspect branch and renderer version,
+ * named by the SHA-256 of that key. They are read and written through a direct buffer rather than mapped,
+ * since a mapping keeps the file locked on Windows until it is garbage collected.
+ * The least recently used entries are deleted when the store exceeds its size cap.
+ * <p>
+ * An entry is a header of {@link #HEADER_SIZE} bytes (magic and the key as little-endian ints)
+ * followed by the little-endian pixels of the 8 segments. Entries are written to a temporary file first
+ * and then renamed, so several processes can share the store.
+ */
+public class SegmentDiskCache
+{
+	public static final int MAGIC = 0x53494555; // "UEIS"
+	public static final int HEADER_SIZE = 24;
+	public static final int SEGMENT_COUNT = 8;
+	
+	protected static final String EXTENSION = ".seg";
+	protected static final int BUFFER_SIZE = 1 << 20;
+	
+	protected final File directory;
+	protected final long maxSize;
+	protected final UEITPainter painter;
+	
+	public SegmentDiskCache(File directory, long maxSize, UEITPainter painter)
+	{
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.painter = painter;
+	}
+	
+	public static File getDefaultDirectory()
+	{
+		return new File(System.getProperty("user.home"), ".cache" + File.separator + "ueit");
+	}
+	
+	public File getDirectory()
+	{
+		return directory;
+	}
+	
+	public long getMaxSize()
+	{
+		return maxSize;
+	}
+	
+	public static String getKey(int width, int height)
+	{
+		return width + "x" + height + "/" + UEITPainter.getNumCols(width, height) + "/" + UEITPainter.RENDERER_VERSION;
+	}
+	
+	protected File getFile(int width, int height)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(getKey(width, height).getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder();
+			
+			for(int i = 0; i < 16; i++)
+			{
+				name.append(String.format("%02x", digest[i] & 0xFF));
+			}
+			
+			return new File(directory, name.append(EXTENSION).toString());
+		}
+		catch(NoSuchAlgorithmException ex)
+		{
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	/**
+	 * Returns the segment images for the given size, from the store if present, otherwise rendered and stored.
+	 * Failures of the store are reported and fall back to rendering.
+	 */
+	public RasterCanvas[] get(int width, int height)
+	{
+		try
+		{
+			RasterCanvas[] segments = load(width, height);
+			
+			if(segments != null)
+			{
+				return segments;
+			}
+		}
+		catch(IOException ex)
+		{
+			System.err.println(ex.toString());
+		}
+		
+		RasterCanvas[] segments = RasterCanvas.wrap(painter.renderSegments(width, height));
+		
+		try
+		{
+			store(width, height, segments);
+		}
+		catch(IOException ex)
+		{
+			System.err.println(ex.toString());
+		}
+		
+		return segments;
+	}
+	
+	/**
+	 * Reads the segment images for the given size, or returns null if they are not stored.
+	 * Entries that do not match their key are deleted.
+	 */
+	public RasterCanvas[] load(int width, int height) throws IOException
+	{
+		File file = getFile(width, height);
+		
+		if(!file.isFile())
+		{
+			return null;
+		}
+		
+		long segmentSize = (long)width * height * 4;
+		RasterCanvas[] segments = null;
+		
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			
+			if(channel.size() == HEADER_SIZE + SEGMENT_COUNT * segmentSize)
+			{
+				read(channel, buffer, HEADER_SIZE);
+				
+				if(buffer.getInt() == MAGIC && buffer.getInt() == width && buffer.getInt() == height &&
+				   buffer.getInt() == UEITPainter.getNumCols(width, height) && buffer.getInt() == UEITPainter.RENDERER_VERSION && buffer.getInt() == SEGMENT_COUNT)
+				{
+					segments = new RasterCanvas[SEGMENT_COUNT];
+					
+					for(int i = 0; i < segments.length; i++)
+					{
+						int[] data = new int[width * height];
+						
+						for(int offset = 0; offset < data.length; )
+						{
+							int count = Math.min(BUFFER_SIZE / 4, data.length - offset);
+							
+							read(channel, buffer, count * 4);
+							buffer.asIntBuffer().get(data, offset, count);
+							offset += count;
+						}
+						
+						segments[i] = new RasterCanvas(data, width, height);
+					}
+				}
+			}
+		}
+		finally
+		{
+			channel.close();
+		}
+		
+		if(segments == null)
+		{
+			file.delete();
+			return null;
+		}
+		
+		// the modification time orders the entries for eviction
+		file.setLastModified(System.currentTimeMillis());
+		
+		return segments;
+	}
+	
+	public void store(int width, int height, RasterCanvas[] segments) throws IOException
+	{
+		long segmentSize = (long)width * height * 4;
+		long size = HEADER_SIZE + SEGMENT_COUNT * segmentSize;
+		
+		if(size > maxSize)
+		{
+			return;
+		}
+		
+		directory.mkdirs();
+		
+		File file = getFile(width, height);
+		File temp = File.createTempFile("segments", ".tmp", directory);
+		
+		try
+		{
+			// written without a mapping, which would keep the file locked on Windows until it is garbage collected
+			FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			
+			try
+			{
+				ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				
+				buffer.putInt(MAGIC).putInt(width).putInt(height).putInt(UEITPainter.getNumCols(width, height)).putInt(UEITPainter.RENDERER_VERSION).putInt(SEGMENT_COUNT);
+				
+				for(int i = 0; i < SEGMENT_COUNT; i++)
+				{
+					int[] data = segments[i].getData();
+					
+					for(int offset = 0; offset < width * height; )
+					{
+						int count = Math.min(buffer.remaining() / 4, width * height - offset);
+						
+						buffer.asIntBuffer().put(data, offset, count);
+						buffer.position(buffer.position() + count * 4);
+						offset += count;
+						
+						if(buffer.remaining() < 4)
+						{
+							write(channel, buffer);
+						}
+					}
+				}
+				
+				write(channel, buffer);
+			}
+			finally
+			{
+				channel.close();
+			}
+			
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			temp.delete();
+		}
+		
+		evict();
+	}
+	
+	/**
+	 * Reads the given number of bytes from the current position of the channel into the buffer and flips it.
+	 */
+	protected static void read(FileChannel channel, ByteBuffer buffer, int length) throws IOException
+	{
+		buffer.clear();
+		buffer.limit(length);
+		
+		while(buffer.hasRemaining())
+		{
+			if(channel.read(buffer) < 0)
+			{
+				throw new EOFException("Segment cache entry truncated while reading");
+			}
+		}
+		
+		buffer.flip();
+	}
+	
+	protected static void write(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		buffer.flip();
+		
+		while(buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		
+		buffer.clear();
+	}
+	
+	/**
+	 * Deletes the least recently used entries until the store fits its size cap.
+	 */
+	public synchronized void evict()
+	{
+		File[] files = directory.listFiles();
+		
+		if(files == null)
+		{
+			return;
+		}
+		
+		final Map<File, Long> lastUsed = new HashMap<File, Long>();
+		long total = 0;
+		
+		for(File file : files)
+		{
+			if(file.getName().endsWith(EXTENSION))
+			{
+				lastUsed.put(file, file.lastModified());
+				total += file.length();
+			}
+		}
+		
+		File[] entries = lastUsed.keySet().toArray(new File[lastUsed.size()]);
+		
+		Arrays.sort(entries, new Comparator<File>()
+		{
+			public int compare(File a, File b)
+			{
+				return Long.compare(lastUsed.get(a), lastUsed.get(b));
+			}
+		});
+		
+		for(int i = 0; i < entries.length - 1 && total > maxSize; i++)
+		{
+			long length = entries[i].length();
+			
+			if(entries[i].delete())
+			{
+				total -= length;
+			}
+		}
+	}
+}
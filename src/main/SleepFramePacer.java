@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Millisecond pacing with Thread.sleep(), correcting the sleep time with an accumulated error
+ * clamped to one second in either direction.
+ */
+public class SleepFramePacer extends FramePacer
+{
+	protected double targetFramePeriod;
+	
+	protected long prevtime;
+	protected double error;
+	
+	public SleepFramePacer(long periodNanos)
+	{
+		super(periodNanos);
+		targetFramePeriod = periodNanos / 1e9;
+	}
+	
+	public void start()
+	{
+		super.start();
+		
+		prevtime = System.currentTimeMillis();
+		error = 0;
+	}
+	
+	protected void waitForNextFrame() throws InterruptedException
+	{
+		long time = System.currentTimeMillis();
+		double delta = (time - prevtime) / 1000.0;
+		prevtime = time;
+		
+		error += targetFramePeriod - delta;
+		
+		if(error < -1.0)
+		{
+			error = -1.0;
+		}
+		else if(error > 1.0)
+		{
+			error = 1.0;
+		}
+		
+		long sleep = Math.round(error * 1000.0);
+		
+		if(sleep > 0)
+		{
+			Thread.sleep(sleep);
+		}
+		else
+		{
+			Thread.yield();
+		}
+	}
+}
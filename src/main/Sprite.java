@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * A moving element drawn over the static frame for panel response and motion blur tests. Its position is
+ * a function of the presentation time of the frame only, so each frame shows it exactly where continuous
+ * motion at the given speed would be at that moment. Updating and painting must not allocate;
+ * everything resolution dependent is prepared in {@link #setLayout(UEITLayout)}.
+ */
+public abstract class Sprite
+{
+	/**
+	 * Speed in pixels per second.
+	 */
+	protected final double speed;
+	
+	/**
+	 * Bounds at the current time.
+	 */
+	protected int x;
+	protected int y;
+	protected int w;
+	protected int h;
+	
+	protected Sprite(double speed)
+	{
+		this.speed = speed;
+	}
+	
+	/**
+	 * Creates a sprite by name: "bar", "circle" or "ticks".
+	 */
+	public static Sprite create(String name, double speed)
+	{
+		if(name.equalsIgnoreCase("bar"))
+		{
+			return new SweepingBar(speed);
+		}
+		else if(name.equalsIgnoreCase("circle"))
+		{
+			return new MovingCircle(speed);
+		}
+		else if(name.equalsIgnoreCase("ticks"))
+		{
+			return new ScrollingTicks(speed);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown sprite: " + name);
+		}
+	}
+	
+	public double getSpeed()
+	{
+		return speed;
+	}
+	
+	/**
+	 * Fits the sprite to the geometry of a new frame size.
+	 */
+	public abstract void setLayout(UEITLayout layout);
+	
+	/**
+	 * Moves the sprite to where it is at the given time since the start of the animation.
+	 */
+	public abstract void update(long timeNanos);
+	
+	/**
+	 * Draws the sprite at its current position, within its bounds.
+	 */
+	public abstract void paint(RasterCanvas c);
+	
+	public int getX()
+	{
+		return x;
+	}
+	
+	public int getY()
+	{
+		return y;
+	}
+	
+	public int getWidth()
+	{
+		return w;
+	}
+	
+	public int getHeight()
+	{
+		return h;
+	}
+	
+	/**
+	 * Returns the distance travelled at the given time, in whole pixels, wrapped to [0, cycle).
+	 */
+	protected int getOffset(long timeNanos, int cycle)
+	{
+		if(cycle <= 0)
+		{
+			return 0;
+		}
+		
+		double distance = Math.floor(speed * (timeNanos / 1e9));
+		return (int)(distance - Math.floor(distance / cycle) * cycle);
+	}
+}
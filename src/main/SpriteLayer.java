@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Moving sprites composed over the static frame. Every frame the layer adds the bounds the sprites had
+ * in the previous frame and the bounds they have now to the dirty region, so that copying the region
+ * from the segment image erases them, and then paints them at their new positions on top.
+ * Nothing is allocated per frame once the frame size is known.
+ */
+public class SpriteLayer
+{
+	protected final Sprite[] sprites;
+	
+	/**
+	 * Bounds of every sprite in the previous frame as x, y, w, h.
+	 */
+	protected final int[] previousBounds;
+	protected boolean previousValid;
+	
+	protected int width;
+	protected int height;
+	
+	public SpriteLayer(Sprite... sprites)
+	{
+		this.sprites = sprites.clone();
+		previousBounds = new int[sprites.length * 4];
+	}
+	
+	/**
+	 * Creates a layer from a comma-separated list of sprite names, all moving at the given speed in pixels per second.
+	 */
+	public static SpriteLayer create(String names, double speed)
+	{
+		String[] list = names.split(",");
+		Sprite[] sprites = new Sprite[list.length];
+		
+		for(int i = 0; i < list.length; i++)
+		{
+			sprites[i] = Sprite.create(list[i].trim(), speed);
+		}
+		
+		return new SpriteLayer(sprites);
+	}
+	
+	public int getSpriteCount()
+	{
+		return sprites.length;
+	}
+	
+	/**
+	 * Moves the sprites to the given time and adds the rectangles they leave and enter to the dirty region.
+	 * The first frame after a change of the frame size only adds the new ones.
+	 */
+	public void update(long timeNanos, int width, int height, DirtyRegion dirty)
+	{
+		if(width != this.width || height != this.height)
+		{
+			UEITLayout layout = UEITLayout.get(width, height);
+			
+			for(Sprite sprite : sprites)
+			{
+				sprite.setLayout(layout);
+			}
+			
+			this.width = width;
+			this.height = height;
+			
+			previousValid = false;
+		}
+		
+		for(int i = 0; i < sprites.length; i++)
+		{
+			Sprite sprite = sprites[i];
+			int offset = i * 4;
+			
+			if(previousValid)
+			{
+				dirty.add(previousBounds[offset], previousBounds[offset + 1], previousBounds[offset + 2], previousBounds[offset + 3]);
+			}
+			
+			sprite.update(timeNanos);
+			
+			previousBounds[offset] = sprite.getX();
+			previousBounds[offset + 1] = sprite.getY();
+			previousBounds[offset + 2] = sprite.getWidth();
+			previousBounds[offset + 3] = sprite.getHeight();
+			
+			dirty.add(sprite.getX(), sprite.getY(), sprite.getWidth(), sprite.getHeight());
+		}
+		
+		previousValid = true;
+	}
+	
+	/**
+	 * Paints the sprites at their current positions, in order.
+	 */
+	public void paint(RasterCanvas c)
+	{
+		for(Sprite sprite : sprites)
+		{
+			sprite.paint(c);
+		}
+	}
+}
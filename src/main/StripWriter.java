@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.IOException;
+
+/**
+ * Frame set writer that also accepts frames in horizontal strips, so that a frame never has to be
+ * held in memory as a whole. Strips are passed top to bottom, frame after frame; a frame is complete
+ * once strips covering all of its rows have been written.
+ */
+public interface StripWriter extends FrameSetWriter
+{
+	/**
+	 * Writes rowCount full rows of ARGB pixels starting at the given offset of the array.
+	 */
+	public void writeRows(int[] argb, int offset, int rowCount) throws IOException;
+	
+	/**
+	 * Rows copied from an off-heap frame at once.
+	 */
+	public static final int STRIP_PIXELS = 1 << 16;
+}
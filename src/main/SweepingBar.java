@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * Full-height vertical bar, half a grid column wide, sweeping from left to right across the frame.
+ */
+public class SweepingBar extends Sprite
+{
+	protected static final int RGB_WHITE = UEITPainter.COLOR_WHITE_100.getRGB();
+	
+	protected int frameWidth;
+	
+	public SweepingBar(double speed)
+	{
+		super(speed);
+	}
+	
+	public void setLayout(UEITLayout layout)
+	{
+		frameWidth = layout.getWidth();
+		
+		w = Math.max(layout.getWidth() / layout.getNumCols() / 2, 1);
+		h = layout.getHeight();
+		y = 0;
+		x = -w;
+	}
+	
+	public void update(long timeNanos)
+	{
+		x = getOffset(timeNanos, frameWidth + w) - w;
+	}
+	
+	public void paint(RasterCanvas c)
+	{
+		c.fillRect(x, y, w, h, RGB_WHITE);
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically appends a row per telemetry source to a CSV file. Each row covers only the frames
+ * recorded since the previous row, so a long soak test shows how the timing drifts over time.
+ * Durations are in milliseconds.
+ */
+public class TelemetryCsvWriter implements Closeable
+{
+	protected static final String HEADER = "time_s,source,frames,missed_deadlines,dropped_frames,"
+										   + "interval_p50,interval_p90,interval_p99,interval_p999,interval_max,"
+										   + "render_p50,render_p90,render_p99,render_p999,render_max,"
+										   + "present_p50,present_p90,present_p99,present_p999,present_max,"
+										   + "error_p50,error_p90,error_p99,error_p999,error_max";
+	
+	protected final PrintWriter out;
+	protected final List<Source> sources = new ArrayList<Source>();
+	protected final long startTime = System.nanoTime();
+	
+	protected ScheduledExecutorService executor;
+	
+	public TelemetryCsvWriter(String fileName) throws IOException
+	{
+		out = new PrintWriter(new FileWriter(fileName));
+		out.println(HEADER);
+		out.flush();
+	}
+	
+	public synchronized void add(FrameTelemetry telemetry)
+	{
+		sources.add(new Source(telemetry));
+	}
+	
+	/**
+	 * Starts writing rows at the given interval on a daemon thread.
+	 */
+	public synchronized void start(long intervalMillis)
+	{
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "TelemetryCsvWriter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		executor.scheduleAtFixedRate(new Runnable()
+		{
+			public void run()
+			{
+				writeRows();
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	public synchronized void writeRows()
+	{
+		double time = (System.nanoTime() - startTime) / 1e9;
+		
+		for(Source source : sources)
+		{
+			source.writeRow(time);
+		}
+		
+		out.flush();
+	}
+	
+	/**
+	 * Stops the periodic dump and writes the rows for the frames recorded since the last one.
+	 */
+	public void close() throws IOException
+	{
+		if(executor != null)
+		{
+			executor.shutdown();
+		}
+		
+		writeRows();
+		out.close();
+	}
+	
+	protected class Source
+	{
+		protected final FrameTelemetry telemetry;
+		
+		protected final long[][] prevCounts = new long[4][LatencyHistogram.BUCKET_COUNT];
+		protected final long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+		
+		protected long prevFrames;
+		protected long prevMissed;
+		protected long prevDropped;
+		
+		public Source(FrameTelemetry telemetry)
+		{
+			this.telemetry = telemetry;
+		}
+		
+		public void writeRow(double time)
+		{
+			long frames = telemetry.getFrameCount();
+			long missed = telemetry.getMissedDeadlines();
+			long dropped = telemetry.getDroppedFrames();
+			
+			out.printf(Locale.ROOT, "%.3f,%s,%d,%d,%d", time, telemetry.getSource(), frames - prevFrames, missed - prevMissed, dropped - prevDropped);
+			
+			prevFrames = frames;
+			prevMissed = missed;
+			prevDropped = dropped;
+			
+			writeColumns(telemetry.getFrameIntervalHistogram(), prevCounts[0]);
+			writeColumns(telemetry.getRenderTimeHistogram(), prevCounts[1]);
+			writeColumns(telemetry.getPresentTimeHistogram(), prevCounts[2]);
+			writeColumns(telemetry.getPacingErrorHistogram(), prevCounts[3]);
+			
+			out.println();
+		}
+		
+		/**
+		 * Writes the percentiles of the values recorded since the previous call and remembers the current counts.
+		 * The maximum is the upper bound of the highest non-empty bucket.
+		 */
+		protected void writeColumns(LatencyHistogram histogram, long[] prev)
+		{
+			histogram.copyCounts(counts);
+			
+			int highest = -1;
+			
+			for(int i = 0; i < counts.length; i++)
+			{
+				long current = counts[i];
+				
+				// the histogram may have been reset meanwhile
+				counts[i] = Math.max(current - prev[i], 0);
+				prev[i] = current;
+				
+				if(counts[i] > 0)
+				{
+					highest = i;
+				}
+			}
+			
+			out.printf(Locale.ROOT, ",%.3f,%.3f,%.3f,%.3f,%.3f",
+					   LatencyHistogram.getValueAtPercentile(counts, 50) / 1e6,
+					   LatencyHistogram.getValueAtPercentile(counts, 90) / 1e6,
+					   LatencyHistogram.getValueAtPercentile(counts, 99) / 1e6,
+					   LatencyHistogram.getValueAtPercentile(counts, 99.9) / 1e6,
+					   highest >= 0 ? LatencyHistogram.getBucketValue(highest) / 1e6 : 0.0);
+		}
+	}
+}
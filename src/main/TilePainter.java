@@ -0,0 +1,41 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Renders arbitrary rectangular tiles of a frame without ever allocating the whole frame.
+ * Shapes cannot be drawn through a translated graphics context, their outlines would be rounded differently,
+ * but the layout keeps every circle and diagonal line rasterized in frame coordinates as row spans,
+ * so all primitives are simply clipped to the tile. Tiles are pixel-exact with the same region of renderSegment().
+ */
+public class TilePainter extends RasterPainter
+{
+	/**
+	 * Paints the tile whose top left corner is at (x, y) of a width x height frame with the given segment highlighted.
+	 * Returns the raster of the tile, with (x, y) as its origin.
+	 */
+	public RasterCanvas renderTile(BufferedImage tile, int x, int y, int width, int height, int segment)
+	{
+		RasterCanvas c = new RasterCanvas(((DataBufferInt)tile.getRaster().getDataBuffer()).getData(), tile.getWidth(), tile.getHeight(), x, y);
+		paintUEIT(c, UEITLayout.get(width, height), segment);
+		
+		return c;
+	}
+}
@@ -16,83 +16,46 @@
 
 package main;
 
-import java.awt.BasicStroke;
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.FontMetrics;
+import java.awt.BufferCapabilities;
+import java.awt.EventQueue;
 import java.awt.Frame;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import javax.swing.UIManager;
 
 public class UEIT extends javax.swing.JFrame implements Runnable
 {
-	protected static final double ASPECT_4_3		= 4.0 / 3.0;
-	protected static final double ASPECT_16_9		= 16.0 / 9.0;
+	protected static final String DEFAULT_SPRITES = "bar,circle,ticks";
 	
-	protected static final double ASPECT_THRESHOLD	= (ASPECT_4_3 + ASPECT_16_9) / 2.0;
-	
-	protected static final BasicStroke STROKE_1PX = new BasicStroke(1);
-	protected static final BasicStroke STROKE_2PX = new BasicStroke(2);
-	
-	protected static final Color COLOR_BLACK		= new Color(0x000000);
-	protected static final Color COLOR_DARK_GRAY	= new Color(0x505050);
-	protected static final Color COLOR_LIGHT_GRAY	= new Color(0xC0C0C0);
+	/**
+	 * Sprite speed in pixels per second, 8 pixels per frame at 60 fps.
+	 */
+	protected static final double DEFAULT_SPRITE_SPEED = 480;
 	
-	protected static final Color COLOR_WHITE_75		= new Color(0xFFFFFF);
-	protected static final Color COLOR_YELLOW_75	= new Color(0xFFFF6C);
-	protected static final Color COLOR_CYAN_75		= new Color(0x6CFFFF);
-	protected static final Color COLOR_GREEN_75		= new Color(0x6CFF6C);
-	protected static final Color COLOR_MAGENTA_75	= new Color(0xFF6CFF);
-	protected static final Color COLOR_RED_75		= new Color(0xFF6C6C);
-	protected static final Color COLOR_BLUE_75		= new Color(0x6C6CFF);
-	protected static final Color COLOR_BLACK_75		= new Color(0x404040);
+	protected final UEITPainter painter = new RasterPainter();
 	
-	protected static final Color COLOR_WHITE_100	= new Color(0xFFFFFF);
-	protected static final Color COLOR_YELLOW_100	= new Color(0xFFFF00);
-	protected static final Color COLOR_CYAN_100		= new Color(0x00FFFF);
-	protected static final Color COLOR_GREEN_100	= new Color(0x00FF00);
-	protected static final Color COLOR_MAGENTA_100	= new Color(0xFF00FF);
-	protected static final Color COLOR_RED_100		= new Color(0xFF0000);
-	protected static final Color COLOR_BLUE_100		= new Color(0x0000FF);
-	protected static final Color COLOR_BLACK_100	= new Color(0x000000);
+	protected RasterCanvas[] ueit = null;
+	protected final SegmentCache segmentCache;
 	
-	protected static final Color[][] COLOR_BARS =
-	{
-		{
-			COLOR_WHITE_75,
-			COLOR_YELLOW_75,
-			COLOR_CYAN_75,
-			COLOR_GREEN_75,
-			COLOR_MAGENTA_75,
-			COLOR_RED_75,
-			COLOR_BLUE_75,
-			COLOR_BLACK_75
-		},
-		{
-			COLOR_WHITE_100,
-			COLOR_YELLOW_100,
-			COLOR_CYAN_100,
-			COLOR_GREEN_100,
-			COLOR_MAGENTA_100,
-			COLOR_RED_100,
-			COLOR_BLUE_100,
-			COLOR_BLACK_100
-		}
-	};
+	/**
+	 * Frames rendered by the render thread and shown by the presenter thread or, without active rendering, by paint().
+	 */
+	protected final FrameExchange frames = new FrameExchange();
 	
-	protected BufferedImage[] ueit = null;
-	protected BufferedImage offscreen = null;
+	protected final char[] infoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
 	
 	protected double targetFramePeriod;
+	protected FramePacer pacer;
+	protected FrameTelemetry telemetry;
 	
 	protected int frameNumber;
 	protected int currentFPS;
@@ -100,822 +63,526 @@ public class UEIT extends javax.swing.JFrame implements Runnable
 	protected int fpsCounter;
 	protected long fpsPrevTime;
 	
-	protected boolean running;
+	protected boolean activeRendering;
+	protected BufferStrategy bufferStrategy;
+	
+	/**
+	 * Number of frames the back buffer lags behind after a flip (1 or 2), or 0 if its contents are undefined.
+	 */
+	protected int retainedFrames;
+	protected int fullPresents;
+	protected final AtomicBoolean exposed = new AtomicBoolean();
+	
+	protected volatile boolean dirtyRegions;
+	protected DirtyRegion[] transitions;
+	protected final DirtyRegion dirty = new DirtyRegion(0, 0);
+	protected final DirtyRegion previousDirty = new DirtyRegion(0, 0);
+	protected final DirtyRegion presentRegion = new DirtyRegion(0, 0);
+	protected final char[] previousInfoline = new char[GlyphAtlas.INFO_LINE_LENGTH];
+	protected int previousSegment = -1;
+	
+	protected volatile SpriteLayer sprites;
+	
+	protected long presentedPixels;
+	protected long framePixels;
+	
+	protected volatile boolean running;
 	protected Thread thread;
+	protected volatile Thread presenter;
+	
+	protected MultiDisplay group;
 	
 	/**
 	 * Creates new form UEIT
 	 */
 	public UEIT(double targetFrameRate)
 	{
+		this(targetFrameRate, "park", false);
+	}
+	
+	/**
+	 * With active rendering the window takes the screen in exclusive full-screen mode where supported,
+	 * and the render thread presents every frame itself through a page-flipped BufferStrategy
+	 * instead of requesting repaints from the event dispatch thread.
+	 */
+	public UEIT(double targetFrameRate, String pacerStrategy, boolean activeRendering)
+	{
+		this(targetFrameRate, pacerStrategy, activeRendering, null, null);
+	}
+	
+	/**
+	 * Opens the window covering the whole screen of the given device, or maximized on the default screen if the device is null.
+	 */
+	public UEIT(double targetFrameRate, String pacerStrategy, boolean activeRendering, GraphicsDevice device)
+	{
+		this(targetFrameRate, pacerStrategy, activeRendering, device, null);
+	}
+	
+	/**
+	 * @param segmentCache cache the segment images are taken from, e.g. one shared with other windows, or null for a cache of its own
+	 */
+	public UEIT(double targetFrameRate, String pacerStrategy, boolean activeRendering, GraphicsDevice device, SegmentCache segmentCache)
+	{
+		super(device != null ? device.getDefaultConfiguration() : null);
+		
+		this.segmentCache = segmentCache != null ? segmentCache : new SegmentCache(SegmentCache.getDefaultMaxPixels(), null);
+		
 		initComponents();
-		setLocationRelativeTo(null);
-		setExtendedState(Frame.MAXIMIZED_BOTH);
-//		setSize(1920 / 2, 1080 / 2);
-//		setLocationRelativeTo(null);
 		
-		if(targetFrameRate < 1)
+		if(device != null)
 		{
-			targetFrameRate = 1;
+			setBounds(device.getDefaultConfiguration().getBounds());
 		}
-		else if(targetFrameRate > 100)
+		else
 		{
-			targetFrameRate = 100;
+			setLocationRelativeTo(null);
+			setExtendedState(Frame.MAXIMIZED_BOTH);
+//			setSize(1920 / 2, 1080 / 2);
+//			setLocationRelativeTo(null);
 		}
 		
+		targetFrameRate = clampFrameRate(targetFrameRate);
 		targetFramePeriod = 1.0 / targetFrameRate;
+		pacer = FramePacer.create(pacerStrategy, targetFrameRate, getGraphicsConfiguration().getDevice());
+		
+		telemetry = new FrameTelemetry(device != null ? "display " + device.getIDstring() : "display", pacer.getPeriodNanos());
+		telemetry.register();
+		
+		this.activeRendering = activeRendering;
+		
+		if(activeRendering)
+		{
+			setIgnoreRepaint(true);
+			
+			GraphicsDevice screen = getGraphicsConfiguration().getDevice();
+			
+			if(screen.isFullScreenSupported())
+			{
+				screen.setFullScreenWindow(this);
+			}
+		}
 		
 		running = true;
-		thread = new Thread(this);
+		thread = new Thread(this, "UEIT " + telemetry.getSource());
 		thread.start();
 	}
 	
 	public void run()
 	{
-		long prevtime = System.currentTimeMillis();
-		long time;
-		double delta;
-		double error = 0;
-		long sleep;
+		if(activeRendering)
+		{
+			createBufferStrategy();
+		}
 		
-		while(running)
+		if(bufferStrategy != null)
 		{
-			repaint();
-			
-			time = System.currentTimeMillis();
-			delta = (time - prevtime) / 1000.0;
-			prevtime = time;
-			
-			error += targetFramePeriod - delta;
-			
-			if(error < -1.0)
+			presenter = new Thread(new Runnable()
 			{
-				error = -1.0;
-			}
-			else if(error > 1.0)
-			{
-				error = 1.0;
-			}
+				public void run()
+				{
+					presentFrames();
+				}
+			}, "UEIT present " + telemetry.getSource());
 			
-			sleep = Math.round(error * 1000.0);
+			presenter.start();
+		}
+		
+		pacer.start();
+		
+		while(running)
+		{
+			int width = getWidth();
+			int height = getHeight();
 			
-			try
+			if(width > 0 && height > 0)
 			{
-				if(sleep > 0)
+				long time = System.nanoTime();
+				FrameExchange.Slot slot = renderFrame(width, height);
+				
+				frames.publish(time, System.nanoTime() - time);
+				telemetry.frameRequested();
+				
+				if(bufferStrategy != null)
+				{
+					LockSupport.unpark(presenter);
+				}
+				else if(dirtyRegions)
 				{
-					Thread.sleep(sleep);
+					requestRepaint(slot.getChangedRegion());
 				}
 				else
 				{
-					Thread.yield();
+					repaint();
 				}
 			}
+			
+			try
+			{
+				pacer.awaitNextFrame();
+			}
 			catch(InterruptedException ex)
 			{
 			}
 		}
 	}
 	
-	public void paint(Graphics g)
+	/**
+	 * Waits until the window is shown and creates a double-buffered strategy for it on the event dispatch thread.
+	 */
+	protected void createBufferStrategy()
 	{
-		int width = getWidth();
-		int height = getHeight();
-		
-		if(ueit == null)
-		{
-			ueit = new BufferedImage[8];
-		}
-		
-		if(ueit[0] == null || ueit[0].getWidth() != width || ueit[0].getHeight() != height)
+		try
 		{
-			for(int i = 0; i < ueit.length; i++)
+			while(running && !isDisplayable())
 			{
-				ueit[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-				paintUEIT((Graphics2D)ueit[i].getGraphics(), width, height, i, null, null);
+				Thread.sleep(10);
 			}
+			
+			EventQueue.invokeAndWait(new Runnable()
+			{
+				public void run()
+				{
+					if(isDisplayable())
+					{
+						createBufferStrategy(2);
+						bufferStrategy = getBufferStrategy();
+						
+						BufferCapabilities caps = bufferStrategy.getCapabilities();
+						
+						if(!caps.isPageFlipping() || caps.getFlipContents() == BufferCapabilities.FlipContents.COPIED)
+						{
+							retainedFrames = 1;
+						}
+						else if(caps.getFlipContents() == BufferCapabilities.FlipContents.PRIOR)
+						{
+							retainedFrames = 2;
+						}
+						
+						fullPresents = 2;
+					}
+				}
+			});
 		}
-		
-		if(offscreen == null || offscreen.getWidth() != width || offscreen.getHeight() != height)
+		catch(InterruptedException ex)
 		{
-			offscreen = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 		}
-		
-		frameNumber = (frameNumber + 1) % 1000;
-		fpsCounter++;
-		
-		long time = System.currentTimeMillis();
-		long delta = time - fpsPrevTime;
-		
-		if(delta > 1000)
+		catch(InvocationTargetException ex)
+		{
+			System.err.println(ex.getCause().toString());
+		}
+	}
+	
+	/**
+	 * Presenter thread of active rendering: shows every frame the render thread publishes, or the latest one
+	 * if several were published meanwhile, so a slow flip never holds up rendering.
+	 */
+	protected void presentFrames()
+	{
+		while(running)
 		{
-			currentFPS = (int)((fpsCounter * 1000 + delta / 2) / delta);
+			FrameExchange.Slot slot = frames.take();
 			
-			if(currentFPS < 0)
-			{
-				currentFPS = 0;
-			}
-			else if(currentFPS > 99)
+			if(slot == null)
 			{
-				currentFPS = 99;
+				LockSupport.park(this);
+				continue;
 			}
 			
-			fpsCounter = 0;
-			fpsPrevTime = time;
+			long time = System.nanoTime();
+			present(slot);
+			
+			telemetry.recordFrame(slot.getStartNanos(), slot.getRenderNanos(), System.nanoTime() - time);
 		}
+	}
+	
+	/**
+	 * Shows a frame through the buffer strategy, redrawing it if the buffers were lost meanwhile.
+	 * With dirty regions only the rectangles that changed since the frame the back buffer still holds are drawn.
+	 */
+	protected void present(FrameExchange.Slot slot)
+	{
+		BufferedImage image = slot.getImage();
+		int width = image.getWidth();
+		int height = image.getHeight();
+		
+		presentRegion.set(slot.getChangedRegion());
 		
-		StringBuilder infoline = new StringBuilder(10);
+		if(retainedFrames == 2)
+		{
+			presentRegion.add(previousDirty);
+		}
 		
-		infoline.append("FPS:");
+		previousDirty.set(slot.getChangedRegion());
 		
-		infoline.append(Integer.toString((currentFPS / 10) % 10));
-		infoline.append(Integer.toString((currentFPS) % 10));
+		if(exposed.getAndSet(false))
+		{
+			fullPresents = 2;
+		}
 		
-		infoline.append(" ");
+		if(retainedFrames == 0 || fullPresents > 0)
+		{
+			presentRegion.setFull(width, height);
+			fullPresents = Math.max(fullPresents - 1, 0);
+		}
 		
-		infoline.append(Integer.toString((frameNumber / 100) % 10));
-		infoline.append(Integer.toString((frameNumber / 10) % 10));
-		infoline.append(Integer.toString((frameNumber) % 10));
+		presentedPixels += presentRegion.getArea();
+		framePixels += (long)width * height;
 		
-		paintUEIT((Graphics2D)offscreen.getGraphics(), width, height, -1, ueit[frameNumber % ueit.length], infoline.toString());
+		boolean lost;
 		
-		g.drawImage(offscreen, 0, 0, null);
+		do
+		{
+			boolean restored;
+			
+			do
+			{
+				Graphics g = bufferStrategy.getDrawGraphics();
+				presentRegion.draw(g, image);
+				g.dispose();
+				
+				restored = bufferStrategy.contentsRestored();
+				
+				if(restored)
+				{
+					presentRegion.setFull(width, height);
+					fullPresents = 2;
+				}
+			}
+			while(restored);
+			
+			bufferStrategy.show();
+			lost = bufferStrategy.contentsLost();
+			
+			if(lost)
+			{
+				presentRegion.setFull(width, height);
+				fullPresents = 2;
+			}
+		}
+		while(lost);
 	}
 	
-	public void generateImageSet(int width, int height, int frameCount) throws IOException
+	/**
+	 * Asks the event dispatch thread to repaint the changed rectangles of the window.
+	 */
+	protected void requestRepaint(DirtyRegion region)
 	{
-		if(ueit == null)
+		presentedPixels += region.getArea();
+		framePixels += (long)region.getWidth() * region.getHeight();
+		
+		if(region.isFull())
 		{
-			ueit = new BufferedImage[8];
+			repaint();
+			return;
 		}
 		
-		if(ueit[0] == null || ueit[0].getWidth() != width || ueit[0].getHeight() != height)
+		for(int i = 0; i < region.getCount(); i++)
 		{
-			for(int i = 0; i < ueit.length; i++)
-			{
-				ueit[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-				paintUEIT((Graphics2D)ueit[i].getGraphics(), width, height, i, null, null);
-			}
+			repaint(region.getX(i), region.getY(i), region.getRectWidth(i), region.getRectHeight(i));
 		}
-		
-		if(offscreen == null || offscreen.getWidth() != width || offscreen.getHeight() != height)
+	}
+	
+	/**
+	 * Draws the latest frame published by the render thread, or the one drawn last if there is no newer one.
+	 * With active rendering the presenter thread shows the frames, and the next one is presented in full instead.
+	 */
+	public void paint(Graphics g)
+	{
+		if(bufferStrategy != null)
 		{
-			offscreen = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			exposed.set(true);
+			return;
 		}
 		
-		currentFPS = (int)Math.round(1.0 / targetFramePeriod);
+		FrameExchange.Slot slot = frames.take();
+		long time = System.nanoTime();
 		
-		if(currentFPS < 0)
+		if(slot != null)
 		{
-			currentFPS = 0;
+			g.drawImage(slot.getImage(), 0, 0, null);
+			telemetry.recordFrame(slot.getStartNanos(), slot.getRenderNanos(), System.nanoTime() - time);
 		}
-		else if(currentFPS > 99)
+		else if(frames.getFront().getImage() != null)
 		{
-			currentFPS = 99;
+			g.drawImage(frames.getFront().getImage(), 0, 0, null);
+		}
+	}
+	
+	public FrameTelemetry getTelemetry()
+	{
+		return telemetry;
+	}
+	
+	/**
+	 * Repaints only the regions that changed since the previous frame: the segment blocks that differ
+	 * between consecutive segment images and the info line characters that changed.
+	 */
+	public void setDirtyRegions(boolean dirtyRegions)
+	{
+		this.dirtyRegions = dirtyRegions;
+	}
+	
+	public boolean isDirtyRegions()
+	{
+		return dirtyRegions;
+	}
+	
+	/**
+	 * Sets the moving sprites drawn over every frame, or null for none. Their positions follow the frame time of the pacer.
+	 */
+	public void setSprites(SpriteLayer sprites)
+	{
+		this.sprites = sprites;
+	}
+	
+	/**
+	 * Advances the frame and FPS counters and renders the next frame into the back slot of the frame exchange,
+	 * recording the region that changed in it, sprites included. Only the render thread calls it.
+	 */
+	protected FrameExchange.Slot renderFrame(int width, int height)
+	{
+		if(ueit == null || ueit[0].getWidth() != width || ueit[0].getHeight() != height)
+		{
+			ueit = segmentCache.get(width, height);
+			transitions = null;
+			previousSegment = -1;
 		}
 		
-		String filename = "ueit_" + currentFPS + "_" + frameCount + "_" + width + "_" + height;
-		
-		PrintWriter psh = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename + ".h"), "UTF-8")));
-		PrintWriter psc = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename + ".c"), "UTF-8")));
-		
-		psh.append("#ifndef ").append(filename.toUpperCase() + "_H").append("\r\n");
-		psh.append("#define ").append(filename.toUpperCase() + "_H").append("\r\n");
-		psh.append("\r\n");
-		
-		psh.append("#include <stdint.h>\r\n");
-		psh.append("\r\n");
-		
-		psh.append("#define UEIT_WIDTH\t\t\t").append(Integer.toString(width)).append("\r\n");
-		psh.append("#define UEIT_HEIGHT\t\t\t").append(Integer.toString(height)).append("\r\n");
-		psh.append("\r\n");
-		
-		psh.append("#define UEIT_FPS\t\t\t").append(Integer.toString(currentFPS)).append("\r\n");
-		psh.append("#define UEIT_NUM_FRAMES\t\t").append(Integer.toString(frameCount)).append("\r\n");
-		psh.append("\r\n");
+		FrameExchange.Slot slot = frames.getBack(width, height);
 		
-		psh.append("extern const uint32_t UEIT_DATA[UEIT_NUM_FRAMES][UEIT_WIDTH * UEIT_HEIGHT] __attribute__((aligned(32)));\r\n");
-		psh.append("\r\n");
+		frameNumber = (frameNumber + 1) % 1000;
+		fpsCounter++;
 		
-		psh.append("#endif\r\n");
+		long time = System.currentTimeMillis();
+		long delta = time - fpsPrevTime;
 		
-		psc.append("#include \"").append(filename).append(".h\"\r\n");
-		psc.append("\r\n");
+		if(delta > 1000)
+		{
+			currentFPS = getImprintedFPS((fpsCounter * 1000 + delta / 2) / delta);
+			
+			fpsCounter = 0;
+			fpsPrevTime = time;
+		}
 		
-		psc.append("const uint32_t UEIT_DATA[UEIT_NUM_FRAMES][UEIT_WIDTH * UEIT_HEIGHT] __attribute__((aligned(32))) =\r\n");
-		psc.append("{\r\n");
+		UEITPainter.formatInfoLine(infoline, currentFPS, frameNumber);
 		
-		int[] rgb = new int[width * height];
+		int segment = frameNumber % ueit.length;
 		
-		for(frameNumber = 0; frameNumber < frameCount; frameNumber++)
+		if(dirtyRegions && previousSegment >= 0 && segment == (previousSegment + 1) % ueit.length)
 		{
-			System.out.println("Generating image " + (frameNumber + 1) + " of " + frameCount + "...");
-			
-			StringBuilder infoline = new StringBuilder(10);
-
-			infoline.append("FPS:");
-
-			infoline.append(Integer.toString((currentFPS / 10) % 10));
-			infoline.append(Integer.toString((currentFPS) % 10));
-
-			infoline.append(" ");
-
-			infoline.append(Integer.toString((frameNumber / 100) % 10));
-			infoline.append(Integer.toString((frameNumber / 10) % 10));
-			infoline.append(Integer.toString((frameNumber) % 10));
-
-			paintUEIT((Graphics2D)offscreen.getGraphics(), width, height, -1, ueit[frameNumber % ueit.length], infoline.toString());
-			
-			offscreen.getRGB(0, 0, width, height, rgb, 0, width);
-			
-			psc.append("\t{");
-			
-			for(int i = 0; i < rgb.length; i++)
+			if(transitions == null)
 			{
-				if(i % 8 == 0)
-				{
-					psc.append("\r\n\t");
-				}
-				
-				psc.append("\t0x").append(Integer.toHexString(rgb[i] | 0xFF000000).toUpperCase()).append(",");
+				transitions = DirtyRegion.diff(ueit);
 			}
 			
-			psc.append("\r\n");
-			psc.append("\t},\r\n");
+			dirty.set(transitions[previousSegment]);
+			painter.getGlyphAtlas(width, height).addInfoLineBounds(previousInfoline, infoline, dirty);
+		}
+		else
+		{
+			dirty.setFull(width, height);
+		}
+		
+		SpriteLayer sprites = this.sprites;
+		
+		if(sprites != null)
+		{
+			sprites.update(pacer.getFrameTimeNanos(), width, height, dirty);
 		}
 		
-		psc.append("};\r\n");
+		painter.paintUEIT(slot.getCanvas(), ueit[segment], infoline, frames.nextFrame(dirty));
 		
-		psh.close();
-		psc.close();
+		if(sprites != null)
+		{
+			sprites.paint(slot.getCanvas());
+		}
 		
-		frameNumber = 0;
-		currentFPS = 0;
+		previousSegment = segment;
+		System.arraycopy(infoline, 0, previousInfoline, 0, infoline.length);
 		
-		ueit = null;
-		offscreen = null;
+		return slot;
 	}
 	
-	public void paintUEIT(Graphics2D g, int width, int height, int segment, Image prerendered, String infoline)
+	public void generateImageSet(int width, int height, int frameCount) throws IOException
 	{
-		int numRows = 18;
-		int numCols;
-		
-		int x, y, w, h;
-		boolean flag;
-		
-		double aspect = (double)width / (double)height;
-		
-		if(aspect >= ASPECT_THRESHOLD)
+		new FrameSetGenerator(1.0 / targetFramePeriod).generate(width, height, frameCount);
+	}
+	
+	/**
+	 * Sets the group of windows that is closed together with this one.
+	 */
+	public void setGroup(MultiDisplay group)
+	{
+		this.group = group;
+	}
+	
+	public void exit()
+	{
+		if(group != null)
 		{
-			numCols = 32;
+			group.exit();
 		}
 		else
 		{
-			numCols = 24;
+			stop();
+			System.exit(0);
 		}
+	}
+	
+	/**
+	 * Stops the render thread, prints the statistics and closes the window.
+	 */
+	public void stop()
+	{
+		running = false;
 		
-		int bigCircleSize = numRows - 2;
-		
-		if(prerendered != null && infoline != null)
+		if(thread != null && thread.isAlive())
 		{
-			g.drawImage(prerendered, 0, 0, null);
-			
-			y = height * 7 / 2 / numRows;
-			h = height * 1 / numRows;
-			
-			float targetFontHeight = (float)(h * 1.0);
-			
-			Font font = Font.decode(null);
-			FontMetrics fm = g.getFontMetrics(font);
-			
-			font = font.deriveFont(font.getSize() * targetFontHeight / fm.getHeight());
-			
-			g.setFont(font);
-			fm = g.getFontMetrics(font);
-
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.setStroke(STROKE_1PX);
-			
-			for(int i = 0; i < Math.min(infoline.length(), 10); i++)
+			try
+			{
+				thread.join(1000);
+			}
+			catch(InterruptedException ex)
 			{
-				paintString(g, fm, infoline.substring(i, i + 1), width * (numCols - 10 + 1 + i * 2) / 2 / numCols, y);
 			}
 		}
-		else
+		
+		thread = null;
+		
+		if(presenter != null)
 		{
-			// Background
-
-			g.setColor(COLOR_DARK_GRAY);
-			g.setStroke(STROKE_1PX);
-			g.fillRect(0, 0, width, height);
-
-			// Big circle
-
-			x = width * (numCols - bigCircleSize) / 2 / numCols;
-			y = height * (numRows - bigCircleSize) / 2 / numRows;
-
-			w = width * bigCircleSize / numCols;
-			h = height * bigCircleSize / numRows;
-
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.fillArc(x, y, w, h, 0, 360);
-
-			// Top rectangle within big circle
-
-			x = width * (numCols - 4) / 2 / numCols;
-			y = height * 3 / (numRows * 2);
-
-			w = width * 4 / numCols;
-			h = height * 1 / numRows;
-
-			g.setColor(COLOR_DARK_GRAY);
-			g.fillRect(x, y, w, h);
+			LockSupport.unpark(presenter);
 			
-			if(segment >= 0 && segment < 8)
+			try
 			{
-				x = width * ((numCols - 4) / 2 + segment % 4) / numCols;
-				y = height * (3 + segment / 4) / (numRows * 2);
-				
-				w = width * 1 / numCols;
-				h = height * 1 / 2 / numRows;
-				
-				g.setColor(COLOR_LIGHT_GRAY);
-				g.fillRect(x, y, w, h);
-			}
-
-			// Second (info line) rectangle within big circle
-
-			x = width * (numCols - 10) / 2 / numCols;
-			y = height * 3 / (numRows);
-
-			w = width * 10 / numCols;
-			h = height * 1 / numRows;
-
-			g.setColor(COLOR_DARK_GRAY);
-			g.fillRect(x, y, w, h);
-
-			// Bottom rectangle within big circle
-
-			x = width * (numCols - 4) / 2 / numCols;
-			y = height * (numRows * 2 - 5) / (numRows * 2);
-
-			w = width * 4 / numCols;
-			h = height * 1 / numRows;
-
-			g.setColor(COLOR_DARK_GRAY);
-			g.fillRect(x, y, w, h);
-			
-			if(segment >= 0 && segment < 8)
-			{
-				x = width * ((numCols - 4) / 2 + segment % 4) / numCols;
-				y = height * (numRows * 2 - 5 + segment / 4) / (numRows * 2);
-				
-				w = width * 1 / numCols;
-				h = height * 1 / 2 / numRows;
-				
-				g.setColor(COLOR_LIGHT_GRAY);
-				g.fillRect(x, y, w, h);
+				presenter.join(1000);
 			}
-
-			// Main grid
-
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.setStroke(STROKE_2PX);
-
-			for(int i = 1; i < numRows; i++)
-			{
-				y = height * i / numRows;
-				g.drawLine(0, y, width, y);
-			}
-
-			for(int i = 1; i < numCols; i++)
-			{
-				x = width * i / numCols;
-				g.drawLine(x, 0, x, height);
-			}
-			
-			// Third (center) rectangle within big circle
-
-			x = width * (numCols - 6) / 2 / numCols;
-			y = height * 8 / numRows;
-
-			w = width * 6 / numCols;
-			h = height * 2 / numRows;
-
-			g.setColor(COLOR_DARK_GRAY);
-			g.setStroke(STROKE_1PX);
-			g.fillRect(x, y, w, h);
-			
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.setStroke(STROKE_2PX);
-			
-			g.drawLine(x + 0, y + 0, x + w, y + 0);
-			g.drawLine(x + 0, y + h, x + w, y + h);
-			
-			g.drawLine(x + 0, y + 0, x + 0, y + h);
-			g.drawLine(x + w, y + 0, x + w, y + h);
-
-			x = width / 2;
-			y = height / 2;
-
-			w = width * 1 / numCols;
-			h = height * 1 / numRows;
-
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.setStroke(STROKE_2PX);
-
-			g.drawLine(x - w, y + 0, x + w, y + 0);
-
-			g.drawLine(x - w, y - h, x - w, y + h);
-			g.drawLine(x + 0, y - h, x + 0, y + h);
-			g.drawLine(x + w, y - h, x + w, y + h);
-
-			g.drawLine(x - w * 2, y, x - w * 2, y);
-			g.drawLine(x + w * 2, y, x + w * 2, y);
-
-			// Center diagonal lines (left)
-
-			x = width * (numCols / 2 - 3 - 5) / numCols;
-			y = height * 8 / numRows;
-
-			w = width * 5 / numCols;
-			h = height * 1 / numRows;
-
-			g.setStroke(STROKE_1PX);
-
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.fillRect(x, y, w, h);
-
-			g.setColor(COLOR_BLACK);
-			g.fillRect(x, y + h, w, h);
-
-			g.setStroke(STROKE_2PX);
-			g.drawLine(x + w / 10, y, x + w / 10, y + h);
-
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.drawLine(x + w / 10, y + h, x + w / 10, y + h * 2);
-
-			x = width * (numCols / 2 - 3 - 4) / numCols;
-			y = height * 9 / numRows;
-
-			w = width * 7 / 2 / numCols;
-			h = height * 1 / numRows;
-
-			g.drawLine(x, y + h, x + w, y);
-
-			// Center diagonal lines (right)
-
-			x = width * (numCols / 2 + 3) / numCols;
-			y = height * 8 / numRows;
-
-			w = width * 5 / numCols;
-			h = height * 1 / numRows;
-
-			g.setStroke(STROKE_1PX);
-
-			g.setColor(COLOR_BLACK);
-			g.fillRect(x, y, w, h);
-
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.fillRect(x, y + h, w, h);
-
-			x = width * (numCols + 7) / 2 / numCols;
-			y = height * 8 / numRows;
-
-			w = width * 7 / 2 / numCols;
-			h = height * 1 / numRows;
-
-			g.setStroke(STROKE_2PX);
-			g.drawLine(x, y + h, x + w, y);
-			
-			// Complementary color bars
-
-			w = (width + numCols * 2 - 1) / (numCols * 2);
-			h = height * 1 / numRows;
-
-			y = height * 7 / numRows;
-			
-			g.setStroke(STROKE_1PX);
-
-			flag = false;
-
-			for(int i = 0; i < 10; i++)
-			{
-				g.setColor(flag ? COLOR_GREEN_75 : COLOR_MAGENTA_75);
-				flag = !flag;
-
-				x = width * (numCols - bigCircleSize + i) / (numCols * 2);
-				g.fillRect(x, y, w, h);
-			}
-
-			flag = false;
-
-			for(int i = 10; i < 22; i++)
-			{
-				g.setColor(flag ? COLOR_BLUE_75 : COLOR_YELLOW_75);
-				flag = !flag;
-
-				x = width * (numCols - bigCircleSize + i) / (numCols * 2);
-				g.fillRect(x, y, w, h);
-			}
-
-			flag = false;
-
-			for(int i = 22; i < 32; i++)
+			catch(InterruptedException ex)
 			{
-				g.setColor(flag ? COLOR_CYAN_75 : COLOR_RED_75);
-				flag = !flag;
-
-				x = width * (numCols - bigCircleSize + i) / (numCols * 2);
-				g.fillRect(x, y, w, h);
 			}
-
-			// Color gradient
-
-			x = width * (numCols - bigCircleSize) / 2 / numCols;
-			y = height * 10 / numRows;
-
-			w = width * bigCircleSize / numCols;
-			h = height * 1 / numRows;
 			
-			g.setStroke(STROKE_1PX);
-
-			for(int i = 0; i < w; i++)
-			{
-				float v = (float)i / (float)(w - 1);
-
-				g.setColor(new Color(v, (float)1.0 - v, v));
-				g.drawLine(x + i, y, x + i, y + h);
-			}
-
-			// Tick packs
-
-			int sidePackSize = numCols / 7;
-			int mainPackSize = numCols - sidePackSize * 6;
-
-			h = height * 1 / numRows;
-			y = height * 11 / numRows;
-
-			g.setColor(COLOR_BLACK);
-			g.setStroke(STROKE_1PX);
-			g.fillRect(0, y, width, h);
-
-			g.setColor(COLOR_LIGHT_GRAY);
-
-			// 1 px
-
-			x = width * (numCols - mainPackSize) / 2 / numCols;
-			w = width * mainPackSize / numCols;
-
-			for(int i = 0; i < w; i += 2)
-			{
-				g.drawLine(x + i, y, x + i, y + h);
-			}
-
-			// 2 px
-
-			x = width * ((numCols - mainPackSize) / 2 - sidePackSize) / numCols;
-			w = width * sidePackSize / numCols;
-
-			for(int i = 0; i < w; i += 4)
-			{
-				g.drawLine(x + i + 0, y, x + i + 0, y + h);
-				g.drawLine(x + i + 1, y, x + i + 1, y + h);
-			}
-
-			x = width * ((numCols + mainPackSize) / 2) / numCols;
-			w = width * sidePackSize / numCols;
-
-			for(int i = 0; i < w; i += 4)
-			{
-				g.drawLine(x + i + 0, y, x + i + 0, y + h);
-				g.drawLine(x + i + 1, y, x + i + 1, y + h);
-			}
-
-			// 3 px
-
-			x = width * ((numCols - mainPackSize) / 2 - sidePackSize * 2) / numCols;
-			w = width * sidePackSize / numCols;
-
-			for(int i = 0; i < w; i += 6)
-			{
-				g.drawLine(x + i + 0, y, x + i + 0, y + h);
-				g.drawLine(x + i + 1, y, x + i + 1, y + h);
-				g.drawLine(x + i + 2, y, x + i + 2, y + h);
-			}
-
-			x = width * ((numCols + mainPackSize) / 2 + sidePackSize) / numCols;
-			w = width * sidePackSize / numCols;
-
-			for(int i = 0; i < w; i += 6)
-			{
-				g.drawLine(x + i + 0, y, x + i + 0, y + h);
-				g.drawLine(x + i + 1, y, x + i + 1, y + h);
-				g.drawLine(x + i + 2, y, x + i + 2, y + h);
-			}
-
-			// 4 px
-
-			x = width * ((numCols - mainPackSize) / 2 - sidePackSize * 3) / numCols;
-			w = width * sidePackSize / numCols;
-
-			for(int i = 0; i < w; i += 8)
-			{
-				g.drawLine(x + i + 0, y, x + i + 0, y + h);
-				g.drawLine(x + i + 1, y, x + i + 1, y + h);
-				g.drawLine(x + i + 2, y, x + i + 2, y + h);
-				g.drawLine(x + i + 3, y, x + i + 3, y + h);
-			}
-
-			x = width * ((numCols + mainPackSize) / 2 + sidePackSize * 2) / numCols;
-			w = width * sidePackSize / numCols;
-
-			for(int i = 0; i < w; i += 8)
-			{
-				g.drawLine(x + i + 0, y, x + i + 0, y + h);
-				g.drawLine(x + i + 1, y, x + i + 1, y + h);
-				g.drawLine(x + i + 2, y, x + i + 2, y + h);
-				g.drawLine(x + i + 3, y, x + i + 3, y + h);
-			}
-
-			// Black squares at the bottom of the big circle
-
-			x = width * (numCols - 10 + 1) / 2 / numCols;
-			y = height * 14 / numRows;
-
-			w = width * 1 / numCols;
-			h = height * 1 / numRows;
-
-			g.setColor(COLOR_BLACK);
-			g.setStroke(STROKE_1PX);
-
-			for(int i = 0; i < 5; i++)
-			{
-				g.fillRect(x + w * i * 2, y, w, h);
-			}
-
-			// Top small circles
-
-			paintSmallCircle(g, false, 0, 0, numRows, numCols, width, height);
-			paintSmallCircle(g, true, 0, numCols - 4, numRows, numCols, width, height);
-
-			// Top color bars
-
-			w = (width + 7) / 8;
-			h = height * 2 / numRows;
-
-			y = height * 4 / numRows;
-
-			g.setStroke(STROKE_1PX);
-
-			for(int i = 0; i < 8; i++)
-			{
-				x = width * i / 8;
-
-				g.setColor(COLOR_BARS[0][i]);
-				g.fillRect(x, y, w, h);
-			}
-
-			// Grayscale
-
-			h = height * 1 / numRows;
-			y = height * 6 / numRows;
-
-			for(int i = 0; i < width; i++)
-			{
-				float v = (float)i / (float)(width - 1);
-
-				g.setColor(new Color(v, v, v));
-				g.drawLine(i, y, i, y + h);
-			}
-
-			// Bottom color bars
-
-			w = (width + 7) / 8;
-			h = height * 2 / numRows;
-
-			y = height * 12 / numRows;
-
-			for(int i = 0; i < 8; i++)
-			{
-				x = width * i / 8;
-
-				g.setColor(COLOR_BARS[1][i]);
-				g.fillRect(x, y, w, h);
-			}
-
-			// Bottom small circles
-
-			paintSmallCircle(g, true, numRows - 4, 0, numRows, numCols, width, height);
-			paintSmallCircle(g, false, numRows - 4, numCols - 4, numRows, numCols, width, height);
-
-			// Outer frame
-
-			g.setColor(COLOR_LIGHT_GRAY);
-			g.setStroke(STROKE_2PX);
-			g.drawRect(1, 1, width - 2, height - 2);
+			presenter = null;
 		}
-	}
-	
-	protected void paintString(Graphics2D g, FontMetrics fm, String s, int x, int y)
-	{
-		g.drawString(s, x - fm.stringWidth(s) / 2, y - fm.getDescent() + (fm.getAscent() + fm.getDescent()) / 2);
-	}
-	
-	protected void paintSmallCircle(Graphics2D g, boolean rotate, int row, int col, int numRows, int numCols, int width, int height)
-	{
-		int x = width * col / numCols;
-		int y = height * row / numRows;
-		
-		int w = width * 4 / numCols;
-		int h = height * 4 / numRows;
 		
-		g.setColor(COLOR_LIGHT_GRAY);
-		g.fillArc(x, y, w, h, 0, 360);
+		System.out.println(pacer.getStatistics());
+		System.out.println(telemetry.getStatistics());
+		System.out.println(segmentCache.getStatistics());
 		
-		x = width * (col + 1) / numCols;
-		y = height * (row + 1) / numRows;
-		
-		w = width * 2 / numCols;
-		h = height * 2 / numRows;
-		
-		g.setColor(COLOR_BLACK);
-		g.fillRect(x, y, w, h);
-		
-		g.setColor(COLOR_LIGHT_GRAY);
-		g.setStroke(STROKE_1PX);
-		
-		if(rotate)
-		{
-			w = width * 2 / 3 / numCols;
-			h = height * 2 / numRows;
-			
-			for(int i = y; i < y + h; i += 2)
-			{
-				g.drawLine(x - 2, i, x + w, i);
-			}
-			
-			x += w * 2;
-			
-			for(int i = y; i < y + h; i += 4)
-			{
-				g.drawLine(x, i + 0, x + w + 2, i + 0);
-				g.drawLine(x, i + 1, x + w + 2, i + 1);
-			}
-			
-			x = width * (col + 2) / numCols;
-			y = height * (row + 2) / numRows;
-			
-			g.setStroke(STROKE_2PX);
-			g.drawLine(x - w / 3, y, x + w / 3, y);
-			g.drawLine(x, y - w / 3, x, y + w / 3);
-		}
-		else 
+		if(dirtyRegions && framePixels > 0)
 		{
-			w = width * 2 / numCols;
-			h = height * 2 / 3 / numRows;
-			
-			for(int i = x; i < x + w; i += 2)
-			{
-				g.drawLine(i, y - 2, i, y + h);
-			}
-			
-			y += h * 2;
-			
-			for(int i = x; i < x + w; i += 4)
-			{
-				g.drawLine(i + 0, y, i + 0, y + h + 2);
-				g.drawLine(i + 1, y, i + 1, y + h + 2);
-			}
-			
-			x = width * (col + 2) / numCols;
-			y = height * (row + 2) / numRows;
-			
-			g.setStroke(STROKE_2PX);
-			g.drawLine(x - h / 3, y, x + h / 3, y);
-			g.drawLine(x, y - h / 3, x, y + h / 3);
+			System.out.println(String.format("Dirty regions: %.1f%% of the frame area presented", presentedPixels * 100.0 / framePixels));
 		}
-	}
-	
-	public void exit()
-	{
-		running = false;
 		
-		if(thread != null && thread.isAlive())
+		telemetry.unregister();
+		
+		GraphicsDevice device = getGraphicsConfiguration().getDevice();
+		
+		if(device.getFullScreenWindow() == this)
 		{
-			try
-			{
-				thread.join(1000);
-			}
-			catch(InterruptedException ex)
-			{
-			}
+			device.setFullScreenWindow(null);
 		}
 		
-		thread = null;
-		
 		dispose();
-		System.exit(0);
 	}
 
 	/**
@@ -978,59 +645,403 @@ public class UEIT extends javax.swing.JFrame implements Runnable
     }//GEN-LAST:event_formKeyPressed
 
 	/**
-	 * @param args the command line arguments
+	 * Returns the sprite names given with --sprites, all of them if the option has no value, or null without the option.
 	 */
-	public static void main(final String args[])
+	protected static String getSprites(CommandLine cmd)
+	{
+		if(!cmd.hasOption("sprites"))
+		{
+			return null;
+		}
+		
+		String sprites = cmd.getOption("sprites", "");
+		return sprites.isEmpty() ? DEFAULT_SPRITES : sprites;
+	}
+	
+	/**
+	 * Limits a target frame rate to the supported range of 1 to 100 fps.
+	 */
+	public static double clampFrameRate(double frameRate)
+	{
+		if(frameRate < 1)
+		{
+			return 1;
+		}
+		else if(frameRate > 100)
+		{
+			return 100;
+		}
+		
+		return frameRate;
+	}
+	
+	/**
+	 * Returns a frame rate as it is imprinted into the info line: rounded and limited to two digits.
+	 */
+	public static int getImprintedFPS(double frameRate)
+	{
+		long fps = Math.round(frameRate);
+		
+		if(fps < 0)
+		{
+			return 0;
+		}
+		else if(fps > 99)
+		{
+			return 99;
+		}
+		
+		return (int)fps;
+	}
+	
+	/**
+	 * Creates a window on the given screen, or on the default one if the device is null, with the window options
+	 * of the command line: --pacer, --active, --dirty-regions, --sprites and --sprite-speed.
+	 * Its telemetry is added to the log if there is one.
+	 */
+	public static UEIT createWindow(CommandLine cmd, double frameRate, GraphicsDevice device, SegmentCache segmentCache, TelemetryCsvWriter telemetryLog)
+	{
+		UEIT ueit = new UEIT(frameRate, cmd.getOption("pacer", "park"), cmd.hasOption("active"), device, segmentCache);
+		
+		if(telemetryLog != null)
+		{
+			telemetryLog.add(ueit.getTelemetry());
+		}
+		
+		String sprites = getSprites(cmd);
+		
+		ueit.setDirtyRegions(cmd.hasOption("dirty-regions"));
+		ueit.setSprites(sprites != null ? SpriteLayer.create(sprites, cmd.getDoubleOption("sprite-speed", DEFAULT_SPRITE_SPEED)) : null);
+		
+		return ueit;
+	}
+	
+	/**
+	 * Returns a converter into the pixel format given with --pixel-format, or into the default format if there is none,
+	 * using the matrix given with --color-matrix (BT.601 by default). Returns null for ARGB output without a default.
+	 */
+	protected static FrameConverter createPixelConverter(CommandLine cmd, RawPixelFormat defaultFormat)
+	{
+		if(!cmd.hasOption("pixel-format") && defaultFormat == null)
+		{
+			return null;
+		}
+		
+		RawPixelFormat format = cmd.hasOption("pixel-format") ? RawPixelFormat.fromName(cmd.getOption("pixel-format", "")) : defaultFormat;
+		YCbCrMatrix matrix = YCbCrMatrix.fromName(cmd.getOption("color-matrix", YCbCrMatrix.BT601.getName()));
+		
+		return new FrameConverter(format, matrix);
+	}
+	
+	/**
+	 * Streams raw video to standard output or a named pipe: frame rate, frame count (0 for an endless stream),
+	 * width and height come from the positional arguments. Diagnostics go to standard error
+	 * so that standard output carries nothing but frames.
+	 */
+	protected static void stream(CommandLine cmd, double targetFrameRate, SegmentCache segmentCache, TelemetryCsvWriter telemetryLog)
 	{
 		try
 		{
-			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+			long frameCount = cmd.getPositionalCount() > 1 ? Long.parseLong(cmd.getPositional(1)) : 0;
+			
+			int width = cmd.getPositionalCount() > 3 ? Integer.parseInt(cmd.getPositional(2)) : 1920;
+			int height = cmd.getPositionalCount() > 3 ? Integer.parseInt(cmd.getPositional(3)) : 1080;
+			
+			FrameConverter converter = createPixelConverter(cmd, RawPixelFormat.RGB24);
+			FramePacer pacer = cmd.hasOption("unpaced") ? null : FramePacer.create(cmd.getOption("pacer", "park"), targetFrameRate, null);
+			
+			frameCount = frameCount > 0 ? frameCount : -1;
+			
+			FrameSource source = new FrameSource(targetFrameRate, segmentCache.get(width, height), frameCount, 2);
+			RawVideoSink sink = RawVideoSink.open(cmd.getOption("stream", "-"), width, height, converter);
+			
+			FrameStreamer streamer = new FrameStreamer(source, sink, pacer);
+			streamer.getTelemetry().register();
+			
+			if(telemetryLog != null)
+			{
+				telemetryLog.add(streamer.getTelemetry());
+			}
+			
+			System.err.println("Streaming " + width + "x" + height + " " + converter.getFormat().getName() + " at " + targetFrameRate + " fps with " + RowKernels.get().getName() + " row kernels");
+			
+			try
+			{
+				streamer.stream();
+			}
+			catch(IOException ex)
+			{
+				// the reader has closed the pipe
+				System.err.println(ex.toString());
+			}
+			finally
+			{
+				source.close();
+				
+				try
+				{
+					sink.close();
+				}
+				catch(IOException ex)
+				{
+				}
+			}
+			
+			if(pacer != null)
+			{
+				System.err.println(pacer.getStatistics());
+			}
+			
+			System.err.println(streamer.getTelemetry().getStatistics());
+			System.err.println(FrameBufferPool.getShared().getStatistics());
+			
+			if(telemetryLog != null)
+			{
+				telemetryLog.close();
+			}
 		}
 		catch(Throwable ex)
 		{
+			System.err.println(ex.toString());
 		}
-
-		/*
-		 * Create and display the form
-		 */
-		java.awt.EventQueue.invokeLater(new Runnable()
+	}
+	
+	/**
+	 * Expands a delta frame set in full, either as raw video if --stream is given or in the selected output format.
+	 */
+	protected static void expand(CommandLine cmd)
+	{
+		try
 		{
-			public void run()
+			DeltaFrameSet frameSet = new DeltaFrameSet(cmd.getOption("expand", ""));
+			
+			try
 			{
-				double targetFrameRate = 60.0;
+				int width = frameSet.getWidth();
+				int height = frameSet.getHeight();
+				
+				FrameSetWriter writer;
 				
-				if(args.length > 0)
+				if(cmd.hasOption("stream"))
 				{
-					try
-					{
-						targetFrameRate = Double.parseDouble(args[0]);
-					}
-					catch(Throwable ex)
-					{
-						System.err.println(ex.toString());
-					}
+					writer = RawVideoSink.open(cmd.getOption("stream", "-"), width, height, createPixelConverter(cmd, RawPixelFormat.RGB24));
+				}
+				else
+				{
+					FrameSetGenerator generator = new FrameSetGenerator(frameSet.getFPS());
+					generator.setPixelConverter(createPixelConverter(cmd, null));
+					
+					writer = OutputFormat.fromName(cmd.getOption("format", OutputFormat.C.name())).createWriter(generator.getFileName(width, height, frameSet.getFrameCount()), width, height, frameSet.getFPS(), frameSet.getFrameCount(), generator.getPixelConverter());
 				}
 				
-				UEIT ueit = new UEIT(targetFrameRate);
+				try
+				{
+					frameSet.expand(writer);
+				}
+				finally
+				{
+					writer.close();
+				}
+			}
+			finally
+			{
+				frameSet.close();
+			}
+		}
+		catch(Throwable ex)
+		{
+			System.err.println(ex.toString());
+		}
+	}
+	
+	/**
+	 * @param args the command line arguments
+	 */
+	public static void main(final String args[])
+	{
+		final CommandLine cmd = new CommandLine(args);
+		
+		double targetFrameRate = 60.0;
+		
+		if(cmd.getPositionalCount() > 0)
+		{
+			try
+			{
+				targetFrameRate = Double.parseDouble(cmd.getPositional(0));
+			}
+			catch(Throwable ex)
+			{
+				System.err.println(ex.toString());
+			}
+		}
+		
+		SegmentDiskCache segmentStore = null;
+		
+		if(cmd.hasOption("segment-cache"))
+		{
+			String directory = cmd.getOption("segment-cache", "");
+			long maxSize = Math.round(cmd.getDoubleOption("segment-cache-size", 2048) * 1024 * 1024);
+			
+			segmentStore = new SegmentDiskCache(directory.isEmpty() ? SegmentDiskCache.getDefaultDirectory() : new File(directory), maxSize, new RasterPainter());
+		}
+		
+		long maxPixels = cmd.hasOption("segment-memory") ? Math.round(cmd.getDoubleOption("segment-memory", 0) * 1024 * 1024 / 4) : SegmentCache.getDefaultMaxPixels();
+		
+		SegmentCache segmentCache = new SegmentCache(maxPixels, segmentStore);
+		segmentCache.register();
+		
+		if(cmd.hasOption("frame-buffers"))
+		{
+			FrameBufferPool.setShared(new FrameBufferPool(Math.round(cmd.getDoubleOption("frame-buffers", 0) * 1024 * 1024)));
+		}
+		
+		FrameBufferPool.getShared().register();
+		
+		TelemetryCsvWriter telemetryLog = null;
+		
+		if(cmd.hasOption("telemetry"))
+		{
+			try
+			{
+				String fileName = cmd.getOption("telemetry", "");
+				
+				telemetryLog = new TelemetryCsvWriter(fileName.isEmpty() ? "telemetry.csv" : fileName);
+				telemetryLog.start(Math.round(cmd.getDoubleOption("telemetry-interval", 10) * 1000));
+			}
+			catch(IOException ex)
+			{
+				System.err.println(ex.toString());
+			}
+		}
+		
+		if(cmd.hasOption("batch"))
+		{
+			try
+			{
+				BatchRunner runner = new BatchRunner(BatchRunner.loadManifest(cmd.getOption("batch", "")));
+				runner.setSegmentCache(segmentCache);
+				
+				if(!runner.run())
+				{
+					System.exit(1);
+				}
+			}
+			catch(Throwable ex)
+			{
+				System.err.println(ex.toString());
+				System.exit(1);
+			}
+			
+			return;
+		}
+		
+		if(cmd.hasOption("expand"))
+		{
+			expand(cmd);
+			return;
+		}
+		
+		if(cmd.hasOption("stream"))
+		{
+			stream(cmd, targetFrameRate, segmentCache, telemetryLog);
+			return;
+		}
+		
+		if(cmd.getPositionalCount() >= 4)
+		{
+			try
+			{
+				int frameCount = Integer.parseInt(cmd.getPositional(1));
+				
+				int width = Integer.parseInt(cmd.getPositional(2));
+				int height = Integer.parseInt(cmd.getPositional(3));
+				
+				FrameSetGenerator generator = new FrameSetGenerator(targetFrameRate);
+				generator.setThreadCount(cmd.getIntOption("threads", generator.getThreadCount()));
+				generator.setOutputFormat(OutputFormat.fromName(cmd.getOption("format", generator.getOutputFormat().name())));
+				generator.setVerify(cmd.hasOption("verify"));
+				generator.setWriteLayout(cmd.hasOption("layout"));
+				generator.setPixelConverter(createPixelConverter(cmd, null));
+				generator.setSegmentCache(segmentCache);
+				generator.setTileHeight(cmd.getIntOption("tile-height", 0));
+				generator.setEncoderThreadCount(cmd.getIntOption("encoder-threads", generator.getEncoderThreadCount()));
+				generator.setQueueCapacity(cmd.getIntOption("queue-depth", 0));
+				
+				generator.getTelemetry().register();
+				
+				for(PipelineStage stage : generator.getStages())
+				{
+					stage.register();
+				}
 				
-				if(args.length >= 4)
+				if(telemetryLog != null)
+				{
+					telemetryLog.add(generator.getTelemetry());
+				}
+				
+				generator.generate(width, height, frameCount);
+				
+				System.out.println(generator.getTelemetry().getStatistics());
+				
+				for(PipelineStage stage : generator.getStages())
+				{
+					System.out.println(stage.getStatistics());
+				}
+				
+				System.out.println(FrameBufferPool.getShared().getStatistics());
+				System.out.println("Row kernels: " + RowKernels.get().getName());
+				generator.getTelemetry().unregister();
+			}
+			catch(Throwable ex)
+			{
+				System.err.println(ex.toString());
+			}
+			
+			if(GraphicsEnvironment.isHeadless())
+			{
+				if(telemetryLog != null)
 				{
 					try
 					{
-						int frameCount = Integer.parseInt(args[1]);
-						
-						int width = Integer.parseInt(args[2]);
-						int height = Integer.parseInt(args[3]);
-						
-						ueit.generateImageSet(width, height, frameCount);
+						telemetryLog.close();
 					}
-					catch(Throwable ex)
+					catch(IOException ex)
 					{
 						System.err.println(ex.toString());
 					}
 				}
 				
-				ueit.setVisible(true);
+				return;
+			}
+		}
+		
+		try
+		{
+			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+		}
+		catch(Throwable ex)
+		{
+		}
+		
+		final double frameRate = cmd.hasOption("multi-monitor") && cmd.getPositionalCount() == 0 ? 0 : targetFrameRate;
+		final TelemetryCsvWriter displayTelemetryLog = telemetryLog;
+		final SegmentCache displaySegmentCache = segmentCache;
+		
+		/*
+		 * Create and display the form
+		 */
+		java.awt.EventQueue.invokeLater(new Runnable()
+		{
+			public void run()
+			{
+				if(cmd.hasOption("multi-monitor"))
+				{
+					MultiDisplay.open(cmd, frameRate, displaySegmentCache, displayTelemetryLog);
+				}
+				else
+				{
+					createWindow(cmd, frameRate, null, displaySegmentCache, displayTelemetryLog).setVisible(true);
+				}
 			}
 		});
 	}
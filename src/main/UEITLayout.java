@@ -0,0 +1,883 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Geometry of the test chart for one resolution, computed once: every rectangle, line, circle and ramp
+ * as a list of primitives in paint order, with circles and diagonal lines also rasterized into row spans.
+ * Painters only walk the list, so any backend draws the same pixels without repeating the arithmetic.
+ * Layouts are immutable and serializable, and can be written out as a C header for the firmware.
+ * <p>
+ * Each primitive takes STRIDE ints: type, four coordinates, color, stroke width (1 or 2) and a type specific value.
+ * Fills, circles, ramps and ticks hold x, y, w, h; lines hold x1, y1, x2, y2 with both end points included.
+ */
+public class UEITLayout implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Graphics.fillRect(x, y, w, h).
+	 */
+	public static final int FILL		= 0;
+	
+	/**
+	 * Horizontal or vertical Graphics.drawLine(x1, y1, x2, y2) with a 1 px stroke.
+	 */
+	public static final int LINE		= 1;
+	
+	/**
+	 * Horizontal or vertical Graphics.drawLine(x1, y1, x2, y2) with a 2 px stroke.
+	 */
+	public static final int WIDE_LINE	= 2;
+	
+	/**
+	 * Graphics.fillArc(x, y, w, h, 0, 360), value is the index of its spans.
+	 */
+	public static final int ARC			= 3;
+	
+	/**
+	 * Diagonal Graphics.drawLine(x1, y1, x2, y2), value is the index of its spans.
+	 */
+	public static final int DIAGONAL	= 4;
+	
+	/**
+	 * One color per column, from y to y + h inclusive; value is the index of the column colors.
+	 */
+	public static final int RAMP		= 5;
+	
+	/**
+	 * Pack of vertical ticks as in RasterCanvas.drawTicks(), value is the tick thickness.
+	 */
+	public static final int TICKS		= 6;
+	
+	/**
+	 * Place of the segment highlights in the paint order.
+	 */
+	public static final int SEGMENT		= 7;
+	
+	public static final int STRIDE = 8;
+	
+	protected static final String[] TYPE_NAMES = { "FILL", "LINE", "WIDE_LINE", "ARC", "DIAGONAL", "RAMP", "TICKS", "SEGMENT" };
+	
+	protected static final int SEGMENT_COUNT = 8;
+	
+	/**
+	 * Most recently used layouts.
+	 */
+	protected static final int CACHE_SIZE = 8;
+	protected static final LinkedHashMap<String, UEITLayout> cache = new LinkedHashMap<String, UEITLayout>(16, 0.75f, true);
+	
+	protected final int width;
+	protected final int height;
+	
+	protected final int numRows;
+	protected final int numCols;
+	
+	protected int[] primitives = new int[STRIDE * 256];
+	protected int count;
+	
+	/**
+	 * Spans of circles and diagonal lines as { row, x1, x2 } triples exclusive of x2, and ramp column colors.
+	 */
+	protected int[][] data;
+	
+	/**
+	 * Top and bottom highlight of every segment as x, y, w, h.
+	 */
+	protected final int[] segments = new int[SEGMENT_COUNT * 2 * 4];
+	
+	/**
+	 * Info line rectangle as x, y, w, h, and the centers of its character cells.
+	 */
+	protected final int[] infoLine = new int[4];
+	protected final int[] infoCellX = new int[GlyphAtlas.INFO_LINE_LENGTH];
+	protected final int infoCellY;
+	
+	public UEITLayout(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		
+		numRows = 18;
+		numCols = UEITPainter.getNumCols(width, height);
+		
+		List<int[]> data = new ArrayList<int[]>();
+		
+		int x, y, w, h;
+		boolean flag;
+		
+		int bigCircleSize = numRows - 2;
+		
+		int black = UEITPainter.COLOR_BLACK.getRGB();
+		int darkGray = UEITPainter.COLOR_DARK_GRAY.getRGB();
+		int lightGray = UEITPainter.COLOR_LIGHT_GRAY.getRGB();
+		
+		// Background
+		
+		add(FILL, 0, 0, width, height, darkGray, 1, 0);
+		
+		// Big circle
+		
+		x = width * (numCols - bigCircleSize) / 2 / numCols;
+		y = height * (numRows - bigCircleSize) / 2 / numRows;
+		
+		w = width * bigCircleSize / numCols;
+		h = height * bigCircleSize / numRows;
+		
+		addShape(data, ARC, x, y, w, h, lightGray, 1);
+		
+		// Top rectangle within big circle
+		
+		x = width * (numCols - 4) / 2 / numCols;
+		y = height * 3 / (numRows * 2);
+		
+		w = width * 4 / numCols;
+		h = height * 1 / numRows;
+		
+		add(FILL, x, y, w, h, darkGray, 1, 0);
+		
+		// Second (info line) rectangle within big circle
+		
+		x = width * (numCols - 10) / 2 / numCols;
+		y = height * 3 / (numRows);
+		
+		w = width * 10 / numCols;
+		h = height * 1 / numRows;
+		
+		add(FILL, x, y, w, h, darkGray, 1, 0);
+		
+		infoLine[0] = x;
+		infoLine[1] = y;
+		infoLine[2] = w;
+		infoLine[3] = h;
+		
+		for(int i = 0; i < infoCellX.length; i++)
+		{
+			infoCellX[i] = width * (numCols - 10 + 1 + i * 2) / 2 / numCols;
+		}
+		
+		infoCellY = height * 7 / 2 / numRows;
+		
+		// Bottom rectangle within big circle
+		
+		x = width * (numCols - 4) / 2 / numCols;
+		y = height * (numRows * 2 - 5) / (numRows * 2);
+		
+		w = width * 4 / numCols;
+		h = height * 1 / numRows;
+		
+		add(FILL, x, y, w, h, darkGray, 1, 0);
+		
+		// Segment highlights within the top and bottom rectangles
+		
+		w = width * 1 / numCols;
+		h = height * 1 / 2 / numRows;
+		
+		for(int i = 0; i < SEGMENT_COUNT; i++)
+		{
+			x = width * ((numCols - 4) / 2 + i % 4) / numCols;
+			
+			setSegment(i, 0, x, height * (3 + i / 4) / (numRows * 2), w, h);
+			setSegment(i, 1, x, height * (numRows * 2 - 5 + i / 4) / (numRows * 2), w, h);
+		}
+		
+		add(SEGMENT, 0, 0, 0, 0, lightGray, 1, 0);
+		
+		// Main grid
+		
+		for(int i = 1; i < numRows; i++)
+		{
+			y = height * i / numRows;
+			add(WIDE_LINE, 0, y, width, y, lightGray, 2, 0);
+		}
+		
+		for(int i = 1; i < numCols; i++)
+		{
+			x = width * i / numCols;
+			add(WIDE_LINE, x, 0, x, height, lightGray, 2, 0);
+		}
+		
+		// Third (center) rectangle within big circle
+		
+		x = width * (numCols - 6) / 2 / numCols;
+		y = height * 8 / numRows;
+		
+		w = width * 6 / numCols;
+		h = height * 2 / numRows;
+		
+		add(FILL, x, y, w, h, darkGray, 1, 0);
+		
+		add(WIDE_LINE, x + 0, y + 0, x + w, y + 0, lightGray, 2, 0);
+		add(WIDE_LINE, x + 0, y + h, x + w, y + h, lightGray, 2, 0);
+		
+		add(WIDE_LINE, x + 0, y + 0, x + 0, y + h, lightGray, 2, 0);
+		add(WIDE_LINE, x + w, y + 0, x + w, y + h, lightGray, 2, 0);
+		
+		x = width / 2;
+		y = height / 2;
+		
+		w = width * 1 / numCols;
+		h = height * 1 / numRows;
+		
+		add(WIDE_LINE, x - w, y + 0, x + w, y + 0, lightGray, 2, 0);
+		
+		add(WIDE_LINE, x - w, y - h, x - w, y + h, lightGray, 2, 0);
+		add(WIDE_LINE, x + 0, y - h, x + 0, y + h, lightGray, 2, 0);
+		add(WIDE_LINE, x + w, y - h, x + w, y + h, lightGray, 2, 0);
+		
+		add(WIDE_LINE, x - w * 2, y, x - w * 2, y, lightGray, 2, 0);
+		add(WIDE_LINE, x + w * 2, y, x + w * 2, y, lightGray, 2, 0);
+		
+		// Center diagonal lines (left)
+		
+		x = width * (numCols / 2 - 3 - 5) / numCols;
+		y = height * 8 / numRows;
+		
+		w = width * 5 / numCols;
+		h = height * 1 / numRows;
+		
+		add(FILL, x, y, w, h, lightGray, 1, 0);
+		add(FILL, x, y + h, w, h, black, 1, 0);
+		
+		add(WIDE_LINE, x + w / 10, y, x + w / 10, y + h, black, 2, 0);
+		add(WIDE_LINE, x + w / 10, y + h, x + w / 10, y + h * 2, lightGray, 2, 0);
+		
+		x = width * (numCols / 2 - 3 - 4) / numCols;
+		y = height * 9 / numRows;
+		
+		w = width * 7 / 2 / numCols;
+		h = height * 1 / numRows;
+		
+		addShape(data, DIAGONAL, x, y + h, x + w, y, lightGray, 2);
+		
+		// Center diagonal lines (right)
+		
+		x = width * (numCols / 2 + 3) / numCols;
+		y = height * 8 / numRows;
+		
+		w = width * 5 / numCols;
+		h = height * 1 / numRows;
+		
+		add(FILL, x, y, w, h, black, 1, 0);
+		add(FILL, x, y + h, w, h, lightGray, 1, 0);
+		
+		x = width * (numCols + 7) / 2 / numCols;
+		y = height * 8 / numRows;
+		
+		w = width * 7 / 2 / numCols;
+		h = height * 1 / numRows;
+		
+		addShape(data, DIAGONAL, x, y + h, x + w, y, lightGray, 2);
+		
+		// Complementary color bars
+		
+		w = (width + numCols * 2 - 1) / (numCols * 2);
+		h = height * 1 / numRows;
+		
+		y = height * 7 / numRows;
+		
+		flag = false;
+		
+		for(int i = 0; i < 10; i++)
+		{
+			x = width * (numCols - bigCircleSize + i) / (numCols * 2);
+			add(FILL, x, y, w, h, (flag ? UEITPainter.COLOR_GREEN_75 : UEITPainter.COLOR_MAGENTA_75).getRGB(), 1, 0);
+			
+			flag = !flag;
+		}
+		
+		flag = false;
+		
+		for(int i = 10; i < 22; i++)
+		{
+			x = width * (numCols - bigCircleSize + i) / (numCols * 2);
+			add(FILL, x, y, w, h, (flag ? UEITPainter.COLOR_BLUE_75 : UEITPainter.COLOR_YELLOW_75).getRGB(), 1, 0);
+			
+			flag = !flag;
+		}
+		
+		flag = false;
+		
+		for(int i = 22; i < 32; i++)
+		{
+			x = width * (numCols - bigCircleSize + i) / (numCols * 2);
+			add(FILL, x, y, w, h, (flag ? UEITPainter.COLOR_CYAN_75 : UEITPainter.COLOR_RED_75).getRGB(), 1, 0);
+			
+			flag = !flag;
+		}
+		
+		// Color gradient
+		
+		x = width * (numCols - bigCircleSize) / 2 / numCols;
+		y = height * 10 / numRows;
+		
+		w = width * bigCircleSize / numCols;
+		h = height * 1 / numRows;
+		
+		addRamp(data, x, y, w, h, 0xFF00FF, 0x00FF00);
+		
+		// Tick packs
+		
+		int sidePackSize = numCols / 7;
+		int mainPackSize = numCols - sidePackSize * 6;
+		
+		h = height * 1 / numRows;
+		y = height * 11 / numRows;
+		
+		add(FILL, 0, y, width, h, black, 1, 0);
+		
+		// 1 px
+		
+		x = width * (numCols - mainPackSize) / 2 / numCols;
+		w = width * mainPackSize / numCols;
+		
+		add(TICKS, x, y, w, h, lightGray, 1, 1);
+		
+		// 2 px
+		
+		x = width * ((numCols - mainPackSize) / 2 - sidePackSize) / numCols;
+		w = width * sidePackSize / numCols;
+		
+		add(TICKS, x, y, w, h, lightGray, 1, 2);
+		
+		x = width * ((numCols + mainPackSize) / 2) / numCols;
+		
+		add(TICKS, x, y, w, h, lightGray, 1, 2);
+		
+		// 3 px
+		
+		x = width * ((numCols - mainPackSize) / 2 - sidePackSize * 2) / numCols;
+		
+		add(TICKS, x, y, w, h, lightGray, 1, 3);
+		
+		x = width * ((numCols + mainPackSize) / 2 + sidePackSize) / numCols;
+		
+		add(TICKS, x, y, w, h, lightGray, 1, 3);
+		
+		// 4 px
+		
+		x = width * ((numCols - mainPackSize) / 2 - sidePackSize * 3) / numCols;
+		
+		add(TICKS, x, y, w, h, lightGray, 1, 4);
+		
+		x = width * ((numCols + mainPackSize) / 2 + sidePackSize * 2) / numCols;
+		
+		add(TICKS, x, y, w, h, lightGray, 1, 4);
+		
+		// Black squares at the bottom of the big circle
+		
+		x = width * (numCols - 10 + 1) / 2 / numCols;
+		y = height * 14 / numRows;
+		
+		w = width * 1 / numCols;
+		h = height * 1 / numRows;
+		
+		for(int i = 0; i < 5; i++)
+		{
+			add(FILL, x + w * i * 2, y, w, h, black, 1, 0);
+		}
+		
+		// Top small circles. Non-antialiased fills depend on the current stroke,
+		// which the crosshair of the previous circle leaves at 2 px
+		
+		addSmallCircle(data, false, 0, 0, 1);
+		addSmallCircle(data, true, 0, numCols - 4, 2);
+		
+		// Top color bars
+		
+		w = (width + 7) / 8;
+		h = height * 2 / numRows;
+		
+		y = height * 4 / numRows;
+		
+		for(int i = 0; i < 8; i++)
+		{
+			x = width * i / 8;
+			add(FILL, x, y, w, h, UEITPainter.COLOR_BARS[0][i].getRGB(), 1, 0);
+		}
+		
+		// Grayscale
+		
+		h = height * 1 / numRows;
+		y = height * 6 / numRows;
+		
+		addRamp(data, 0, y, width, h, 0xFFFFFF, 0);
+		
+		// Bottom color bars
+		
+		w = (width + 7) / 8;
+		h = height * 2 / numRows;
+		
+		y = height * 12 / numRows;
+		
+		for(int i = 0; i < 8; i++)
+		{
+			x = width * i / 8;
+			add(FILL, x, y, w, h, UEITPainter.COLOR_BARS[1][i].getRGB(), 1, 0);
+		}
+		
+		// Bottom small circles
+		
+		addSmallCircle(data, true, numRows - 4, 0, 1);
+		addSmallCircle(data, false, numRows - 4, numCols - 4, 2);
+		
+		// Outer frame
+		
+		add(WIDE_LINE, 1, 1, width - 1, 1, lightGray, 2, 0);
+		add(WIDE_LINE, width - 1, 1, width - 1, height - 1, lightGray, 2, 0);
+		add(WIDE_LINE, 1, height - 1, width - 1, height - 1, lightGray, 2, 0);
+		add(WIDE_LINE, 1, 1, 1, height - 1, lightGray, 2, 0);
+		
+		primitives = Arrays.copyOf(primitives, count * STRIDE);
+		this.data = data.toArray(new int[data.size()][]);
+	}
+	
+	/**
+	 * Returns the layout for the given resolution, keeping the most recently used ones.
+	 */
+	public static UEITLayout get(int width, int height)
+	{
+		String key = width + "x" + height;
+		
+		synchronized(cache)
+		{
+			UEITLayout layout = cache.get(key);
+			
+			if(layout == null)
+			{
+				layout = new UEITLayout(width, height);
+				cache.put(key, layout);
+				
+				if(cache.size() > CACHE_SIZE)
+				{
+					cache.remove(cache.keySet().iterator().next());
+				}
+			}
+			
+			return layout;
+		}
+	}
+	
+	protected void add(int type, int a, int b, int c, int d, int rgb, int stroke, int value)
+	{
+		if(primitives.length < (count + 1) * STRIDE)
+		{
+			primitives = Arrays.copyOf(primitives, primitives.length * 2);
+		}
+		
+		int offset = count++ * STRIDE;
+		
+		primitives[offset + 0] = type;
+		primitives[offset + 1] = a;
+		primitives[offset + 2] = b;
+		primitives[offset + 3] = c;
+		primitives[offset + 4] = d;
+		primitives[offset + 5] = rgb;
+		primitives[offset + 6] = stroke;
+		primitives[offset + 7] = value;
+	}
+	
+	protected void addShape(List<int[]> data, int type, int a, int b, int c, int d, int rgb, int stroke)
+	{
+		add(type, a, b, c, d, rgb, stroke, data.size());
+		data.add(rasterize(type == DIAGONAL, a, b, c, d, stroke == 2 ? UEITPainter.STROKE_2PX : UEITPainter.STROKE_1PX));
+	}
+	
+	protected void addRamp(List<int[]> data, int x, int y, int w, int h, int rising, int falling)
+	{
+		int[] colors = new int[w];
+		RowKernels.get().ramp(colors, w, rising, falling);
+		
+		add(RAMP, x, y, w, h, colors.length > 0 ? colors[0] : 0, 1, data.size());
+		data.add(colors);
+	}
+	
+	protected void setSegment(int segment, int index, int x, int y, int w, int h)
+	{
+		int offset = (segment * 2 + index) * 4;
+		
+		segments[offset + 0] = x;
+		segments[offset + 1] = y;
+		segments[offset + 2] = w;
+		segments[offset + 3] = h;
+	}
+	
+	/**
+	 * Small circle with a black square inside, rotated or not, whose top left corner is in the given grid cell.
+	 * The circle and the square are filled with the given stroke.
+	 */
+	protected void addSmallCircle(List<int[]> data, boolean rotate, int row, int col, int stroke)
+	{
+		int black = UEITPainter.COLOR_BLACK.getRGB();
+		int lightGray = UEITPainter.COLOR_LIGHT_GRAY.getRGB();
+		
+		int x = width * col / numCols;
+		int y = height * row / numRows;
+		
+		int w = width * 4 / numCols;
+		int h = height * 4 / numRows;
+		
+		addShape(data, ARC, x, y, w, h, lightGray, stroke);
+		
+		x = width * (col + 1) / numCols;
+		y = height * (row + 1) / numRows;
+		
+		w = width * 2 / numCols;
+		h = height * 2 / numRows;
+		
+		add(FILL, x, y, w, h, black, stroke, 0);
+		
+		if(rotate)
+		{
+			w = width * 2 / 3 / numCols;
+			h = height * 2 / numRows;
+			
+			for(int i = y; i < y + h; i += 2)
+			{
+				add(LINE, x - 2, i, x + w, i, lightGray, 1, 0);
+			}
+			
+			x += w * 2;
+			
+			for(int i = y; i < y + h; i += 4)
+			{
+				add(LINE, x, i + 0, x + w + 2, i + 0, lightGray, 1, 0);
+				add(LINE, x, i + 1, x + w + 2, i + 1, lightGray, 1, 0);
+			}
+			
+			x = width * (col + 2) / numCols;
+			y = height * (row + 2) / numRows;
+			
+			add(WIDE_LINE, x - w / 3, y, x + w / 3, y, lightGray, 2, 0);
+			add(WIDE_LINE, x, y - w / 3, x, y + w / 3, lightGray, 2, 0);
+		}
+		else
+		{
+			w = width * 2 / numCols;
+			h = height * 2 / 3 / numRows;
+			
+			for(int i = x; i < x + w; i += 2)
+			{
+				add(LINE, i, y - 2, i, y + h, lightGray, 1, 0);
+			}
+			
+			y += h * 2;
+			
+			for(int i = x; i < x + w; i += 4)
+			{
+				add(LINE, i + 0, y, i + 0, y + h + 2, lightGray, 1, 0);
+				add(LINE, i + 1, y, i + 1, y + h + 2, lightGray, 1, 0);
+			}
+			
+			x = width * (col + 2) / numCols;
+			y = height * (row + 2) / numRows;
+			
+			add(WIDE_LINE, x - h / 3, y, x + h / 3, y, lightGray, 2, 0);
+			add(WIDE_LINE, x, y - h / 3, x, y + h / 3, lightGray, 2, 0);
+		}
+	}
+	
+	/**
+	 * Draws g.drawLine(a, b, c, d) or g.fillArc(a, b, c, d, 0, 360) at frame coordinates into a 1 bit per pixel mask
+	 * that just reaches the bottom right corner of the shape, then scans the spans it covers.
+	 */
+	protected static int[] rasterize(boolean line, int a, int b, int c, int d, BasicStroke stroke)
+	{
+		Rectangle bounds = line ? new Rectangle(Math.min(a, c), Math.min(b, d), Math.abs(c - a), Math.abs(d - b)) : new Rectangle(a, b, c, d);
+		int margin = (int)Math.ceil(stroke.getLineWidth()) + 2;
+		
+		int x1 = Math.max(bounds.x - margin, 0);
+		int y1 = Math.max(bounds.y - margin, 0);
+		
+		int x2 = Math.max(bounds.x + bounds.width + margin, 1);
+		int y2 = Math.max(bounds.y + bounds.height + margin, 1);
+		
+		BufferedImage mask = new BufferedImage(x2, y2, BufferedImage.TYPE_BYTE_BINARY);
+		byte[] data = ((DataBufferByte)mask.getRaster().getDataBuffer()).getData();
+		int stride = (x2 + 7) / 8;
+		
+		Graphics2D g = (Graphics2D)mask.getGraphics();
+		g.setColor(UEITPainter.COLOR_WHITE_100);
+		g.setStroke(stroke);
+		
+		if(line)
+		{
+			g.drawLine(a, b, c, d);
+		}
+		else
+		{
+			g.fillArc(a, b, c, d, 0, 360);
+		}
+		
+		g.dispose();
+		
+		int[] result = new int[64];
+		int count = 0;
+		
+		for(int y = y1; y < y2; y++)
+		{
+			int start = -1;
+			
+			for(int x = x1; x <= x2; x++)
+			{
+				boolean set = x < x2 && (data[y * stride + (x >> 3)] & (0x80 >> (x & 7))) != 0;
+				
+				if(set && start < 0)
+				{
+					start = x;
+				}
+				else if(!set && start >= 0)
+				{
+					if(count + 3 > result.length)
+					{
+						result = Arrays.copyOf(result, result.length * 2);
+					}
+					
+					result[count++] = y;
+					result[count++] = start;
+					result[count++] = x;
+					
+					start = -1;
+				}
+			}
+		}
+		
+		return Arrays.copyOf(result, count);
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	public int getNumRows()
+	{
+		return numRows;
+	}
+	
+	public int getNumCols()
+	{
+		return numCols;
+	}
+	
+	/**
+	 * Number of primitives, each taking STRIDE ints of getPrimitives().
+	 */
+	public int getPrimitiveCount()
+	{
+		return count;
+	}
+	
+	public int[] getPrimitives()
+	{
+		return primitives.clone();
+	}
+	
+	/**
+	 * Spans or column colors of a primitive, by its value.
+	 */
+	public int[] getData(int index)
+	{
+		return data[index].clone();
+	}
+	
+	/**
+	 * Returns the top (index 0) or bottom (index 1) highlight of a segment as x, y, w, h.
+	 */
+	public int[] getSegment(int segment, int index)
+	{
+		return Arrays.copyOfRange(segments, (segment * 2 + index) * 4, (segment * 2 + index) * 4 + 4);
+	}
+	
+	/**
+	 * Returns the info line rectangle as x, y, w, h.
+	 */
+	public int[] getInfoLine()
+	{
+		return infoLine.clone();
+	}
+	
+	public int getInfoCellX(int index)
+	{
+		return infoCellX[index];
+	}
+	
+	public int getInfoCellY()
+	{
+		return infoCellY;
+	}
+	
+	/**
+	 * Writes filename.h with the layout as C tables: the primitives in paint order, the spans of circles
+	 * and diagonal lines, the segment highlights and the info line character cells.
+	 */
+	public void writeHeader(String filename, int fps, int frameCount) throws IOException
+	{
+		CHeader header = new CHeader(filename, width, height, fps, frameCount);
+		
+		try
+		{
+			header.append(define("UEIT_LAYOUT_ROWS", numRows));
+			header.append(define("UEIT_LAYOUT_COLS", numCols));
+			header.append("");
+			
+			for(int i = 0; i < TYPE_NAMES.length; i++)
+			{
+				header.append(define("UEIT_LAYOUT_" + TYPE_NAMES[i], i));
+			}
+			
+			header.append("");
+			header.append("/*");
+			header.append(" * Primitives in paint order: type, x, y, w, h (x1, y1, x2, y2 with both end points for lines), 0xRRGGBB,");
+			header.append(" * stroke width, then the first span and span count for ARC and DIAGONAL, the tick thickness for TICKS");
+			header.append(" * and the last column color for RAMP, whose color is the one of the first column.");
+			header.append(" */");
+			header.append(define("UEIT_LAYOUT_COUNT", count));
+			header.append("");
+			header.append("static const int32_t UEIT_LAYOUT[UEIT_LAYOUT_COUNT][9] =");
+			header.append("{");
+			
+			int spanCount = 0;
+			
+			for(int i = 0; i < count * STRIDE; i += STRIDE)
+			{
+				int type = primitives[i];
+				int param = 0;
+				int length = 0;
+				
+				if(type == ARC || type == DIAGONAL)
+				{
+					param = spanCount;
+					length = data[primitives[i + 7]].length / 3;
+					
+					spanCount += length;
+				}
+				else if(type == TICKS)
+				{
+					param = primitives[i + 7];
+				}
+				else if(type == RAMP)
+				{
+					int[] colors = data[primitives[i + 7]];
+					param = colors.length > 0 ? colors[colors.length - 1] & 0xFFFFFF : 0;
+				}
+				
+				header.append(String.format("\t{ UEIT_LAYOUT_%s, %d, %d, %d, %d, 0x%06X, %d, %s, %d },", TYPE_NAMES[type],
+											primitives[i + 1], primitives[i + 2], primitives[i + 3], primitives[i + 4],
+											primitives[i + 5] & 0xFFFFFF, primitives[i + 6], type == RAMP ? String.format("0x%06X", param) : Integer.toString(param), length));
+			}
+			
+			header.append("};");
+			header.append("");
+			header.append("/*");
+			header.append(" * Rows covered by circles and diagonal lines: y, x1, x2 exclusive of x2.");
+			header.append(" */");
+			header.append(define("UEIT_LAYOUT_SPAN_COUNT", spanCount));
+			header.append("");
+			header.append("static const int32_t UEIT_LAYOUT_SPANS[UEIT_LAYOUT_SPAN_COUNT][3] =");
+			header.append("{");
+			
+			for(int i = 0; i < count * STRIDE; i += STRIDE)
+			{
+				if(primitives[i] == ARC || primitives[i] == DIAGONAL)
+				{
+					int[] spans = data[primitives[i + 7]];
+					
+					for(int j = 0; j < spans.length; j += 3)
+					{
+						header.append("\t{ " + spans[j] + ", " + spans[j + 1] + ", " + spans[j + 2] + " },");
+					}
+				}
+			}
+			
+			header.append("};");
+			header.append("");
+			header.append("/*");
+			header.append(" * Top and bottom highlight of every segment within the rectangles of the big circle: x, y, w, h.");
+			header.append(" */");
+			header.append("static const int32_t UEIT_LAYOUT_SEGMENTS[" + SEGMENT_COUNT + "][2][4] =");
+			header.append("{");
+			
+			for(int i = 0; i < SEGMENT_COUNT; i++)
+			{
+				int offset = i * 8;
+				
+				header.append("\t{ { " + segments[offset + 0] + ", " + segments[offset + 1] + ", " + segments[offset + 2] + ", " + segments[offset + 3] + " }, " +
+								 "{ " + segments[offset + 4] + ", " + segments[offset + 5] + ", " + segments[offset + 6] + ", " + segments[offset + 7] + " } },");
+			}
+			
+			header.append("};");
+			header.append("");
+			header.append(define("UEIT_INFO_LINE_X", infoLine[0]));
+			header.append(define("UEIT_INFO_LINE_Y", infoLine[1]));
+			header.append(define("UEIT_INFO_LINE_W", infoLine[2]));
+			header.append(define("UEIT_INFO_LINE_H", infoLine[3]));
+			header.append("");
+			header.append("/*");
+			header.append(" * Centers of the info line character cells.");
+			header.append(" */");
+			header.append(define("UEIT_INFO_CELL_Y", infoCellY));
+			header.append("");
+			
+			StringBuilder cells = new StringBuilder("static const int32_t UEIT_INFO_CELL_X[" + infoCellX.length + "] = { ");
+			
+			for(int i = 0; i < infoCellX.length; i++)
+			{
+				cells.append(i > 0 ? ", " : "").append(infoCellX[i]);
+			}
+			
+			header.append(cells.append(" };").toString());
+			header.append("");
+		}
+		finally
+		{
+			header.close();
+		}
+	}
+	
+	/**
+	 * Returns a #define line with the value aligned to the column of the other macros.
+	 */
+	protected static String define(String name, int value)
+	{
+		StringBuilder line = new StringBuilder("#define ").append(name);
+		
+		for(int column = line.length() / 4 * 4; column < 36; column += 4)
+		{
+			line.append('\t');
+		}
+		
+		return line.append(value).toString();
+	}
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+public class UEITPainter
+{
+	/**
+	 * Version of the rendered pattern, part of the key of cached segment images.
+	 * Must be incremented whenever a change alters the rendered pixels.
+	 */
+	public static final int RENDERER_VERSION = 1;
+	
+	protected static final double ASPECT_4_3		= 4.0 / 3.0;
+	protected static final double ASPECT_16_9		= 16.0 / 9.0;
+	
+	protected static final double ASPECT_THRESHOLD	= (ASPECT_4_3 + ASPECT_16_9) / 2.0;
+	
+	protected static final BasicStroke STROKE_1PX = new BasicStroke(1);
+	protected static final BasicStroke STROKE_2PX = new BasicStroke(2);
+	
+	protected static final Color COLOR_BLACK		= new Color(0x000000);
+	protected static final Color COLOR_DARK_GRAY	= new Color(0x505050);
+	protected static final Color COLOR_LIGHT_GRAY	= new Color(0xC0C0C0);
+	
+	protected static final Color COLOR_WHITE_75		= new Color(0xFFFFFF);
+	protected static final Color COLOR_YELLOW_75	= new Color(0xFFFF6C);
+	protected static final Color COLOR_CYAN_75		= new Color(0x6CFFFF);
+	protected static final Color COLOR_GREEN_75		= new Color(0x6CFF6C);
+	protected static final Color COLOR_MAGENTA_75	= new Color(0xFF6CFF);
+	protected static final Color COLOR_RED_75		= new Color(0xFF6C6C);
+	protected static final Color COLOR_BLUE_75		= new Color(0x6C6CFF);
+	protected static final Color COLOR_BLACK_75		= new Color(0x404040);
+	
+	protected static final Color COLOR_WHITE_100	= new Color(0xFFFFFF);
+	protected static final Color COLOR_YELLOW_100	= new Color(0xFFFF00);
+	protected static final Color COLOR_CYAN_100		= new Color(0x00FFFF);
+	protected static final Color COLOR_GREEN_100	= new Color(0x00FF00);
+	protected static final Color COLOR_MAGENTA_100	= new Color(0xFF00FF);
+	protected static final Color COLOR_RED_100		= new Color(0xFF0000);
+	protected static final Color COLOR_BLUE_100		= new Color(0x0000FF);
+	protected static final Color COLOR_BLACK_100	= new Color(0x000000);
+	
+	protected static final Color[][] COLOR_BARS =
+	{
+		{
+			COLOR_WHITE_75,
+			COLOR_YELLOW_75,
+			COLOR_CYAN_75,
+			COLOR_GREEN_75,
+			COLOR_MAGENTA_75,
+			COLOR_RED_75,
+			COLOR_BLUE_75,
+			COLOR_BLACK_75
+		},
+		{
+			COLOR_WHITE_100,
+			COLOR_YELLOW_100,
+			COLOR_CYAN_100,
+			COLOR_GREEN_100,
+			COLOR_MAGENTA_100,
+			COLOR_RED_100,
+			COLOR_BLUE_100,
+			COLOR_BLACK_100
+		}
+	};
+	
+	protected volatile GlyphAtlas atlas;
+	
+	public static int getNumCols(int width, int height)
+	{
+		double aspect = (double)width / (double)height;
+		
+		if(aspect >= ASPECT_THRESHOLD)
+		{
+			return 32;
+		}
+		else
+		{
+			return 24;
+		}
+	}
+	
+	public static String formatInfoLine(int fps, int frameNumber)
+	{
+		return new String(formatInfoLine(new char[GlyphAtlas.INFO_LINE_LENGTH], fps, frameNumber));
+	}
+	
+	/**
+	 * Fills the buffer with the info line for the given frame: "FPS:nn nnn".
+	 */
+	public static char[] formatInfoLine(char[] infoline, int fps, int frameNumber)
+	{
+		infoline[0] = 'F';
+		infoline[1] = 'P';
+		infoline[2] = 'S';
+		infoline[3] = ':';
+		
+		infoline[4] = (char)('0' + (fps / 10) % 10);
+		infoline[5] = (char)('0' + (fps) % 10);
+		
+		infoline[6] = ' ';
+		
+		infoline[7] = (char)('0' + (frameNumber / 100) % 10);
+		infoline[8] = (char)('0' + (frameNumber / 10) % 10);
+		infoline[9] = (char)('0' + (frameNumber) % 10);
+		
+		return infoline;
+	}
+	
+	public static Font deriveInfoLineFont(Graphics2D g, int h)
+	{
+		float targetFontHeight = (float)(h * 1.0);
+		
+		Font font = Font.decode(null);
+		FontMetrics fm = g.getFontMetrics(font);
+		
+		return font.deriveFont(font.getSize() * targetFontHeight / fm.getHeight());
+	}
+	
+	/**
+	 * Returns the glyph atlas for the given resolution, keeping the most recently used one.
+	 */
+	public GlyphAtlas getGlyphAtlas(int width, int height)
+	{
+		GlyphAtlas atlas = this.atlas;
+		
+		if(atlas == null || atlas.getWidth() != width || atlas.getHeight() != height)
+		{
+			atlas = new GlyphAtlas(width, height);
+			this.atlas = atlas;
+		}
+		
+		return atlas;
+	}
+	
+	/**
+	 * Paints a frame from a pre-rendered segment image and the info line, same as
+	 * paintUEIT(g, width, height, -1, prerendered, infoline) but through the glyph atlas.
+	 */
+	public void paintUEIT(RasterCanvas c, RasterCanvas prerendered, char[] infoline)
+	{
+		System.arraycopy(prerendered.getData(), 0, c.getData(), 0, c.getWidth() * c.getHeight());
+		getGlyphAtlas(c.getWidth(), c.getHeight()).drawInfoLine(c, infoline);
+	}
+	
+	/**
+	 * Same as paintUEIT(c, prerendered, infoline) for a canvas that already holds the previous frame:
+	 * only the given region is copied from the prerendered image before the info line is drawn.
+	 */
+	public void paintUEIT(RasterCanvas c, RasterCanvas prerendered, char[] infoline, DirtyRegion region)
+	{
+		region.copy(prerendered.getData(), c.getData());
+		getGlyphAtlas(c.getWidth(), c.getHeight()).drawInfoLine(c, infoline);
+	}
+	
+	/**
+	 * Same as paintUEIT(c, prerendered, infoline), painting into an off-heap frame buffer.
+	 */
+	public void paintUEIT(FrameBuffer frame, RasterCanvas prerendered, char[] infoline)
+	{
+		frame.getPixels().put(prerendered.getData(), 0, frame.getWidth() * frame.getHeight());
+		getGlyphAtlas(frame.getWidth(), frame.getHeight()).drawInfoLine(frame.getPixels(), frame.getWidth(), frame.getHeight(), infoline);
+	}
+	
+	public BufferedImage renderSegment(int width, int height, int segment)
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = (Graphics2D)image.getGraphics();
+		
+		paintUEIT(g, width, height, segment, null, null);
+		g.dispose();
+		
+		return image;
+	}
+	
+	public BufferedImage[] renderSegments(int width, int height)
+	{
+		BufferedImage[] segments = new BufferedImage[8];
+		
+		for(int i = 0; i < segments.length; i++)
+		{
+			segments[i] = renderSegment(width, height, i);
+		}
+		
+		return segments;
+	}
+	
+	public void paintUEIT(Graphics2D g, int width, int height, int segment, Image prerendered, String infoline)
+	{
+		UEITLayout layout = UEITLayout.get(width, height);
+		
+		if(prerendered != null && infoline != null)
+		{
+			g.drawImage(prerendered, 0, 0, null);
+			
+			Font font = deriveInfoLineFont(g, layout.getInfoLine()[3]);
+			
+			g.setFont(font);
+			FontMetrics fm = g.getFontMetrics(font);
+
+			g.setColor(COLOR_LIGHT_GRAY);
+			g.setStroke(STROKE_1PX);
+			
+			for(int i = 0; i < Math.min(infoline.length(), 10); i++)
+			{
+				paintString(g, fm, infoline.substring(i, i + 1), layout.getInfoCellX(i), layout.getInfoCellY());
+			}
+		}
+		else
+		{
+			paintUEIT(g, layout, segment);
+		}
+	}
+	
+	/**
+	 * Draws the primitives of the layout through the graphics context, each with the stroke it was recorded with.
+	 */
+	public void paintUEIT(Graphics2D g, UEITLayout layout, int segment)
+	{
+		int[] primitives = layout.primitives;
+		
+		for(int i = 0; i < primitives.length; i += UEITLayout.STRIDE)
+		{
+			int a = primitives[i + 1];
+			int b = primitives[i + 2];
+			int c = primitives[i + 3];
+			int d = primitives[i + 4];
+			
+			g.setColor(new Color(primitives[i + 5]));
+			g.setStroke(primitives[i + 6] == 2 ? STROKE_2PX : STROKE_1PX);
+			
+			switch(primitives[i])
+			{
+				case UEITLayout.FILL:
+					g.fillRect(a, b, c, d);
+					break;
+					
+				case UEITLayout.LINE:
+				case UEITLayout.WIDE_LINE:
+				case UEITLayout.DIAGONAL:
+					g.drawLine(a, b, c, d);
+					break;
+					
+				case UEITLayout.ARC:
+					g.fillArc(a, b, c, d, 0, 360);
+					break;
+					
+				case UEITLayout.RAMP:
+					int[] colors = layout.data[primitives[i + 7]];
+					
+					for(int j = 0; j < c; j++)
+					{
+						g.setColor(new Color(colors[j]));
+						g.drawLine(a + j, b, a + j, b + d);
+					}
+					break;
+					
+				case UEITLayout.TICKS:
+					int thickness = primitives[i + 7];
+					
+					for(int j = 0; j < c; j += thickness * 2)
+					{
+						for(int k = 0; k < thickness; k++)
+						{
+							g.drawLine(a + j + k, b, a + j + k, b + d);
+						}
+					}
+					break;
+					
+				case UEITLayout.SEGMENT:
+					if(segment >= 0 && segment < 8)
+					{
+						for(int j = 0; j < 2; j++)
+						{
+							int[] rect = layout.getSegment(segment, j);
+							g.fillRect(rect[0], rect[1], rect[2], rect[3]);
+						}
+					}
+					break;
+			}
+		}
+	}
+	
+	public static void paintString(Graphics2D g, FontMetrics fm, String s, int x, int y)
+	{
+		g.drawString(s, x - fm.stringWidth(s) / 2, y - fm.getDescent() + (fm.getAscent() + fm.getDescent()) / 2);
+	}
+}
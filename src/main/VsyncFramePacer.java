@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsDevice;
+import java.awt.Toolkit;
+
+/**
+ * Pacing aligned to the display refresh: the frame period is rounded to a whole number of refresh intervals
+ * of the device, and the rendering pipeline is flushed with Toolkit.sync() before waiting for the deadline.
+ * Combined with a page-flipped BufferStrategy, whose show() waits for the vertical retrace
+ * on most pipelines, this keeps presentation in step with the display.
+ */
+public class VsyncFramePacer extends ParkFramePacer
+{
+	protected final Toolkit toolkit = Toolkit.getDefaultToolkit();
+	
+	public VsyncFramePacer(long periodNanos, GraphicsDevice device)
+	{
+		super(alignPeriod(periodNanos, device));
+	}
+	
+	public static int getRefreshRate(GraphicsDevice device)
+	{
+		if(device != null)
+		{
+			DisplayMode mode = device.getDisplayMode();
+			
+			if(mode != null && mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN)
+			{
+				return mode.getRefreshRate();
+			}
+		}
+		
+		return DisplayMode.REFRESH_RATE_UNKNOWN;
+	}
+	
+	protected static long alignPeriod(long periodNanos, GraphicsDevice device)
+	{
+		int refreshRate = getRefreshRate(device);
+		
+		if(refreshRate <= 0)
+		{
+			return periodNanos;
+		}
+		
+		long refreshNanos = Math.round(1e9 / refreshRate);
+		long intervals = Math.max(1, Math.round((double)periodNanos / refreshNanos));
+		
+		return refreshNanos * intervals;
+	}
+	
+	protected void waitForNextFrame() throws InterruptedException
+	{
+		toolkit.sync();
+		super.waitForNextFrame();
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+/**
+ * RGB to YCbCr matrices for 8-bit full-range RGB and limited-range YCbCr: Y in 16..235 and Cb, Cr in 16..240
+ * at 8 bits, scaled by 4 at 10 bits. Conversion kernels evaluate them in 64-bit fixed point with {@link #SHIFT}
+ * fraction bits and coefficients rounded up, which gives exactly the rounded result of the rational formulas
+ * for single pixels as well as for the sums of 2 or 4 pixels that subsampled chroma is computed from.
+ */
+public enum YCbCrMatrix
+{
+	BT601(2990, 5870, 1140),
+	BT709(2126, 7152, 722);
+	
+	/**
+	 * Denominator of the luma weights.
+	 */
+	public static final int SCALE = 10000;
+	
+	public static final int SHIFT = 36;
+	
+	protected final int kr;
+	protected final int kg;
+	protected final int kb;
+	
+	private YCbCrMatrix(int kr, int kg, int kb)
+	{
+		this.kr = kr;
+		this.kg = kg;
+		this.kb = kb;
+	}
+	
+	public int getKr()
+	{
+		return kr;
+	}
+	
+	public int getKg()
+	{
+		return kg;
+	}
+	
+	public int getKb()
+	{
+		return kb;
+	}
+	
+	/**
+	 * Returns the R, G, B coefficients and the offset of Y at the given bit depth:
+	 * Y = (r * c[0] + g * c[1] + b * c[2] + c[3]) &gt;&gt; SHIFT.
+	 */
+	public long[] getLuma(int bits)
+	{
+		long scale = 219L << (bits - 8);
+		long den = SCALE * 255L;
+		
+		return new long[] { ceil(scale * kr, den), ceil(scale * kg, den), ceil(scale * kb, den), getOffset(16, bits) };
+	}
+	
+	/**
+	 * Returns the coefficients of Cb for the sums of R, G and B over count pixels.
+	 */
+	public long[] getCb(int count, int bits)
+	{
+		long scale = 112L << (bits - 8);
+		long den = (long)count * (SCALE - kb) * 255;
+		
+		return new long[] { ceil(-scale * kr, den), ceil(-scale * kg, den), ceil(scale * (SCALE - kb), den), getOffset(128, bits) };
+	}
+	
+	/**
+	 * Returns the coefficients of Cr for the sums of R, G and B over count pixels.
+	 */
+	public long[] getCr(int count, int bits)
+	{
+		long scale = 112L << (bits - 8);
+		long den = (long)count * (SCALE - kr) * 255;
+		
+		return new long[] { ceil(scale * (SCALE - kr), den), ceil(-scale * kg, den), ceil(-scale * kb, den), getOffset(128, bits) };
+	}
+	
+	/**
+	 * Returns ceil(num * 2^SHIFT / den).
+	 */
+	protected static long ceil(long num, long den)
+	{
+		return -Math.floorDiv(-(num << SHIFT), den);
+	}
+	
+	/**
+	 * Returns the offset scaled to the bit depth plus one half for rounding, in fixed point.
+	 */
+	protected static long getOffset(int offset, int bits)
+	{
+		return ((long)offset << (bits - 8) << SHIFT) + (1L << (SHIFT - 1));
+	}
+	
+	public String getName()
+	{
+		return name().toLowerCase();
+	}
+	
+	public static YCbCrMatrix fromName(String name)
+	{
+		return valueOf(name.toUpperCase());
+	}
+}
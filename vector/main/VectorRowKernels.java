@@ -0,0 +1,342 @@
+/*
+ * Copyright 2021 Kulikov Dmitriy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main;
+
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RowKernels} on vectors of the preferred size of the CPU: 256 bits with AVX2 and 512 bits with AVX-512.
+ * Pixels are processed a vector of int lanes at a time and the rest of a row by the scalar loops.
+ * Where a vector store holds more bytes than the pixels produce, its unused tail is overwritten by the next store,
+ * so stores never reach past the range being converted.
+ * Requires Java 16 or later with the jdk.incubator.vector module.
+ */
+public class VectorRowKernels extends RowKernels
+{
+	protected static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	protected static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	protected static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+	
+	/**
+	 * As many lanes as ints, for packing int lanes into 16-bit words.
+	 */
+	protected static final VectorSpecies<Short> WORDS = VectorSpecies.of(short.class, VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 2)));
+	
+	/**
+	 * At least as many lanes as ints, for packing int lanes into bytes.
+	 */
+	protected static final VectorSpecies<Byte> PACKED_BYTES = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 4)));
+	
+	protected static final int LANES = INTS.length();
+	
+	/**
+	 * Pixels converted per call of a vector loop. Whether C2 compiles a vector loop into fast code depends on how it was
+	 * reached: compiled for a call on one row and then run over a whole frame, or compiled on stack in the middle of a frame,
+	 * the same loop measured up to 10 times slower. Splitting every conversion into calls of the same short length
+	 * makes the loops compiled the same way whatever the callers pass.
+	 */
+	protected static final int CHUNK = 4096;
+	
+	/**
+	 * 2^23, the smallest float without fraction bits.
+	 */
+	protected static final float MAGIC = 8388608;
+	protected static final int MAGIC_BITS = Float.floatToIntBits(MAGIC);
+	protected static final int HALF_BITS = Float.floatToIntBits((float)0.5);
+	
+	/**
+	 * Gathers R, G, B of every int lane, in that order, into the first 3 / 4 of the bytes.
+	 */
+	protected static final VectorShuffle<Byte> PACK_RGB24 = VectorShuffle.fromOp(BYTES, i -> i < LANES * 3 ? i / 3 * 4 + 2 - i % 3 : 0);
+	
+	/**
+	 * On x86 without AVX the byte shuffles and lane conversions used here run lane by lane, far slower than the scalar loops.
+	 * The kernels have only been measured on x86 with AVX2 and AVX-512, so other CPUs, including ARM, keep the scalar loops.
+	 */
+	public VectorRowKernels()
+	{
+		if(LANES < 4 || FLOATS.length() != LANES || WORDS.length() != LANES)
+		{
+			throw new UnsupportedOperationException("No usable vector shape");
+		}
+		
+		String arch = System.getProperty("os.arch");
+		
+		if(!arch.equals("amd64") && !arch.equals("x86_64"))
+		{
+			throw new UnsupportedOperationException("Vector kernels have not been measured on " + arch);
+		}
+		
+		if(INTS.vectorBitSize() < 256)
+		{
+			throw new UnsupportedOperationException("Vectors of " + INTS.vectorBitSize() + " bits are not faster than scalar code");
+		}
+	}
+	
+	public String getName()
+	{
+		return "vector " + INTS.vectorBitSize() + " bit";
+	}
+	
+	public void ramp(int[] dst, int count, int rising, int falling)
+	{
+		FloatVector index = FloatVector.zero(FLOATS).addIndex(1);
+		FloatVector one = FloatVector.broadcast(FLOATS, (float)1.0);
+		float last = (float)(count - 1);
+		
+		int i = 0;
+		
+		for(; i <= count - LANES; i += LANES)
+		{
+			FloatVector v = index.add((float)i).div(last);
+			
+			quantize(v).mul(0x010101).and(rising)
+				.or(quantize(one.sub(v)).mul(0x010101).and(falling))
+				.or(0xFF000000)
+				.intoArray(dst, i);
+		}
+		
+		for(; i < count; i++)
+		{
+			float v = (float)i / last;
+			dst[i] = 0xFF000000 | (quantize(v) * 0x010101 & rising) | (quantize((float)1.0 - v) * 0x010101 & falling);
+		}
+	}
+	
+	/**
+	 * Same as the scalar (int)(v * 255 + 0.5) for v &gt;= 0. Float to int conversions are slow on vectors,
+	 * so the product is rounded to an integer by adding 2^23, which rounds halves to even and leaves the integer
+	 * in the mantissa; halves that were rounded down, whose exact remainder is 0.5, are then moved up.
+	 */
+	protected static IntVector quantize(FloatVector v)
+	{
+		FloatVector scaled = v.mul((float)255);
+		FloatVector shifted = scaled.add(MAGIC);
+		
+		IntVector rounded = shifted.reinterpretAsInts().sub(MAGIC_BITS);
+		IntVector remainder = scaled.sub(shifted.sub(MAGIC)).reinterpretAsInts();
+		
+		return rounded.add(1, remainder.compare(VectorOperators.EQ, HALF_BITS));
+	}
+	
+	/**
+	 * Rounds floats in [0, 2^23) to the nearest integer, halves to even.
+	 */
+	protected static IntVector toInt(FloatVector v)
+	{
+		return v.add(MAGIC).reinterpretAsInts().sub(MAGIC_BITS);
+	}
+	
+	public void toRGB24(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		for(int n; count > 0; offset += n, dstOffset += n * 3, count -= n)
+		{
+			n = Math.min(count, CHUNK);
+			toRGB24Chunk(argb, offset, n, dst, dstOffset);
+		}
+	}
+	
+	protected void toRGB24Chunk(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		int i = offset, j = dstOffset;
+		
+		for(int end = dstOffset + count * 3 - BYTES.length(); j <= end; i += LANES, j += LANES * 3)
+		{
+			IntVector.fromArray(INTS, argb, i).reinterpretAsBytes().rearrange(PACK_RGB24).intoArray(dst, j);
+		}
+		
+		super.toRGB24(argb, i, offset + count - i, dst, j);
+	}
+	
+	public void toBGRA(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		for(int n; count > 0; offset += n, dstOffset += n * 4, count -= n)
+		{
+			n = Math.min(count, CHUNK);
+			toBGRAChunk(argb, offset, n, dst, dstOffset);
+		}
+	}
+	
+	protected void toBGRAChunk(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		int i = offset, j = dstOffset;
+		
+		for(; i <= offset + count - LANES; i += LANES, j += LANES * 4)
+		{
+			IntVector.fromArray(INTS, argb, i).or(0xFF000000).intoByteArray(dst, j, ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		super.toBGRA(argb, i, offset + count - i, dst, j);
+	}
+	
+	public void toRGB565LE(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		for(int n; count > 0; offset += n, dstOffset += n * 2, count -= n)
+		{
+			n = Math.min(count, CHUNK);
+			toRGB565LEChunk(argb, offset, n, dst, dstOffset);
+		}
+	}
+	
+	protected void toRGB565LEChunk(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		int i = offset, j = dstOffset;
+		
+		for(; i <= offset + count - LANES; i += LANES, j += LANES * 2)
+		{
+			IntVector pixel = IntVector.fromArray(INTS, argb, i);
+			
+			IntVector rgb565 = pixel.lanewise(VectorOperators.LSHR, 8).and(0xF800)
+				.or(pixel.lanewise(VectorOperators.LSHR, 5).and(0x07E0))
+				.or(pixel.lanewise(VectorOperators.LSHR, 3).and(0x001F));
+			
+			storeWords(rgb565, dst, j);
+		}
+		
+		super.toRGB565LE(argb, i, offset + count - i, dst, j);
+	}
+	
+	/**
+	 * Stores the low 16 bits of every lane as little-endian words.
+	 */
+	protected static void storeWords(IntVector v, byte[] dst, int j)
+	{
+		((ShortVector)v.convertShape(VectorOperators.I2S, WORDS, 0)).intoByteArray(dst, j, ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Scales channels to 10 bits as 4 * c + (3 * c + 127) / 255, the division done as a multiplication by 257 / 2^16,
+	 * which is exact for all 8-bit values.
+	 */
+	public void toX2RGB10LE(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		for(int n; count > 0; offset += n, dstOffset += n * 4, count -= n)
+		{
+			n = Math.min(count, CHUNK);
+			toX2RGB10LEChunk(argb, offset, n, dst, dstOffset);
+		}
+	}
+	
+	protected void toX2RGB10LEChunk(int[] argb, int offset, int count, byte[] dst, int dstOffset)
+	{
+		int i = offset, j = dstOffset;
+		
+		for(; i <= offset + count - LANES; i += LANES, j += LANES * 4)
+		{
+			IntVector pixel = IntVector.fromArray(INTS, argb, i);
+			
+			IntVector word = scaleTo10Bits(pixel.lanewise(VectorOperators.LSHR, 16).and(0xFF)).lanewise(VectorOperators.LSHL, 20)
+				.or(scaleTo10Bits(pixel.lanewise(VectorOperators.LSHR, 8).and(0xFF)).lanewise(VectorOperators.LSHL, 10))
+				.or(scaleTo10Bits(pixel.and(0xFF)))
+				.or(0xC0000000);
+			
+			word.intoByteArray(dst, j, ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		super.toX2RGB10LE(argb, i, offset + count - i, dst, j);
+	}
+	
+	protected static IntVector scaleTo10Bits(IntVector c)
+	{
+		return c.lanewise(VectorOperators.LSHL, 2).add(c.mul(3).add(127).mul(257).lanewise(VectorOperators.LSHR, 16));
+	}
+	
+	/**
+	 * Computes Y from the exact integer weighted sum of R, G, B: the rounded quotient of the scaled sum
+	 * is estimated in float, which is off by at most one, and corrected with the integer remainder.
+	 * Falls back to the scalar loop for matrices whose sums would not fit in 32 bits.
+	 */
+	public void toLuma(int[] argb, int offset, int count, YCbCrMatrix matrix, int bits, byte[] dst, int dstOffset)
+	{
+		int sample = bits == 8 ? 1 : 2;
+		
+		for(int n; count > 0; offset += n, dstOffset += n * sample, count -= n)
+		{
+			n = Math.min(count, CHUNK);
+			toLumaChunk(argb, offset, n, matrix, bits, dst, dstOffset);
+		}
+	}
+	
+	protected void toLumaChunk(int[] argb, int offset, int count, YCbCrMatrix matrix, int bits, byte[] dst, int dstOffset)
+	{
+		// Y = offset + round(scale * (kr * r + kg * g + kb * b) / (SCALE * 255)), rounding halves up,
+		// computed as floor((2 * a * (kr * r + kg * g + kb * b) + d) / (2 * d)) with a / d the reduced fraction scale / (SCALE * 255)
+		
+		long scale = 219L << (bits - 8);
+		long den = YCbCrMatrix.SCALE * 255L;
+		long gcd = gcd(scale, den);
+		
+		long a = scale / gcd * 2;
+		long d = den / gcd;
+		
+		if((long)(matrix.getKr() + matrix.getKg() + matrix.getKb()) * 255 * a + d > Integer.MAX_VALUE || d * 2 > Integer.MAX_VALUE)
+		{
+			super.toLuma(argb, offset, count, matrix, bits, dst, dstOffset);
+			return;
+		}
+		
+		int kr = (int)(matrix.getKr() * a), kg = (int)(matrix.getKg() * a), kb = (int)(matrix.getKb() * a);
+		int addend = (int)d, divisor = (int)(d * 2);
+		int base = 16 << (bits - 8);
+		float reciprocal = (float)1.0 / divisor;
+		
+		int sample = bits == 8 ? 1 : 2;
+		int i = offset, j = dstOffset;
+		
+		for(int end = dstOffset + count * sample - Math.max(PACKED_BYTES.length(), LANES * sample); j <= end; i += LANES, j += LANES * sample)
+		{
+			IntVector pixel = IntVector.fromArray(INTS, argb, i);
+			
+			IntVector sum = pixel.lanewise(VectorOperators.LSHR, 16).and(0xFF).mul(kr)
+				.add(pixel.lanewise(VectorOperators.LSHR, 8).and(0xFF).mul(kg))
+				.add(pixel.and(0xFF).mul(kb))
+				.add(addend);
+			
+			IntVector quotient = toInt(((FloatVector)sum.convert(VectorOperators.I2F, 0)).mul(reciprocal));
+			IntVector remainder = sum.sub(quotient.mul(divisor));
+			
+			IntVector luma = quotient.add(base)
+				.sub(1, remainder.compare(VectorOperators.LT, 0))
+				.add(1, remainder.compare(VectorOperators.GE, divisor));
+			
+			if(sample == 1)
+			{
+				((ByteVector)luma.convertShape(VectorOperators.I2B, PACKED_BYTES, 0)).intoArray(dst, j);
+			}
+			else
+			{
+				storeWords(luma.lanewise(VectorOperators.LSHL, 16 - bits), dst, j);
+			}
+		}
+		
+		super.toLuma(argb, i, offset + count - i, matrix, bits, dst, j);
+	}
+	
+	protected static long gcd(long a, long b)
+	{
+		return b == 0 ? a : gcd(b, a % b);
+	}
+}